@@ -482,6 +482,9 @@ public class GamaPreferences {
 		public static final Pref<Boolean> AT_DISTANCE_OPTIMIZATION =
 				create("pref_optimize_at_distance", "Optimize the 'at_distance' operator", true, IType.BOOL, true)
 						.in(NAME, OPTIMIZATIONS);
+		public static final Pref<Boolean> NEIGHBORS_OPTIMIZATION = create("pref_optimize_neighbors",
+				"Optimize 'count', 'sum_of', 'one_matches', 'none_matches' and 'one_of' applied to 'at_distance' or 'neighbors_at' (the neighbors are not shuffled: the random choices differ from the ones of non-optimized runs)",
+				false, IType.BOOL, true).in(NAME, OPTIMIZATIONS);
 		public static final Pref<Boolean> PATH_COMPUTATION_OPTIMIZATION = create("pref_optimize_path_computation",
 				"Optimize the path computation operators and goto action (but with possible 'jump' issues)", false,
 				IType.BOOL, true).in(NAME, OPTIMIZATIONS);
@@ -524,6 +527,9 @@ public class GamaPreferences {
 		public static final Pref<Boolean> LIB_USE_DEFAULT =
 				create("pref_gis_save_crs", "When no CRS is provided, save the GIS data with the current CRS", true,
 						IType.BOOL, true).deactivates("pref_gis_output_crs").in(NAME, GEOTOOLS);
+		public static final Pref<Boolean> LIB_GRID_CACHE = create("pref_gis_grid_cache",
+				"Keep a copy of the values of grid files (.asc, .tif) in the local cache to read them faster", true,
+				IType.BOOL, true).in(NAME, GEOTOOLS);
 		public static final Pref<Integer> LIB_TARGET_CRS = create("pref_gis_default_crs",
 				"...or use the following EPSG code (the one that will also be used if no projection information is found)",
 				32648, IType.INT, true).in(NAME, GEOTOOLS)
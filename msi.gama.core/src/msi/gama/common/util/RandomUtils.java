@@ -354,6 +354,18 @@ public class RandomUtils {
 		return generator.nextDouble();
 	}
 
+	/**
+	 * Derives a seed from a seed (possibly null) and a key, mixing them with the finalizer of SplitMix64 so that the
+	 * streams seeded with consecutive keys are not correlated
+	 */
+	public static Double derivedSeed(final Double seed, final long key) {
+		long h = (seed == null ? 0L : Double.doubleToLongBits(seed)) + 0x9E3779B97F4A7C15L * (key + 1L);
+		h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		return (double) (h >>> 11);
+	}
+
 	/**
 	 * @return
 	 */
@@ -241,10 +241,13 @@ public class SimulationAgent extends GamlAgent implements ITopLevelAgent {
 			final IExpression expr = getSpecies().getFacet(IKeyword.TORUS);
 			final boolean torus = expr != null && Cast.asBool(scope, expr.value(scope));
 			final boolean[] parallel = { GamaExecutorService.CONCURRENCY_SPECIES.getValue()
-					|| GamaPreferences.External.QUADTREE_SYNCHRONIZATION.getValue() };
+					|| GamaPreferences.External.QUADTREE_SYNCHRONIZATION.getValue()
+					|| getSpecies().getMicroSpeciesDependencies() != null };
 			if (!parallel[0]) {
 				getSpecies().getDescription().visitMicroSpecies((s) -> {
-					parallel[0] = getParallelism(scope, s.getFacetExpr(IKeyword.PARALLEL), Caller.SPECIES) > 0;
+					final IExpression species = s.getFacetExpr(IKeyword.PARALLEL_SPECIES);
+					parallel[0] = getParallelism(scope, s.getFacetExpr(IKeyword.PARALLEL), Caller.SPECIES) != 0
+							|| species != null && species.isConst() && Boolean.TRUE.equals(species.getConstValue());
 					return !parallel[0];
 				});
 			}
@@ -45,7 +45,7 @@ public class SimulationPopulation extends GamaPopulation<SimulationAgent> {
 	}
 
 	public int getMaxNumberOfConcurrentSimulations() {
-		if (getHost().getSpecies().isHeadless()) { return 1; }
+		if (getHost().getSpecies().isHeadless()) { return runner.getMaxNumberOfThreads(); }
 		return GamaExecutorService.getParallelism(getHost().getScope(), getSpecies().getConcurrency(),
 				Caller.SIMULATION);
 	}
@@ -16,12 +16,15 @@ import java.util.Map.Entry;
 
 import com.google.common.primitives.Ints;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 
 import msi.gama.common.geometry.Envelope3D;
 import msi.gama.common.interfaces.BiConsumerWithPruning;
 import msi.gama.common.interfaces.IKeyword;
 import msi.gama.kernel.model.IModel;
+import msi.gama.metamodel.population.ColumnarStorage;
 import msi.gama.metamodel.population.IPopulation;
+import msi.gama.metamodel.population.SynchronousUpdateBuffer;
 import msi.gama.metamodel.shape.ILocation;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.metamodel.topology.ITopology;
@@ -34,6 +37,7 @@ import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.GamaListFactory;
 import msi.gama.util.IList;
 import msi.gama.util.IMap;
+import msi.gaml.descriptions.AttributeLayout;
 import msi.gaml.descriptions.ModelDescription;
 import msi.gaml.operators.Cast;
 import msi.gaml.species.ISpecies;
@@ -72,6 +76,11 @@ public abstract class AbstractAgent implements IAgent {
 	private final int index;
 	protected volatile boolean dead = false;
 	protected volatile boolean dying = false;
+	/**
+	 * The values of the attributes that have a slot in the layout of the species (see {@link AttributeLayout}),
+	 * allocated when the first of them is set. The other attributes are kept in the geometry
+	 */
+	private Object[] slots;
 
 	public AbstractAgent(final int index) {
 		this.index = index;
@@ -143,6 +152,11 @@ public abstract class AbstractAgent implements IAgent {
 		return getGeometry().intersects(g);
 	}
 
+	@Override
+	public PreparedGeometry getPreparedGeometry() {
+		return getGeometry().getPreparedGeometry();
+	}
+
 	@Override
 	public boolean crosses(final IShape g) {
 		return getGeometry().crosses(g);
@@ -168,6 +182,11 @@ public abstract class AbstractAgent implements IAgent {
 		if (s != null) {
 			s.dispose();
 		}
+		final Object[] values = slots;
+		slots = null;
+		if (p != null) {
+			p.releaseSlots(this, values);
+		}
 
 	}
 
@@ -199,7 +218,7 @@ public abstract class AbstractAgent implements IAgent {
 	@Override
 	public void setExtraAttributes(final Map<String, Object> map) {
 		if (map == null) { return; }
-		getOrCreateAttributes().putAll(map);
+		map.forEach(this::setAttribute);
 	}
 	//
 	// @Override
@@ -207,29 +226,107 @@ public abstract class AbstractAgent implements IAgent {
 	// return (GamaMap<String, Object>) getGeometry().getAttributes();
 	// }
 
+	/**
+	 * Returns the attributes kept in the geometry, i.e. the ones that do not have a slot in the layout of the species
+	 * (see {@link #getSlot(int, String)})
+	 */
 	@Override
 	public IMap<String, Object> getOrCreateAttributes() {
 		return getGeometry().getOrCreateAttributes();
 	}
 
+	private AttributeLayout getAttributeLayout() {
+		final IPopulation<? extends IAgent> p = getPopulation();
+		return p == null ? null : p.getAttributeLayout();
+	}
+
+	private int slotOf(final AttributeLayout layout, final String name) {
+		return layout == null ? -1 : layout.slotOf(name);
+	}
+
+	private Object valueAt(final int slot) {
+		final ColumnarStorage columns = getPopulation().getColumns();
+		if (columns != null && columns.isColumn(slot)) { return columns.get(slot, getIndex()); }
+		final Object[] values = slots;
+		if (values == null) { return null; }
+		final Object value = values[slot];
+		return value == AttributeLayout.UNSET ? null : value;
+	}
+
+	private boolean hasValueAt(final int slot) {
+		final ColumnarStorage columns = getPopulation().getColumns();
+		if (columns != null && columns.isColumn(slot)) { return columns.has(slot, getIndex()); }
+		final Object[] values = slots;
+		return values != null && values[slot] != AttributeLayout.UNSET;
+	}
+
+	private void setValueAt(final AttributeLayout layout, final int slot, final Object value) {
+		final ColumnarStorage columns = getPopulation().getColumns();
+		if (columns != null && columns.isColumn(slot)) {
+			columns.set(slot, getIndex(), value);
+			return;
+		}
+		if (slots == null) {
+			slots = getPopulation().acquireSlots();
+		}
+		slots[slot] = value;
+	}
+
+	@Override
+	public Object getSlot(final int slot, final String name) {
+		final AttributeLayout layout = getAttributeLayout();
+		// The slot has been computed for another species: we fall back to the name
+		if (layout == null || slot >= layout.size() || !name.equals(layout.nameOf(slot))) {
+			return getAttribute(name);
+		}
+		return valueAt(slot);
+	}
+
+	@Override
+	public void setSlot(final int slot, final String name, final Object value) {
+		final AttributeLayout layout = getAttributeLayout();
+		if (layout == null || slot >= layout.size() || !name.equals(layout.nameOf(slot))) {
+			setAttribute(name, value);
+		} else {
+			setValueAt(layout, slot, value);
+		}
+	}
+
 	@Override
 	public boolean hasAttribute(final String key) {
-		return getGeometry().hasAttribute(key);
+		final int slot = slotOf(getAttributeLayout(), key);
+		if (slot < 0) { return getGeometry().hasAttribute(key); }
+		return hasValueAt(slot);
 	}
 
 	@Override
 	public void forEachAttribute(final BiConsumerWithPruning<String, Object> visitor) {
+		final AttributeLayout layout = getAttributeLayout();
+		if (layout != null && (slots != null || getPopulation().getColumns() != null)) {
+			for (int i = 0; i < layout.size(); i++) {
+				if (hasValueAt(i) && !visitor.process(layout.nameOf(i), valueAt(i))) { return; }
+			}
+		}
 		getGeometry().forEachAttribute(visitor);
 	}
 
 	@Override
 	public Object getAttribute(final String key) {
-		return getGeometry().getAttribute(key);
+		final int slot = slotOf(getAttributeLayout(), key);
+		if (slot < 0) { return getGeometry().getAttribute(key); }
+		return valueAt(slot);
 	}
 
 	@Override
 	public void setAttribute(final String name, final Object val) {
-		getOrCreateAttributes().put(name, val);
+		if (SynchronousUpdateBuffer.deferDirect(this, name, val)) { return; }
+		final AttributeLayout layout = getAttributeLayout();
+		final int slot = slotOf(layout, name);
+		if (slot < 0) {
+			getOrCreateAttributes().put(name, val);
+		} else {
+			setValueAt(layout, slot, val);
+		}
 	}
 
 	@Override
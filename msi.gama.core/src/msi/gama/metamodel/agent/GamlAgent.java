@@ -19,6 +19,7 @@ import msi.gama.metamodel.population.IPopulation;
 import msi.gama.metamodel.population.MetaPopulation;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.runtime.IScope;
+import msi.gama.runtime.concurrent.GamaExecutorService;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.Collector;
 import msi.gama.util.GamaListFactory;
@@ -29,6 +30,7 @@ import msi.gama.util.IList;
 import msi.gama.util.IMap;
 import msi.gama.util.graph.GamaGraph;
 import msi.gaml.descriptions.ModelDescription;
+import msi.gaml.descriptions.SpeciesDependencyGraph;
 import msi.gaml.species.ISpecies;
 import msi.gaml.types.Types;
 import msi.gaml.variables.IVariable;
@@ -101,6 +103,8 @@ public class GamlAgent extends MinimalAgent implements IMacroAgent {
 
 	@Override
 	protected boolean stepSubPopulations(final IScope scope) {
+		final SpeciesDependencyGraph dependencies = getSpecies().getMicroSpeciesDependencies();
+		if (dependencies != null) { return GamaExecutorService.step(scope, getMicroPopulations(), dependencies); }
 		for (final IPopulation<? extends IAgent> pop : getMicroPopulations()) {
 			if (!scope.step(pop).passed()) { return false; }
 		}
@@ -139,6 +139,23 @@ public interface IAgent extends /* ISkill, */ IShape, INamed, Comparable<IAgent>
 	 */
 	public abstract void setExtraAttributes(final Map<String, Object> map);
 
+	/**
+	 * Returns the value of the attribute stored at this slot in the layout of the species (see
+	 * {@link msi.gaml.descriptions.AttributeLayout}). The name is used when the agent does not store its attributes in
+	 * slots or when the slot belongs to another species
+	 */
+	default Object getSlot(final int slot, final String name) {
+		return getAttribute(name);
+	}
+
+	/**
+	 * Sets the value of the attribute stored at this slot in the layout of the species (see
+	 * {@link msi.gaml.descriptions.AttributeLayout})
+	 */
+	default void setSlot(final int slot, final String name, final Object value) {
+		setAttribute(name, value);
+	}
+
 	public abstract int getIndex();
 
 	public String getSpeciesName();
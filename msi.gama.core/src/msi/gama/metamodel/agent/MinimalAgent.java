@@ -18,6 +18,7 @@ import com.vividsolutions.jts.geom.Geometry;
 import msi.gama.common.geometry.Envelope3D;
 import msi.gama.common.interfaces.IKeyword;
 import msi.gama.metamodel.population.IPopulation;
+import msi.gama.metamodel.population.SynchronousUpdateBuffer;
 import msi.gama.metamodel.shape.GamaPoint;
 import msi.gama.metamodel.shape.GamaShape;
 import msi.gama.metamodel.shape.ILocation;
@@ -90,6 +91,7 @@ public class MinimalAgent extends AbstractAgent {
 				|| this.getSpecies().isGrid() && ((GamlSpecies) this.getSpecies()).belongsToAMicroModel()) {
 			return;
 		}
+		if (SynchronousUpdateBuffer.deferDirect(this, IKeyword.SHAPE, newGeometry)) { return; }
 
 		final ITopology topology = getTopology();
 		final ILocation newGeomLocation = newGeometry.getLocation().copy(getScope());
@@ -147,6 +149,7 @@ public class MinimalAgent extends AbstractAgent {
 	@Override
 	public/* synchronized */void setLocation(final ILocation point) {
 		if (point == null || dead() || this.getSpecies().isGrid()) { return; }
+		if (SynchronousUpdateBuffer.deferDirect(this, IKeyword.LOCATION, point)) { return; }
 		final ILocation newLocation = point.copy(getScope());
 		final ITopology topology = getTopology();
 		if (topology == null) { return; }
@@ -0,0 +1,418 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.population.ColumnarStorage.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.population;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+
+import msi.gama.metamodel.agent.IAgent;
+import msi.gaml.descriptions.AttributeLayout;
+import msi.gaml.descriptions.SpeciesDescription;
+import msi.gaml.descriptions.VariableDescription;
+import msi.gaml.expressions.BinaryOperator.BinaryVarOperator;
+import msi.gaml.expressions.EachExpression;
+import msi.gaml.expressions.IExpression;
+import msi.gaml.types.IType;
+
+/**
+ * The storage used by the populations of species declared with 'columnar: true': the int, float and bool attributes
+ * that have a slot in the layout of the species (see {@link AttributeLayout}) are kept in primitive arrays, one row per
+ * agent alive, instead of being kept (boxed) by each agent. The other attributes remain in the agents.
+ *
+ * Besides the memory saved, the columns allow some iterators ('sum_of', 'mean_of', 'where') to read the attributes
+ * directly when they are written like 'each.attribute' (see {@link #columnReadBy(IExpression)}).
+ *
+ * The rows of the agents that die are reused by the agents created once the cycle of their death is over (like the
+ * slots, see {@link RecycledSlots}), so the columns grow with the number of agents alive, not with the number of agents
+ * created. Only the table giving the row of each agent, by index, grows with the latter. Each value has a state (not
+ * set, set or nil), kept in one byte rather than one bit so that agents written in parallel never share a word.
+ *
+ * The values are written under the read lock, the columns being replaced (grown) and the rows assigned under the write
+ * lock: a value can therefore never be written in columns that have already been copied.
+ */
+public class ColumnarStorage {
+
+	private static final int INITIAL_CAPACITY = 16;
+	/**
+	 * The states of the values, and the rows of the agents that do not have one
+	 */
+	private static final byte UNSET = 0, SET = 1, NIL = 2;
+	private static final int NO_ROW = -1, RELEASED_ROW = -2;
+
+	/**
+	 * The columns and the states of their values, replaced together when they grow
+	 */
+	private static class Table {
+		final Object[] columns;
+		final byte[][] states;
+		final int capacity;
+
+		Table(final Object[] columns, final byte[][] states, final int capacity) {
+			this.columns = columns;
+			this.states = states;
+			this.capacity = capacity;
+		}
+	}
+
+	private final AttributeLayout layout;
+	private final int[] types;
+	private final IntSupplier cycle;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile Table table;
+	/**
+	 * The row of each agent, by index: NO_ROW if it has not been given one yet, RELEASED_ROW once it is dead
+	 */
+	private volatile int[] rows = new int[0];
+	/**
+	 * The number of rows given so far, the rows that can be reused, and the ones released during releasedCycle
+	 */
+	private int used;
+	private final ArrayDeque<Integer> free = new ArrayDeque<>();
+	private final ArrayDeque<Integer> released = new ArrayDeque<>();
+	private int releasedCycle = -1;
+
+	ColumnarStorage(final AttributeLayout layout, final SpeciesDescription species, final IntSupplier cycle) {
+		this.layout = layout;
+		this.cycle = cycle;
+		final int size = layout.size();
+		types = new int[size];
+		final Object[] columns = new Object[size];
+		final byte[][] states = new byte[size][];
+		for (int slot = 0; slot < size; slot++) {
+			final VariableDescription var = species.getAttribute(layout.nameOf(slot));
+			final int type = var == null ? IType.NONE : var.getGamlType().id();
+			switch (type) {
+				case IType.INT:
+					columns[slot] = new int[INITIAL_CAPACITY];
+					break;
+				case IType.FLOAT:
+					columns[slot] = new double[INITIAL_CAPACITY];
+					break;
+				case IType.BOOL:
+					columns[slot] = new boolean[INITIAL_CAPACITY];
+					break;
+				default:
+					types[slot] = IType.NONE;
+					continue;
+			}
+			types[slot] = type;
+			states[slot] = new byte[INITIAL_CAPACITY];
+		}
+		table = new Table(columns, states, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Whether the values of this slot are kept in a column
+	 */
+	public boolean isColumn(final int slot) {
+		return slot >= 0 && slot < types.length && types[slot] != IType.NONE;
+	}
+
+	/**
+	 * Gives a row to each of the agents, if they do not have one yet. Called when agents are created, so that the
+	 * columns are not grown while agents are stepped in parallel
+	 */
+	void assignRows(final List<? extends IAgent> agents) {
+		lock.writeLock().lock();
+		try {
+			for (final IAgent agent : agents) {
+				assignRow(agent.getIndex());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Releases the row of an agent that has died. Its values are no longer readable, and the row is reused once this
+	 * cycle is over
+	 */
+	void releaseRow(final int index) {
+		lock.writeLock().lock();
+		try {
+			final int[] table = rows;
+			if (index >= table.length || table[index] < 0) { return; }
+			recycle();
+			released.add(table[index]);
+			table[index] = RELEASED_ROW;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Must be called under the write lock
+	 */
+	private int assignRow(final int index) {
+		int[] table = rows;
+		if (index >= table.length) {
+			final int length = table.length;
+			table = Arrays.copyOf(table, Math.max(index + 1, length + (length >> 1)));
+			Arrays.fill(table, length, table.length, NO_ROW);
+			rows = table;
+		}
+		if (table[index] != NO_ROW) { return table[index]; }
+		recycle();
+		final Integer row = free.poll();
+		final int result = row == null ? used++ : row;
+		ensureCapacity(result + 1);
+		table[index] = result;
+		return result;
+	}
+
+	/**
+	 * Once the cycle in which they have been released is over, clears the rows released and makes them reusable. Must
+	 * be called under the write lock
+	 */
+	private void recycle() {
+		final int current = cycle.getAsInt();
+		if (current == releasedCycle) { return; }
+		final Table t = table;
+		for (final Integer row : released) {
+			for (int slot = 0; slot < types.length; slot++) {
+				if (types[slot] == IType.NONE) {
+					continue;
+				}
+				t.states[slot][row] = UNSET;
+				switch (types[slot]) {
+					case IType.INT:
+						((int[]) t.columns[slot])[row] = 0;
+						break;
+					case IType.FLOAT:
+						((double[]) t.columns[slot])[row] = 0d;
+						break;
+					default:
+						((boolean[]) t.columns[slot])[row] = false;
+				}
+			}
+			free.add(row);
+		}
+		released.clear();
+		releasedCycle = current;
+	}
+
+	/**
+	 * Grows the columns so that they can hold this number of rows. Must be called under the write lock
+	 */
+	private void ensureCapacity(final int size) {
+		final Table t = table;
+		if (size <= t.capacity) { return; }
+		final int capacity = Math.max(size, t.capacity + (t.capacity >> 1));
+		final Object[] columns = new Object[types.length];
+		final byte[][] states = new byte[types.length][];
+		for (int slot = 0; slot < types.length; slot++) {
+			switch (types[slot]) {
+				case IType.INT:
+					columns[slot] = Arrays.copyOf((int[]) t.columns[slot], capacity);
+					break;
+				case IType.FLOAT:
+					columns[slot] = Arrays.copyOf((double[]) t.columns[slot], capacity);
+					break;
+				case IType.BOOL:
+					columns[slot] = Arrays.copyOf((boolean[]) t.columns[slot], capacity);
+					break;
+				default:
+					continue;
+			}
+			states[slot] = Arrays.copyOf(t.states[slot], capacity);
+		}
+		table = new Table(columns, states, capacity);
+	}
+
+	private int rowOf(final int index) {
+		final int[] table = rows;
+		return index < table.length ? table[index] : NO_ROW;
+	}
+
+	/**
+	 * Whether a value (possibly nil) has been set in this slot for the agent at this index
+	 */
+	public boolean has(final int slot, final int index) {
+		final int row = rowOf(index);
+		return row >= 0 && table.states[slot][row] != UNSET;
+	}
+
+	/**
+	 * Returns the value of this slot for the agent at this index, or null if it has not been set or is nil
+	 */
+	public Object get(final int slot, final int index) {
+		final int row = rowOf(index);
+		if (row < 0) { return null; }
+		final Table t = table;
+		if (t.states[slot][row] != SET) { return null; }
+		switch (types[slot]) {
+			case IType.INT:
+				return ((int[]) t.columns[slot])[row];
+			case IType.FLOAT:
+				return ((double[]) t.columns[slot])[row];
+			default:
+				return ((boolean[]) t.columns[slot])[row];
+		}
+	}
+
+	/**
+	 * Sets the value of this slot for the agent at this index. The values set for dead agents are ignored
+	 */
+	public void set(final int slot, final int index, final Object value) {
+		if (rowOf(index) == NO_ROW) {
+			lock.writeLock().lock();
+			try {
+				assignRow(index);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		lock.readLock().lock();
+		try {
+			// The row cannot be released and reused while the read lock is held
+			final int row = rowOf(index);
+			if (row < 0) { return; }
+			final Table t = table;
+			t.states[slot][row] = value == null ? NIL : SET;
+			switch (types[slot]) {
+				case IType.INT:
+					((int[]) t.columns[slot])[row] = value == null ? 0 : ((Number) value).intValue();
+					break;
+				case IType.FLOAT:
+					((double[]) t.columns[slot])[row] = value == null ? 0d : ((Number) value).doubleValue();
+					break;
+				default:
+					((boolean[]) t.columns[slot])[row] = value != null && (Boolean) value;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the slot of the column read by an expression like 'each.attribute', or -1 if the expression is not of
+	 * this form or if the attribute is not kept in a column
+	 */
+	public int columnReadBy(final IExpression expression) {
+		if (!(expression instanceof BinaryVarOperator)) { return -1; }
+		final BinaryVarOperator var = (BinaryVarOperator) expression;
+		if (!(var.getOwner() instanceof EachExpression)) { return -1; }
+		final int slot = layout.slotOf(var.getVar().getName());
+		return isColumn(slot) ? slot : -1;
+	}
+
+	/**
+	 * Sums the values of a column over the agents passed (the values not set or nil counting as 0). Returns an int for
+	 * int columns, a float otherwise
+	 */
+	public Object sum(final Iterable<? extends IAgent> agents, final int slot) {
+		final Table t = table;
+		switch (types[slot]) {
+			case IType.INT: {
+				final int[] column = (int[]) t.columns[slot];
+				int sum = 0;
+				for (final IAgent agent : agents) {
+					final int row = rowOf(agent.getIndex());
+					if (row >= 0 && row < column.length) {
+						sum += column[row];
+					}
+				}
+				return sum;
+			}
+			case IType.FLOAT: {
+				final double[] column = (double[]) t.columns[slot];
+				double sum = 0d;
+				for (final IAgent agent : agents) {
+					final int row = rowOf(agent.getIndex());
+					if (row >= 0 && row < column.length) {
+						sum += column[row];
+					}
+				}
+				return sum;
+			}
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Returns the index of the operator of a comparison between the column and a number (see
+	 * {@link #matches(int, int, double, int)})
+	 */
+	public static int comparisonOf(final String operator) {
+		switch (operator) {
+			case "<":
+				return 0;
+			case "<=":
+				return 1;
+			case ">":
+				return 2;
+			case ">=":
+				return 3;
+			case "=":
+				return 4;
+			case "!=":
+				return 5;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Whether the value of the column for the agent at this index satisfies the comparison with the operand (a value
+	 * not set or nil never does)
+	 */
+	public boolean matches(final int slot, final int index, final double operand, final int comparison) {
+		final int row = rowOf(index);
+		if (row < 0 || !isNumeric(slot)) { return false; }
+		final Table t = table;
+		if (t.states[slot][row] != SET) { return false; }
+		final double value;
+		switch (types[slot]) {
+			case IType.INT:
+				value = ((int[]) t.columns[slot])[row];
+				break;
+			case IType.FLOAT:
+				value = ((double[]) t.columns[slot])[row];
+				break;
+			default:
+				return false;
+		}
+		switch (comparison) {
+			case 0:
+				return value < operand;
+			case 1:
+				return value <= operand;
+			case 2:
+				return value > operand;
+			case 3:
+				return value >= operand;
+			case 4:
+				return value == operand;
+			default:
+				return value != operand;
+		}
+	}
+
+	/**
+	 * Whether the value of the bool column for the agent at this index is true
+	 */
+	public boolean isTrue(final int slot, final int index) {
+		if (types[slot] != IType.BOOL) { return false; }
+		final int row = rowOf(index);
+		if (row < 0) { return false; }
+		final Table t = table;
+		return t.states[slot][row] == SET && ((boolean[]) t.columns[slot])[row];
+	}
+
+	public boolean isNumeric(final int slot) {
+		return types[slot] == IType.INT || types[slot] == IType.FLOAT;
+	}
+
+}
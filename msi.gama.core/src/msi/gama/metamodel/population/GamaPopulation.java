@@ -43,6 +43,7 @@ import com.google.common.collect.Iterables;
 
 import msi.gama.common.geometry.Envelope3D;
 import msi.gama.common.interfaces.IKeyword;
+import msi.gama.kernel.simulation.SimulationClock;
 import msi.gama.metamodel.agent.IAgent;
 import msi.gama.metamodel.agent.IMacroAgent;
 import msi.gama.metamodel.shape.GamaPoint;
@@ -61,6 +62,7 @@ import msi.gama.runtime.GAMA;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.benchmark.StopWatch;
 import msi.gama.runtime.concurrent.GamaExecutorService;
+import msi.gama.runtime.concurrent.StepCostProfile;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.GamaList;
 import msi.gama.util.GamaListFactory;
@@ -71,6 +73,7 @@ import msi.gama.util.file.GamaGridFile;
 import msi.gama.util.graph.AbstractGraphNodeAgent;
 import msi.gaml.compilation.IAgentConstructor;
 import msi.gaml.descriptions.ActionDescription;
+import msi.gaml.descriptions.AttributeLayout;
 import msi.gaml.descriptions.TypeDescription;
 import msi.gaml.expressions.IExpression;
 import msi.gaml.operators.Cast;
@@ -115,6 +118,25 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 	private final int hashCode;
 	private final boolean isInitOverriden, isStepOverriden;
 	private final MirrorPopulationManagement mirrorManagement;
+	/**
+	 * The costs of stepping the agents, used when the species is scheduled with 'parallel: "adaptive"'
+	 */
+	protected final StepCostProfile stepCosts = new StepCostProfile();
+	/**
+	 * The buffer of the writes made during a step, when the species is declared with 'synchronous: true'
+	 */
+	private final SynchronousUpdateBuffer updateBuffer;
+	private final AttributeLayout attributeLayout;
+	private final ColumnarStorage columns;
+	/**
+	 * The slots of the agents that have died, reused by the agents created in the next cycles
+	 */
+	private final RecycledSlots recycledSlots;
+	/**
+	 * The range of indices of the agents being created in bulk, whose indexing by the topology is deferred until they
+	 * are all created (empty when no agents are being created)
+	 */
+	private volatile int deferredIndexingFrom, deferredIndexingTo;
 
 	/**
 	 * Listeners, created in a lazy way
@@ -164,6 +186,10 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 		this.host = host;
 		this.species = species;
 		final TypeDescription ecd = species.getDescription();
+		attributeLayout = species.getDescription().getAttributeLayout();
+		columns = species.isColumnar()
+				? new ColumnarStorage(attributeLayout, species.getDescription(), this::currentCycle) : null;
+		recycledSlots = new RecycledSlots(attributeLayout);
 		orderedVarNames = ecd.getOrderedAttributeNames(INIT_DEPENDENCIES_FACETS).toArray(new String[0]);
 		updatableVars =
 				Iterables.toArray(transform(ecd.getUpdatableAttributeNames(), s -> species.getVar(s)), IVariable.class);
@@ -187,6 +213,7 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 		});
 		isInitOverriden = result[0];
 		isStepOverriden = result[1];
+		updateBuffer = species.isSynchronous() ? new SynchronousUpdateBuffer(this, orderedVarNames) : null;
 
 	}
 
@@ -202,12 +229,88 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 			mirrorManagement.executeOn(scope);
 		}
 		getSpecies().getArchitecture().preStep(scope, this);
-		return stepAgents(scope);
+		if (updateBuffer == null) { return stepAgents(scope); }
+		updateBuffer.open(scope, currentAgentIndex);
+		final SynchronousUpdateBuffer previous = scope.setUpdateBuffer(updateBuffer);
+		try {
+			return stepAgents(scope);
+		} finally {
+			scope.setUpdateBuffer(previous);
+			updateBuffer.commit(scope);
+		}
+
+	}
+
+	@Override
+	public SynchronousUpdateBuffer getUpdateBuffer() {
+		return updateBuffer;
+	}
+
+	@Override
+	public AttributeLayout getAttributeLayout() {
+		return attributeLayout;
+	}
+
+	@Override
+	public ColumnarStorage getColumns() {
+		return columns;
+	}
+
+	@Override
+	public boolean isIndexingDeferred(final IAgent agent) {
+		final int index = agent.getIndex();
+		return index >= deferredIndexingFrom && index < deferredIndexingTo;
+	}
+
+	/**
+	 * Defers the indexing of the next agents created, if they are several and no other creation is deferring it
+	 *
+	 * @return whether the indexing is deferred, in which case indexDeferredAgents() must be called
+	 */
+	private boolean deferIndexing(final int number) {
+		if (number < 2 || deferredIndexingTo > deferredIndexingFrom) { return false; }
+		deferredIndexingFrom = currentAgentIndex;
+		deferredIndexingTo = currentAgentIndex + number;
+		return true;
+	}
+
+	/**
+	 * Ends the deferred indexing and indexes the agents created in one pass
+	 */
+	private void indexDeferredAgents(final IList<T> agents) {
+		deferredIndexingTo = deferredIndexingFrom;
+		if (topology != null) {
+			topology.addAgents(agents);
+		}
+	}
+
+	@Override
+	public Object[] acquireSlots() {
+		return recycledSlots.acquire(currentCycle());
+	}
 
+	/**
+	 * The slots are kept as long as there are less of them than agents alive
+	 */
+	@Override
+	public void releaseSlots(final IAgent agent, final Object[] slots) {
+		if (columns != null) {
+			columns.releaseRow(agent.getIndex());
+		}
+		if (slots != null && slots.length == attributeLayout.size()) {
+			recycledSlots.release(slots, currentCycle(), size());
+		}
+	}
+
+	private int currentCycle() {
+		final IMacroAgent host = getHost();
+		final IScope scope = host == null ? null : host.getScope();
+		final SimulationClock clock = scope == null ? null : scope.getClock();
+		return clock == null ? 0 : clock.getCycle();
 	}
 
 	protected boolean stepAgents(final IScope scope) {
-		return GamaExecutorService.step(scope, this, getSpecies());
+		return GamaExecutorService.step(scope, this, getSpecies(), stepCosts);
 	}
 
 	// @Override
@@ -306,6 +409,7 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 			topology.dispose();
 			topology = null;
 		}
+		recycledSlots.dispose();
 	}
 
 	@SuppressWarnings ("unchecked")
@@ -329,13 +433,20 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 		if (number == 0) { return GamaListFactory.EMPTY_LIST; }
 		final IList<T> list = GamaListFactory.create(getGamlType().getContentType(), number);
 		final IAgentConstructor<T> constr = species.getDescription().getAgentConstructor();
-		for (final IShape geom : geometries.iterable(scope)) {
-			// WARNING Should be redefined somehow
-			final T a = constr.createOneAgent(this, currentAgentIndex++);
-			// final int ind = currentAgentIndex++;
-			// a.setIndex(ind);
-			a.setGeometry(geom);
-			list.add(a);
+		final boolean deferred = deferIndexing(number);
+		try {
+			for (final IShape geom : geometries.iterable(scope)) {
+				// WARNING Should be redefined somehow
+				final T a = constr.createOneAgent(this, currentAgentIndex++);
+				// final int ind = currentAgentIndex++;
+				// a.setIndex(ind);
+				a.setGeometry(geom);
+				list.add(a);
+			}
+		} finally {
+			if (deferred) {
+				indexDeferredAgents(list);
+			}
 		}
 		/* agents. */addAll(list);
 
@@ -373,27 +484,36 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 		if (number == 0) { return GamaListFactory.EMPTY_LIST; }
 		final IList<T> list = GamaListFactory.create(getGamlType().getContentType(), number);
 		final IAgentConstructor<T> constr = species.getDescription().getAgentConstructor();
-		for (int i = 0; i < number; i++) {
-			@SuppressWarnings ("unchecked") final T a = constr.createOneAgent(this, currentAgentIndex++);
-			// final int ind = currentAgentIndex++;
-			// a.setIndex(ind);
-			// Try to grab the location earlier
-			if (initialValues != null && !initialValues.isEmpty()) {
-				final Map<String, Object> init = initialValues.get(i);
-				if (init.containsKey(SHAPE)) {
-					final Object val = init.get(SHAPE);
-					if (val instanceof GamaPoint) {
-						a.setGeometry(new GamaShape((IShape) val));
-					} else {
-						a.setGeometry((IShape) val);
+		// The shapes and locations passed are indexed all at once, before any user code (attributes initializers,
+		// 'init') can look for the agents
+		final boolean deferred = deferIndexing(initialValues == null || initialValues.isEmpty() ? 0 : number);
+		try {
+			for (int i = 0; i < number; i++) {
+				@SuppressWarnings ("unchecked") final T a = constr.createOneAgent(this, currentAgentIndex++);
+				// final int ind = currentAgentIndex++;
+				// a.setIndex(ind);
+				// Try to grab the location earlier
+				if (initialValues != null && !initialValues.isEmpty()) {
+					final Map<String, Object> init = initialValues.get(i);
+					if (init.containsKey(SHAPE)) {
+						final Object val = init.get(SHAPE);
+						if (val instanceof GamaPoint) {
+							a.setGeometry(new GamaShape((IShape) val));
+						} else {
+							a.setGeometry((IShape) val);
+						}
+						init.remove(SHAPE);
+					} else if (init.containsKey(LOCATION)) {
+						a.setLocation((GamaPoint) init.get(LOCATION));
+						init.remove(LOCATION);
 					}
-					init.remove(SHAPE);
-				} else if (init.containsKey(LOCATION)) {
-					a.setLocation((GamaPoint) init.get(LOCATION));
-					init.remove(LOCATION);
 				}
+				list.add(a);
+			}
+		} finally {
+			if (deferred) {
+				indexDeferredAgents(list);
 			}
-			list.add(a);
 		}
 		addAll(list);
 		createVariablesFor(scope, list, initialValues);
@@ -419,6 +539,9 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 	public void createAndUpdateVariablesFor(final IScope scope, final List<T> agents,
 			final List<? extends Map<String, Object>> initialValues, final boolean update) throws GamaRuntimeException {
 		if (agents == null || agents.isEmpty()) { return; }
+		if (columns != null) {
+			columns.assignRows(agents);
+		}
 		final boolean empty = initialValues == null || initialValues.isEmpty();
 		Map<String, Object> inits;
 		for (int i = 0, n = agents.size(); i < n; i++) {
@@ -544,8 +667,11 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 		final boolean isTorus = host.getTopology().isTorus();
 		exp = species.getFacet("use_individual_shapes");
 		final boolean useIndividualShapes = exp == null || Cast.asBool(scope, exp.value(scope));
+		exp = species.getFacet("lazy");
+		final boolean lazy = exp != null && Cast.asBool(scope, exp.value(scope));
 		exp = species.getFacet("use_neighbors_cache");
-		final boolean useNeighborsCache = exp == null || Cast.asBool(scope, exp.value(scope));
+		// The cache of the neighbors holds an array for each cell, which lazy grids avoid by default
+		final boolean useNeighborsCache = exp == null ? !lazy : Cast.asBool(scope, exp.value(scope));
 		exp = species.getFacet("horizontal_orientation");
 		final boolean horizontalOrientation = exp == null || Cast.asBool(scope, exp.value(scope));
 
@@ -572,10 +698,10 @@ public class GamaPopulation<T extends IAgent> extends GamaList<T> implements IPo
 			final GamaGridFile file = (GamaGridFile) (exp != null ? exp.value(scope) : null);
 			if (file == null) {
 				result = new GridTopology(scope, host, rows, columns, isTorus, usesVN, isHexagon, horizontalOrientation,
-						useIndividualShapes, useNeighborsCache, optimizer);
+						useIndividualShapes, useNeighborsCache, optimizer, lazy);
 			} else {
 				result = new GridTopology(scope, host, file, isTorus, usesVN, useIndividualShapes, useNeighborsCache,
-						optimizer);
+						optimizer, lazy);
 			}
 
 		}
@@ -27,6 +27,7 @@ import msi.gama.runtime.IScope;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.IContainer;
 import msi.gama.util.IList;
+import msi.gaml.descriptions.AttributeLayout;
 import msi.gaml.species.ISpecies;
 import msi.gaml.statements.IExecutable;
 import msi.gaml.variables.IVariable;
@@ -176,6 +177,52 @@ public interface IPopulation<T extends IAgent>
 
 	void updateVariables(IScope scope, IAgent a);
 
+	/**
+	 * Returns the buffer in which the writes to the attributes of the agents are kept during a step, or null if they
+	 * are written directly (see the 'synchronous' facet of species)
+	 */
+	default SynchronousUpdateBuffer getUpdateBuffer() {
+		return null;
+	}
+
+	/**
+	 * Returns the slots in which the agents of this population store their attributes, or null if they keep them in a
+	 * map
+	 */
+	default AttributeLayout getAttributeLayout() {
+		return null;
+	}
+
+	/**
+	 * Returns an array able to hold the slots of an agent of this population (see {@link #getAttributeLayout()}), none
+	 * of them being set
+	 */
+	default Object[] acquireSlots() {
+		return getAttributeLayout().newSlots();
+	}
+
+	/**
+	 * Gives back the slots of an agent that has died (and its row in the columns, see {@link #getColumns()}), so that
+	 * they can be reused by the agents created later
+	 */
+	default void releaseSlots(final IAgent agent, final Object[] slots) {}
+
+	/**
+	 * Whether the agent is being created along with other agents, in which case its shape is indexed by the topology
+	 * together with theirs once they are all created (see {@link ITopology#addAgents(java.util.Collection)})
+	 */
+	default boolean isIndexingDeferred(final IAgent agent) {
+		return false;
+	}
+
+	/**
+	 * Returns the arrays in which this population keeps the int, float and bool attributes of its agents, or null if
+	 * they are kept by the agents (see the 'columnar' facet of species)
+	 */
+	default ColumnarStorage getColumns() {
+		return null;
+	}
+
 	/**
 	 * @param scope
 	 * @param coord
@@ -0,0 +1,79 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.population.RecycledSlots.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.population;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import msi.gaml.descriptions.AttributeLayout;
+
+/**
+ * The slots of the agents of a population that have died, reused by the agents created afterwards. A dead agent drops
+ * its slots, but other threads may still be reading them during the cycle in which it dies (when agents die in
+ * parallel, for instance): the slots released during a cycle are therefore only cleared and reused once this cycle is
+ * over. Only the slots are recycled: the agents themselves, their geometries and their entries in the spatial indexes
+ * are not, as a dead agent can still be referenced (in lists, maps or attributes) and must keep its identity.
+ */
+class RecycledSlots {
+
+	private final AttributeLayout layout;
+	/**
+	 * The slots that can be reused
+	 */
+	private final ArrayDeque<Object[]> free = new ArrayDeque<>();
+	/**
+	 * The slots released during the cycle releasedCycle, which may still be read
+	 */
+	private final ArrayDeque<Object[]> released = new ArrayDeque<>();
+	private int releasedCycle = -1;
+
+	RecycledSlots(final AttributeLayout layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * Returns slots able to hold the attributes of an agent, none of them being set
+	 */
+	synchronized Object[] acquire(final int cycle) {
+		recycle(cycle);
+		final Object[] result = free.poll();
+		return result == null ? layout.newSlots() : result;
+	}
+
+	/**
+	 * Keeps the slots of an agent that has died, unless more than max slots are already kept
+	 */
+	synchronized void release(final Object[] slots, final int cycle, final int max) {
+		recycle(cycle);
+		if (free.size() + released.size() < max) {
+			released.add(slots);
+		}
+	}
+
+	/**
+	 * Once the cycle in which they have been released is over, clears the slots released and makes them reusable
+	 */
+	private void recycle(final int cycle) {
+		if (cycle == releasedCycle) { return; }
+		for (final Object[] slots : released) {
+			Arrays.fill(slots, AttributeLayout.UNSET);
+			free.add(slots);
+		}
+		released.clear();
+		releasedCycle = cycle;
+	}
+
+	synchronized void dispose() {
+		free.clear();
+		released.clear();
+	}
+
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.population.SynchronousUpdateBuffer.java, in plugin msi.gama.core, is part of the source code of
+ * the GAMA modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.population;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import msi.gama.common.interfaces.IKeyword;
+import msi.gama.common.interfaces.IStepable;
+import msi.gama.common.util.RandomUtils;
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.shape.ILocation;
+import msi.gama.metamodel.shape.IShape;
+import msi.gama.runtime.IScope;
+import msi.gama.runtime.exceptions.GamaRuntimeException;
+import msi.gaml.variables.IVariable;
+
+/**
+ * The shadow buffer used by the populations of species declared with 'synchronous: true'. While such a population is
+ * stepped, the values written to the attributes of its agents are kept aside instead of being assigned, so that every
+ * agent reads the values of the previous step whatever the order (or the thread) in which the agents are stepped. They
+ * are committed once all the agents have been stepped.
+ *
+ * The buffer is set in the scope in which the population is stepped, and the scope records the agent it steps, so
+ * that the writes made by this agent (or by the agents it asks) are attributed to it. When several agents write the
+ * same attribute of the same agent, the value written by the agent with the highest index wins, which does not depend
+ * on the scheduling of the tasks when the species is stepped in parallel. The changes made directly by the primitives
+ * of skills (e.g. the moves of the 'moving' skill), which do not go through the variables, are buffered as well and
+ * assigned as they are. Each agent also draws its random numbers from its own stream, seeded from the seed of the
+ * simulation and its index, so that they do not depend on the order in which the agents are stepped either. Agents
+ * created during the step are not buffered.
+ */
+public class SynchronousUpdateBuffer {
+
+	private static final Object NONE = new Object();
+	/**
+	 * The number of buffers open. The writes made directly in the agents only look for the buffer of their population
+	 * when one of them is open
+	 */
+	private static final AtomicInteger OPENED = new AtomicInteger();
+	/**
+	 * The agent stepped by the current thread in the buffer of its population, used to attribute the writes made
+	 * directly in the agents, which do not have access to the scope
+	 */
+	private static final ThreadLocal<IAgent> STEPPED = new ThreadLocal<>();
+
+	/**
+	 * The values written to the attributes of one agent, by position in the ordered names of the attributes, the index
+	 * of the agent that wrote each of them and whether they have been written directly in the agent
+	 */
+	static class Pending {
+		final Object[] values;
+		final int[] writers;
+		final boolean[] direct;
+
+		Pending(final int size) {
+			values = new Object[size];
+			writers = new int[size];
+			direct = new boolean[size];
+			Arrays.fill(values, NONE);
+		}
+
+		synchronized void put(final int position, final int writer, final Object value, final boolean isDirect) {
+			if (values[position] == NONE || writer >= writers[position]) {
+				values[position] = value;
+				writers[position] = writer;
+				direct[position] = isDirect;
+			}
+		}
+	}
+
+	private final IPopulation<? extends IAgent> population;
+	private final String[] names;
+	private final Map<String, Integer> positions = new HashMap<>();
+	private final Map<IAgent, Pending> pending = new ConcurrentHashMap<>();
+	private volatile boolean open;
+	private int firstCreatedIndex;
+	/**
+	 * The random streams of the agents, by index, created the first time they are stepped and kept from one step to
+	 * the next. Each index is only used by the thread that steps its agent
+	 */
+	private RandomUtils[] randoms = new RandomUtils[0];
+	private Double seed;
+	private String generator;
+
+	SynchronousUpdateBuffer(final IPopulation<? extends IAgent> population, final String[] names) {
+		this.population = population;
+		this.names = names;
+		for (int i = 0; i < names.length; i++) {
+			positions.put(names[i], i);
+		}
+	}
+
+	/**
+	 * Starts buffering the writes. Agents whose index is equal or above firstCreatedIndex are created during the step
+	 * and their attributes are written directly. The seed and the generator of the random streams of the agents are
+	 * the ones of the scope when the population is stepped for the first time
+	 */
+	void open(final IScope scope, final int firstCreatedIndex) {
+		if (seed == null) {
+			final RandomUtils random = scope.getRandom();
+			seed = random.getSeed();
+			generator = random.getRngName();
+		}
+		if (randoms.length < firstCreatedIndex) {
+			randoms = Arrays.copyOf(randoms, firstCreatedIndex);
+		}
+		this.firstCreatedIndex = firstCreatedIndex;
+		if (!open) {
+			OPENED.incrementAndGet();
+			open = true;
+		}
+	}
+
+	/**
+	 * Whether this agent is stepped within this buffer, i.e. the buffer is open and the agent belongs to the population
+	 * and is not new
+	 */
+	public boolean buffers(final IStepable agent) {
+		return open && agent instanceof IAgent && ((IAgent) agent).getPopulation() == population
+				&& ((IAgent) agent).getIndex() < firstCreatedIndex;
+	}
+
+	/**
+	 * The random stream of this agent (which must be stepped within this buffer), seeded from the seed of the
+	 * simulation and the index of the agent
+	 */
+	public RandomUtils randomOf(final IAgent agent) {
+		final int index = agent.getIndex();
+		RandomUtils result = randoms[index];
+		if (result == null) {
+			result = new RandomUtils(RandomUtils.derivedSeed(seed, index), generator);
+			randoms[index] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Declares the agent stepped by the current thread, so that the writes made directly in the agents are attributed
+	 * to it
+	 *
+	 * @return the agent stepped before, to be restored by exit()
+	 */
+	public static IAgent enter(final IAgent agent) {
+		final IAgent previous = STEPPED.get();
+		STEPPED.set(agent);
+		return previous;
+	}
+
+	public static void exit(final IAgent previous) {
+		if (previous == null) {
+			STEPPED.remove();
+		} else {
+			STEPPED.set(previous);
+		}
+	}
+
+	/**
+	 * Keeps the value assigned to the variable aside if the buffer is open and the agent belongs to the population and
+	 * is not new.
+	 *
+	 * @param writer
+	 *            the agent stepped when the value is assigned
+	 * @return true if the value has been buffered, false if it must be written directly
+	 */
+	public boolean defer(final IAgent agent, final IVariable var, final Object value, final IAgent writer) {
+		return put(agent, var.getName(), value, writer, false);
+	}
+
+	/**
+	 * Keeps aside a value written directly in the agent (by the primitives of skills, for instance), if the current
+	 * thread steps the population of the agent synchronously. Called by the agents before they write an attribute,
+	 * their location or their shape.
+	 *
+	 * @return true if the value has been buffered, false if it must be written directly
+	 */
+	public static boolean deferDirect(final IAgent agent, final String name, final Object value) {
+		if (OPENED.get() == 0) { return false; }
+		final IAgent writer = STEPPED.get();
+		if (writer == null) { return false; }
+		final IPopulation<? extends IAgent> population = agent.getPopulation();
+		if (population == null) { return false; }
+		final SynchronousUpdateBuffer buffer = population.getUpdateBuffer();
+		return buffer != null && buffer.put(agent, name, value, writer, true);
+	}
+
+	private boolean put(final IAgent agent, final String name, final Object value, final IAgent writer,
+			final boolean direct) {
+		if (!open || agent.getPopulation() != population || agent.getIndex() >= firstCreatedIndex) { return false; }
+		final Integer position = positions.get(name);
+		if (position == null) { return false; }
+		final int index = writer != null && writer.getPopulation() == population ? writer.getIndex() : -1;
+		// The locations passed to the agents may be modified by the caller afterwards
+		final Object kept = direct && value instanceof ILocation ? ((ILocation) value).copy(null) : value;
+		pending.computeIfAbsent(agent, a -> new Pending(names.length)).put(position, index, kept, direct);
+		return true;
+	}
+
+	/**
+	 * Stops buffering and assigns the pending values, agent by agent in the order of their indices and, for each
+	 * agent, in the order in which its attributes are initialized. The values written directly are assigned directly
+	 * again, the others through the variables. Dead agents are skipped
+	 */
+	void commit(final IScope scope) throws GamaRuntimeException {
+		if (open) {
+			open = false;
+			OPENED.decrementAndGet();
+		}
+		if (pending.isEmpty()) { return; }
+		final IAgent[] agents = pending.keySet().toArray(new IAgent[pending.size()]);
+		Arrays.sort(agents, Comparator.comparingInt(IAgent::getIndex));
+		try {
+			for (final IAgent agent : agents) {
+				if (agent.dead()) {
+					continue;
+				}
+				final Pending values = pending.get(agent);
+				for (int i = 0; i < names.length; i++) {
+					if (values.values[i] == NONE) {
+						continue;
+					}
+					if (values.direct[i]) {
+						writeDirectly(agent, names[i], values.values[i]);
+					} else {
+						scope.setAgentVarValue(agent, names[i], values.values[i]);
+					}
+				}
+			}
+		} finally {
+			pending.clear();
+		}
+	}
+
+	private static void writeDirectly(final IAgent agent, final String name, final Object value) {
+		switch (name) {
+			case IKeyword.LOCATION:
+				agent.setLocation((ILocation) value);
+				break;
+			case IKeyword.SHAPE:
+				agent.setGeometry((IShape) value);
+				break;
+			default:
+				agent.setAttribute(name, value);
+		}
+	}
+
+}
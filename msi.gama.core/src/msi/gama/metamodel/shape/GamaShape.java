@@ -25,7 +25,9 @@ import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.MultiLineString;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.Polygonal;
 import com.vividsolutions.jts.geom.TopologyException;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import com.vividsolutions.jts.util.AssertionFailedException;
 
 import msi.gama.common.geometry.AxisAngle;
@@ -59,9 +61,29 @@ public class GamaShape implements IShape {
 		private Type type;
 	}
 
+	/**
+	 * The prepared version of a geometry, valid as long as the geometry of the shape is the same. It is forgotten (see
+	 * {@link GamaShape#forgetPrepared()}) whenever the shape replaces its geometry or changes it in place; the
+	 * geometries changed in place by other means are not supported
+	 */
+	static class Prepared {
+		final Geometry geometry;
+		final PreparedGeometry prepared;
+
+		Prepared(final Geometry geometry, final PreparedGeometry prepared) {
+			this.geometry = geometry;
+			this.prepared = prepared;
+		}
+	}
+
 	protected Geometry geometry;
 	private IAgent agent;
 	protected IMap<String, Object> attributes;
+	private volatile Prepared prepared;
+	/**
+	 * The polygon tested once and not changed since, which is prepared if it is tested again
+	 */
+	private volatile Geometry tested;
 
 	public GamaShape(final Geometry geom) {
 		setInnerGeometry(geom);
@@ -313,6 +335,7 @@ public class GamaShape implements IShape {
 		} else {
 			translate(geometry, getLocation(), l.toGamaPoint());
 		}
+		forgetPrepared();
 	}
 
 	public GamaShape translatedTo(final IScope scope, final ILocation target) {
@@ -471,6 +494,42 @@ public class GamaShape implements IShape {
 		return Envelope3D.of(this);
 	}
 
+	@Override
+	public PreparedGeometry getPreparedGeometry() {
+		final Geometry g = geometry;
+		if (g == null) { return null; }
+		final Prepared p = prepared;
+		if (p != null && p.geometry == g) { return p.prepared; }
+		final PreparedGeometry result = GeometryUtils.PREPARED_GEOMETRY_FACTORY.create(g);
+		prepared = new Prepared(g, result);
+		return result;
+	}
+
+	/**
+	 * Returns the prepared version of the geometry if it is a polygon that has not changed since the previous test, so
+	 * that the static polygons tested many times (land use, buildings, etc.) are prepared once, while the moving ones
+	 * are not prepared at all. Returns null otherwise.
+	 */
+	private PreparedGeometry getPreparedGeometryIfStatic() {
+		final Geometry g = geometry;
+		if (!(g instanceof Polygonal)) { return null; }
+		final Prepared p = prepared;
+		if (p != null && p.geometry == g) { return p.prepared; }
+		if (tested != g) {
+			tested = g;
+			return null;
+		}
+		return getPreparedGeometry();
+	}
+
+	/**
+	 * Forgets the prepared version of the geometry, which has been replaced or changed in place
+	 */
+	private void forgetPrepared() {
+		prepared = null;
+		tested = null;
+	}
+
 	@Override
 	public IAgent getAgent() {
 		return agent;
@@ -485,6 +544,7 @@ public class GamaShape implements IShape {
 	public void setInnerGeometry(final Geometry geom) {
 		if (geom == null) {
 			geometry = null;
+			forgetPrepared();
 			return;
 		}
 		if (geom.isEmpty()) {
@@ -496,6 +556,7 @@ public class GamaShape implements IShape {
 		} else {
 			geometry = geom;
 		}
+		forgetPrepared();
 	}
 
 	@Override
@@ -520,6 +581,7 @@ public class GamaShape implements IShape {
 	@Override
 	public void dispose() {
 		agent = null;
+		forgetPrepared();
 		if (attributes != null) {
 			attributes.clear();
 		}
@@ -565,8 +627,10 @@ public class GamaShape implements IShape {
 	@Override
 	public boolean covers(final IShape g) {
 		// WARNING Only 2D now
-		if (g.isPoint()) { return pl.intersects((Coordinate) g.getLocation(), geometry); }
+		final PreparedGeometry pg = getPreparedGeometryIfStatic();
+		if (pg == null && g.isPoint()) { return pl.intersects((Coordinate) g.getLocation(), geometry); }
 		try {
+			if (pg != null) { return pg.covers(g.getInnerGeometry()); }
 			return geometry.covers(g.getInnerGeometry());
 		} catch (final TopologyException e) {
 			try {
@@ -608,8 +672,10 @@ public class GamaShape implements IShape {
 	@Override
 	public boolean intersects(final IShape g) {
 		// WARNING Only 2D now
-		if (g.isPoint()) { return pl.intersects((Coordinate) g.getLocation(), getInnerGeometry()); }
+		final PreparedGeometry pg = getPreparedGeometryIfStatic();
+		if (pg == null && g.isPoint()) { return pl.intersects((Coordinate) g.getLocation(), getInnerGeometry()); }
 		try {
+			if (pg != null) { return pg.intersects(g.getInnerGeometry()); }
 			return getInnerGeometry().intersects(g.getInnerGeometry());
 		} catch (final TopologyException e) {
 			try {
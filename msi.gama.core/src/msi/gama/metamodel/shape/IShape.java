@@ -15,9 +15,11 @@ import java.util.Map;
 import java.util.Set;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import com.vividsolutions.jts.io.WKTWriter;
 
 import msi.gama.common.geometry.Envelope3D;
+import msi.gama.common.geometry.GeometryUtils;
 import msi.gama.common.interfaces.IAttributed;
 import msi.gama.common.interfaces.ILocated;
 import msi.gama.common.interfaces.IValue;
@@ -172,6 +174,14 @@ public interface IShape extends ILocated, IValue, IAttributed {
 
 	Geometry getInnerGeometry();
 
+	/**
+	 * Returns the inner geometry prepared for repeated intersection and cover tests. Shapes can cache it as long as
+	 * their geometry does not change (see GamaShape)
+	 */
+	default PreparedGeometry getPreparedGeometry() {
+		return GeometryUtils.PREPARED_GEOMETRY_FACTORY.create(getInnerGeometry());
+	}
+
 	boolean intersects(IShape g);
 
 	boolean isLine();
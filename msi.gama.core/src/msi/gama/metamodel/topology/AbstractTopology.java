@@ -21,7 +21,6 @@ import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.prep.PreparedGeometry;
-import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.geom.util.AffineTransformation;
 
 import msi.gama.common.geometry.Envelope3D;
@@ -215,6 +214,8 @@ public abstract class AbstractTopology implements ITopology {
 
 	@Override
 	public void updateAgent(final Envelope3D previous, final IAgent agent) {
+		// The agents created in bulk are indexed all at once, see addAgents()
+		if (agent.getPopulation().isIndexingDeferred(agent)) { return; }
 		if (GamaPreferences.External.QUADTREE_OPTIMIZATION.getValue()) {
 			if (speciesInserted.contains(agent.getSpecies())) {
 				updateAgentBase(previous, agent);
@@ -224,7 +225,26 @@ public abstract class AbstractTopology implements ITopology {
 		}
 	}
 
+	@Override
+	public void addAgents(final Collection<? extends IAgent> agents) {
+		final boolean lazy = GamaPreferences.External.QUADTREE_OPTIMIZATION.getValue();
+		final List<IAgent> inserted = new ArrayList<>(agents.size());
+		for (final IAgent agent : agents) {
+			if (agent != null && !agent.dead() && agent.getInnerGeometry() != null
+					&& (!lazy || speciesInserted.contains(agent.getSpecies()))) {
+				inserted.add(agent);
+			}
+		}
+		if (!inserted.isEmpty()) {
+			getSpatialIndex().insertAll(inserted);
+		}
+	}
+
 	public void updateAgentBase(final Envelope3D previous, final IAgent agent) {
+		if (agent.getSpecies().hasDeferredIndexing() && getSpatialIndex() instanceof ISpatialIndex.Compound) {
+			((ISpatialIndex.Compound) getSpatialIndex()).updateLater(previous, agent);
+			return;
+		}
 		if (previous != null && !previous.isNull()) {
 			getSpatialIndex().remove(previous, agent);
 		}
@@ -381,18 +401,22 @@ public abstract class AbstractTopology implements ITopology {
 				return getSpatialIndex().firstAtDistance(scope, source, 0, filter, number, alreadyChosen);
 			}
 		}
-		final Geometry g0 = returnToroidalGeom(source.getGeometry());
-		final Map<Geometry, IAgent> agents = getTororoidalAgents(source, scope, filter);
-		agents.remove(g0);
-		if (agents.size() <= number) { return agents.values(); }
-		final List<Geometry> ggs = new ArrayList<>(agents.keySet());
-		scope.getRandom().shuffleInPlace(ggs);
-		final Ordering<Geometry> ordering = Ordering.natural().onResultOf(input -> g0.distance(input));
-		final IList<IAgent> shapes = GamaListFactory.create(Types.AGENT);
-		for (final Geometry g : ordering.leastOf(ggs, number)) {
-			shapes.add(agents.get(g));
+		// The closest agents on the torus are among the closest agents of the copies of the source
+		final List<IShape> copies = toroidalCopiesOf(source, Double.POSITIVE_INFINITY);
+		try (ICollector<IAgent> candidates = Collector.getOrderedSet();
+				ICollector<IAgent> alreadyChosen = Collector.getList()) {
+			for (final IShape copy : copies) {
+				candidates.addAll(getSpatialIndex().firstAtDistance(scope, copy, 0, filter, number, alreadyChosen));
+			}
+			candidates.remove(source.getAgent());
+			final IList<IAgent> shapes = GamaListFactory.create(Types.AGENT);
+			shapes.addAll(candidates.items());
+			if (shapes.size() <= number) { return shapes; }
+			scope.getRandom().shuffleInPlace(shapes);
+			final Ordering<IShape> ordering =
+					Ordering.natural().onResultOf(input -> toroidalDistance(copies, input));
+			return GamaListFactory.wrap(Types.AGENT, ordering.leastOf(shapes, number));
 		}
-		return shapes;
 	}
 
 	@Override
@@ -400,16 +424,13 @@ public abstract class AbstractTopology implements ITopology {
 		insertAgents(scope, filter);
 		if (!isTorus()) { return getSpatialIndex().firstAtDistance(scope, source, 0, filter); }
 		IAgent result = null;
-		final Geometry g0 = returnToroidalGeom(source.getGeometry());
-		final Map<Geometry, IAgent> agents = getTororoidalAgents(source, scope, filter);
-
 		double distMin = Double.MAX_VALUE;
-		for (final Geometry g1 : agents.keySet()) {
-			final IAgent ag = agents.get(g1);
-			if (source.getAgent() != null && ag == source.getAgent()) {
+		for (final IShape copy : toroidalCopiesOf(source, Double.POSITIVE_INFINITY)) {
+			final IAgent ag = getSpatialIndex().firstAtDistance(scope, copy, 0, filter);
+			if (ag == null) {
 				continue;
 			}
-			final double dist = g0.distance(g1);
+			final double dist = copy.euclidianDistanceTo(ag);
 			if (dist < distMin) {
 				distMin = dist;
 				result = ag;
@@ -482,22 +503,13 @@ public abstract class AbstractTopology implements ITopology {
 
 		if (!isTorus()) { return getSpatialIndex().allAtDistance(scope, source, distance, filter); }
 
-		// FOR TORUS ENVIRONMENTS ONLY
+		// FOR TORUS ENVIRONMENTS ONLY: the copies of the source that reach the environment are queried in turn
 
-		final Geometry g0 = returnToroidalGeom(source.getGeometry());
-		try (ICollector<IAgent> agents = Collector.getSet()) {
-			final Map<Geometry, IAgent> agentsMap = getTororoidalAgents(source, scope, filter);
-			final IAgent sourceAgent = source.getAgent();
-			for (final Geometry g1 : agentsMap.keySet()) {
-				final IAgent ag = agentsMap.get(g1);
-				if (sourceAgent != null && ag == sourceAgent) {
-					continue;
-				}
-				final double dist = g0.distance(g1);
-				if (dist <= distance) {
-					agents.add(ag);
-				}
+		try (ICollector<IAgent> agents = Collector.getOrderedSet()) {
+			for (final IShape copy : toroidalCopiesOf(source, distance)) {
+				agents.addAll(getSpatialIndex().allAtDistance(scope, copy, distance, filter));
 			}
+			agents.remove(source.getAgent());
 			return agents.items();
 		}
 
@@ -519,50 +531,74 @@ public abstract class AbstractTopology implements ITopology {
 		// scope = null;
 	}
 
-	private final PreparedGeometryFactory pgFact = new PreparedGeometryFactory();
-
 	@Override
 	public Collection<IAgent> getAgentsIn(final IScope scope, final IShape source, final IAgentFilter f,
 			final boolean covered) {
 		if (source == null) { return Collections.EMPTY_SET; }
 		insertAgents(scope, f);
-		if (!isTorus()) {
-			final Envelope3D envelope = source.getEnvelope().intersection(environment.getEnvelope());
-			try {
-				final Collection<IAgent> shapes = getSpatialIndex().allInEnvelope(scope, source, envelope, f, covered);
-				final PreparedGeometry pg = pgFact.create(source.getInnerGeometry());
-				shapes.removeIf(each -> {
-					if (each.dead()) { return true; }
-					final Geometry geom = each.getInnerGeometry();
-					return !(covered ? pg.covers(geom) : pg.intersects(geom));
-				});
-				return shapes;
-			} finally {
-				envelope.dispose();
+		if (!isTorus()) { return agentsIn(scope, source, f, covered); }
+		try (final ICollector<IAgent> result = Collector.getOrderedSet()) {
+			for (final IShape copy : toroidalCopiesOf(source, 0)) {
+				result.addAll(agentsIn(scope, copy, f, covered));
 			}
+			result.remove(source.getAgent());
+			return result.items();
 		}
-		try (final ICollector<IAgent> result = Collector.getSet()) {
-
-			for (final IShape sourceSub : source.getGeometries()) {
-				final Geometry sourceTo = returnToroidalGeom(sourceSub);
-				final PreparedGeometry pg = pgFact.create(sourceTo);
-				final Map<Geometry, IAgent> agentsMap = getTororoidalAgents(source, scope, f);
-				for (final Geometry sh : agentsMap.keySet()) {
-					final IAgent ag = agentsMap.get(sh);
-					if (ag != null && !ag.dead()) {
-						if (source.getAgent() != null && ag == source.getAgent()) {
-							continue;
-						}
-						final Geometry geom = ag.getInnerGeometry();
-
-						if (covered ? pg.covers(geom) : pg.intersects(geom)) {
-							result.add(ag);
-						}
-					}
-				}
+	}
+
+	private Collection<IAgent> agentsIn(final IScope scope, final IShape source, final IAgentFilter f,
+			final boolean covered) {
+		final Envelope3D envelope = source.getEnvelope().intersection(environment.getEnvelope());
+		try {
+			final Collection<IAgent> shapes = getSpatialIndex().allInEnvelope(scope, source, envelope, f, covered);
+			final PreparedGeometry pg = source.getPreparedGeometry();
+			shapes.removeIf(each -> {
+				if (each.dead()) { return true; }
+				final Geometry geom = each.getInnerGeometry();
+				return !(covered ? pg.covers(geom) : pg.intersects(geom));
+			});
+			return shapes;
+		} finally {
+			envelope.dispose();
+		}
+	}
+
+	/**
+	 * Returns the source and its copies in the 8 virtual environments surrounding the environment of a torus, limited
+	 * to the ones that come within this distance of the environment. The copies keep the agent of the source, so that
+	 * the filters of the spatial index exclude it from the results as they do for the source
+	 */
+	protected List<IShape> toroidalCopiesOf(final IShape source, final double distance) {
+		final List<IShape> copies = new ArrayList<>(9);
+		copies.add(source);
+		final Envelope bounds = environment.getEnvelope();
+		final Envelope reach = new Envelope(source.getEnvelope());
+		if (!Double.isInfinite(distance)) {
+			reach.expandBy(distance);
+		}
+		final AffineTransformation at = new AffineTransformation();
+		for (final double[] vector : getAdjustedXYVector()) {
+			if (!Double.isInfinite(distance) && !bounds.intersects(new Envelope(reach.getMinX() + vector[0],
+					reach.getMaxX() + vector[0], reach.getMinY() + vector[1], reach.getMaxY() + vector[1]))) {
+				continue;
 			}
-			return result.items();
+			at.setToTranslation(vector[0], vector[1]);
+			final IShape copy = new GamaShape(at.transform(source.getInnerGeometry()));
+			copy.setAgent(source.getAgent());
+			copies.add(copy);
+		}
+		return copies;
+	}
+
+	/**
+	 * The distance, on a torus, between the shape and the source whose copies are passed
+	 */
+	private static double toroidalDistance(final List<IShape> copies, final IShape shape) {
+		double min = Double.MAX_VALUE;
+		for (final IShape copy : copies) {
+			min = Math.min(min, copy.euclidianDistanceTo(shape));
 		}
+		return min;
 	}
 
 	@Override
@@ -13,8 +13,12 @@ package msi.gama.metamodel.topology;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 import com.google.common.collect.Ordering;
 import com.vividsolutions.jts.geom.Envelope;
@@ -31,8 +35,80 @@ import msi.gama.util.ICollector;
 
 public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compound {
 
+	/**
+	 * The moves of the agents of a population that have not been applied to the index yet (see the 'deferred_indexing'
+	 * facet of species), with the envelope under which each agent is still indexed (or an empty envelope if it is not
+	 * indexed). Moves are recorded concurrently, but never while they are being applied
+	 */
+	static class PendingMoves {
+		final Map<IAgent, Envelope3D> indexed = new ConcurrentHashMap<>();
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		void record(final Envelope3D previous, final IAgent agent) {
+			final Envelope3D envelope = previous == null ? Envelope3D.EMPTY : previous;
+			lock.readLock().lock();
+			try {
+				// Only the first move since the last application matters: the agent is still indexed under it
+				if (indexed.putIfAbsent(agent, envelope) != null && envelope != Envelope3D.EMPTY) {
+					envelope.dispose();
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Forgets the move of the agent, if any, and returns the envelope under which it is still indexed
+		 */
+		Envelope3D forget(final IAgent agent) {
+			lock.readLock().lock();
+			try {
+				return indexed.remove(agent);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Removes the agents moved from their previous places in the index, and inserts them all at once (in the order
+		 * of their indices) at their current places. The moves are only forgotten once the agents are back in the index:
+		 * a query that finds no pending moves (which requires the read lock, so as to wait for an application in
+		 * progress) can therefore rely on the index
+		 */
+		void applyTo(final ISpatialIndex index) {
+			if (isEmpty()) { return; }
+			lock.writeLock().lock();
+			try {
+				final List<IAgent> moved = new ArrayList<>(indexed.size());
+				indexed.forEach((agent, previous) -> {
+					if (!previous.isNull()) {
+						index.remove(previous, agent);
+					}
+					if (!agent.dead()) {
+						moved.add(agent);
+					}
+				});
+				moved.sort(Comparator.comparingInt(IAgent::getIndex));
+				index.insertAll(moved);
+				indexed.clear();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		private boolean isEmpty() {
+			lock.readLock().lock();
+			try {
+				return indexed.isEmpty();
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
 	boolean disposed = false, unique = true;
 	private Map<IPopulation<? extends IAgent>, ISpatialIndex> spatialIndexes;
+	private final Map<IPopulation<? extends IAgent>, PendingMoves> pendingMoves = new ConcurrentHashMap<>();
 	private final ICollector<ISpatialIndex> uniqueIndexes;
 	private GamaQuadTree rootIndex;
 	final protected double[] steps;
@@ -67,9 +143,64 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 	}
 
 	@Override
-	public void remove(final Envelope3D previous, final IAgent agent) {
+	public void insertAll(final Collection<? extends IAgent> agents) {
+		if (disposed) { return; }
+		if (unique) {
+			rootIndex.insertAll(agents);
+			return;
+		}
+		// Agents are grouped by index, keeping their order within each index
+		final Map<ISpatialIndex, List<IAgent>> groups = GamaMapFactory.create();
+		for (final IAgent a : agents) {
+			if (a == null) {
+				continue;
+			}
+			final ISpatialIndex si = findSpatialIndex(a.getPopulation());
+			if (si != null) {
+				groups.computeIfAbsent(si, k -> new ArrayList<>()).add(a);
+			}
+		}
+		groups.forEach(ISpatialIndex::insertAll);
+	}
+
+	@Override
+	public void updateLater(final Envelope3D previous, final IAgent agent) {
+		if (disposed) { return; }
+		if (agent == null) { return; }
+		pendingMoves.computeIfAbsent(agent.getPopulation(), p -> new PendingMoves()).record(previous, agent);
+	}
+
+	/**
+	 * Applies the pending moves of the population (or of all the populations if it is null) before a query
+	 */
+	private void applyPendingMoves(final IPopulation<? extends IAgent> pop) {
+		if (pendingMoves.isEmpty()) { return; }
+		if (pop == null) {
+			pendingMoves.forEach((p, moves) -> moves.applyTo(findSpatialIndex(p)));
+			return;
+		}
+		final PendingMoves moves = pendingMoves.get(pop);
+		if (moves != null) {
+			moves.applyTo(findSpatialIndex(pop));
+		}
+	}
+
+	@Override
+	public void remove(final Envelope3D envelope, final IAgent agent) {
 		if (disposed) { return; }
 		if (agent == null) { return; }
+		Envelope3D previous = envelope;
+		final PendingMoves moves = pendingMoves.isEmpty() ? null : pendingMoves.get(agent.getPopulation());
+		if (moves != null) {
+			final Envelope3D indexed = moves.forget(agent);
+			if (indexed != null) {
+				if (previous != null) {
+					previous.dispose();
+				}
+				if (indexed.isNull()) { return; }
+				previous = indexed;
+			}
+		}
 		if (unique) {
 			rootIndex.remove(previous, agent);
 			return;
@@ -162,6 +293,8 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 	public Collection<IAgent> firstAtDistance(final IScope scope, final IShape source, final double dist,
 			final IAgentFilter f, final int number, final Collection<IAgent> alreadyChosen) {
 		// TODO -- Verify : dist not taken into account here. Normal ?
+		final Collection<IAgent> nearest = nearest(scope, source, f, number, alreadyChosen);
+		if (nearest != null) { return nearest; }
 		final IPopulation<? extends IAgent> pop = f.getPopulation(scope);
 		if (pop == null) { return firstAtDistance(scope, source, f, number, alreadyChosen); }
 		final ISpatialIndex id = findSpatialIndex(pop);
@@ -172,6 +305,8 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 	@Override
 	public IAgent firstAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f) {
 		// TODO -- Verify : dist not taken into account here. Normal ?
+		final Collection<IAgent> nearest = nearest(scope, source, f, 1, Collections.EMPTY_LIST);
+		if (nearest != null) { return nearest.isEmpty() ? null : nearest.iterator().next(); }
 		final IPopulation<? extends IAgent> pop = f.getPopulation(scope);
 		if (pop == null) { return firstAtDistance(scope, source, f); }
 		final ISpatialIndex id = findSpatialIndex(pop);
@@ -179,12 +314,38 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 		return firstAtDistance(scope, source, f);
 	}
 
+	/**
+	 * Searches the nearest agents in the index of the population of the filter or, if there is none, in all the
+	 * indexes, merging their results. Returns null if one of these indexes cannot search by increasing distance (e.g.
+	 * grids)
+	 */
+	@Override
+	public Collection<IAgent> nearest(final IScope scope, final IShape source, final IAgentFilter f, final int number,
+			final Collection<IAgent> alreadyChosen) {
+		if (disposed) { return null; }
+		final IPopulation<? extends IAgent> pop = f.getPopulation(scope);
+		applyPendingMoves(pop);
+		if (unique) { return rootIndex.nearest(scope, source, f, number, alreadyChosen); }
+		if (pop != null) { return findSpatialIndex(pop).nearest(scope, source, f, number, alreadyChosen); }
+		final NearestAgents found = new NearestAgents();
+		for (final ISpatialIndex si : getAllSpatialIndexes()) {
+			final Collection<IAgent> closest = si.nearest(scope, source, f, number, alreadyChosen);
+			if (closest == null) { return null; }
+			for (final IAgent agent : closest) {
+				found.add(agent, source.euclidianDistanceTo(agent));
+			}
+		}
+		return found.closest(scope, number);
+	}
+
 	@Override
 	public Collection<IAgent> allAtDistance(final IScope scope, final IShape source, final double dist,
 			final IAgentFilter f) {
 		if (disposed) { return Collections.EMPTY_LIST; }
+		final IPopulation<? extends IAgent> pop = f.getPopulation(scope);
+		applyPendingMoves(pop);
 		if (unique) { return rootIndex.allAtDistance(scope, source, dist, f); }
-		final ISpatialIndex id = findSpatialIndex(f.getPopulation(scope));
+		final ISpatialIndex id = findSpatialIndex(pop);
 		if (id == rootIndex) {
 			try (final ICollector<IAgent> agents = Collector.getOrderedSet()) {
 				for (final ISpatialIndex si : getAllSpatialIndexes()) {
@@ -196,12 +357,37 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 		return id.allAtDistance(scope, source, dist, f);
 	}
 
+	@Override
+	public void forEachAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f,
+			final Predicate<IAgent> visitor) {
+		if (disposed) { return; }
+		final IPopulation<? extends IAgent> pop = f.getPopulation(scope);
+		applyPendingMoves(pop);
+		if (unique) {
+			rootIndex.forEachAtDistance(scope, source, dist, f, visitor);
+			return;
+		}
+		final ISpatialIndex id = findSpatialIndex(pop);
+		if (id != rootIndex) {
+			id.forEachAtDistance(scope, source, dist, f, visitor);
+			return;
+		}
+		// Each agent is in only one index. The visit of the next index is skipped if the visitor has asked to stop
+		final boolean[] stopped = { false };
+		for (final ISpatialIndex si : getAllSpatialIndexes()) {
+			si.forEachAtDistance(scope, source, dist, f, agent -> !(stopped[0] = !visitor.test(agent)));
+			if (stopped[0]) { return; }
+		}
+	}
+
 	@Override
 	public Collection<IAgent> allInEnvelope(final IScope scope, final IShape source, final Envelope envelope,
 			final IAgentFilter f, final boolean contained) {
 		if (disposed) { return Collections.EMPTY_LIST; }
+		final IPopulation<? extends IAgent> pop = f.getPopulation(scope);
+		applyPendingMoves(pop);
 		if (unique) { return rootIndex.allInEnvelope(scope, source, envelope, f, contained); }
-		final ISpatialIndex id = findSpatialIndex(f.getPopulation(scope));
+		final ISpatialIndex id = findSpatialIndex(pop);
 		if (id == rootIndex) {
 			try (final ICollector<IAgent> agents = Collector.getOrderedSet()) {
 				for (final ISpatialIndex si : getAllSpatialIndexes()) {
@@ -229,6 +415,7 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 	@Override
 	public void remove(final IPopulation<? extends IAgent> species) {
 		if (disposed) { return; }
+		pendingMoves.remove(species);
 		final ISpatialIndex index = spatialIndexes != null ? spatialIndexes.remove(species) : null;
 		if (index != null) {
 			uniqueIndexes.remove(index);
@@ -237,6 +424,7 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 
 	@Override
 	public void dispose() {
+		pendingMoves.clear();
 		if (spatialIndexes != null) {
 			spatialIndexes.clear();
 		}
@@ -247,6 +435,7 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 
 	@Override
 	public void updateQuadtree(final Envelope envelope) {
+		applyPendingMoves(null);
 		GamaQuadTree tree = rootIndex;
 		final Collection<IAgent> agents = tree.allAgents();
 		final boolean parallel = tree.isParallel();
@@ -261,6 +450,7 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 
 	@Override
 	public Collection<IAgent> allAgents() {
+		applyPendingMoves(null);
 		if (unique) { return rootIndex.allAgents(); }
 		try (final ICollector<IAgent> set = Collector.getOrderedSet()) {
 			for (final ISpatialIndex i : getAllSpatialIndexes()) {
@@ -278,6 +468,7 @@ public class CompoundSpatialIndex extends Object implements ISpatialIndex.Compou
 	public void mergeWith(final Compound comp) {
 		final CompoundSpatialIndex other = (CompoundSpatialIndex) comp;
 		if(null==other) return;
+		other.applyPendingMoves(null);
 		if(null==other.spatialIndexes) { 
 			other.spatialIndexes = GamaMapFactory.create();  
 //			return;
@@ -11,10 +11,15 @@
 
 package msi.gama.metamodel.topology;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 
-import com.google.common.collect.Ordering;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
 
@@ -23,12 +28,12 @@ import msi.gama.metamodel.agent.IAgent;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.metamodel.topology.filter.IAgentFilter;
 import msi.gama.runtime.IScope;
+import msi.gama.runtime.concurrent.GamaExecutorService;
 import msi.gama.util.Collector;
 import msi.gama.util.GamaListFactory;
 import msi.gama.util.GamaMapFactory;
 import msi.gama.util.ICollector;
 import msi.gama.util.IMap;
-import msi.gaml.operators.Maths;
 
 /**
  * A QuadTree allows to quickly find an object on a two-dimensional space.
@@ -50,6 +55,10 @@ public class GamaQuadTree implements ISpatialIndex {
 
 	final QuadNode root;
 	final static int maxCapacity = 100;
+	/**
+	 * The number of agents above which the sub-trees are built concurrently when agents are inserted in bulk
+	 */
+	final static int parallelBulkThreshold = 20000;
 	double minSize = 10;
 	final boolean parallel;
 
@@ -88,6 +97,27 @@ public class GamaQuadTree implements ISpatialIndex {
 		}
 	}
 
+	/**
+	 * Inserts the agents in one pass: the agents are partitioned among the quadrants from the top of the tree, instead
+	 * of being routed from the root one by one, and the large partitions are built concurrently. The tree obtained is
+	 * the same as the one obtained by inserting the agents one by one in the same order.
+	 */
+	@Override
+	public void insertAll(final Collection<? extends IAgent> agents) {
+		final IAgent[] array = new IAgent[agents.size()];
+		final Object[] keys = new Object[array.length];
+		int size = 0;
+		for (final IAgent agent : agents) {
+			if (agent == null) {
+				continue;
+			}
+			array[size] = agent;
+			keys[size++] = agent.isPoint() ? (Coordinate) agent.getLocation() : agent.getEnvelope();
+		}
+		if (size == 0) { return; }
+		root.addAll(array, keys, size);
+	}
+
 	private boolean isPoint(final Envelope env) {
 		return env.getArea() == 0.0;
 	}
@@ -121,15 +151,21 @@ public class GamaQuadTree implements ISpatialIndex {
 	public Collection<IAgent> allAtDistance(final IScope scope, final IShape source, final double dist,
 			final IAgentFilter f) {
 		// TODO filter result by topology's bounds
-		final double exp = dist * Maths.SQRT2;
-		final Envelope3D env = Envelope3D.of(source.getEnvelope());
-		env.expandBy(exp);
+		return IndexQueries.allAtDistance(source, dist, env -> findIntersects(scope, source, env, f));
+	}
+
+	@Override
+	public void forEachAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f,
+			final Predicate<IAgent> visitor) {
+		final Envelope3D env = source.getEnvelope();
+		if (env == null) { return; }
+		env.expandBy(dist);
+		final QueryBuffer buffer = QueryBuffer.acquire();
 		try {
-			final Collection<IAgent> result = findIntersects(scope, source, env, f);
-			if (result.isEmpty()) { return GamaListFactory.create(); }
-			result.removeIf(each -> source.euclidianDistanceTo(each) > dist);
-			return result;
+			root.findIntersects(env, buffer);
+			IndexQueries.visitAtDistance(scope, source, dist, f, buffer, visitor);
 		} finally {
+			buffer.release();
 			env.dispose();
 		}
 	}
@@ -137,43 +173,13 @@ public class GamaQuadTree implements ISpatialIndex {
 	@Override
 	public Collection<IAgent> firstAtDistance(final IScope scope, final IShape source, final double dist,
 			final IAgentFilter f, final int number, final Collection<IAgent> alreadyChosen) {
-		final double exp = dist * Maths.SQRT2;
-		final Envelope3D env = Envelope3D.of(source.getEnvelope());
-		env.expandBy(exp);
-		try {
-			final Collection<IAgent> in_square = findIntersects(scope, source, env, f);
-			in_square.removeAll(alreadyChosen);
-			if (in_square.isEmpty()) { return GamaListFactory.create(); }
-
-			if (in_square.size() <= number) { return in_square; }
-			final Ordering<IShape> ordering = Ordering.natural().onResultOf(input -> source.euclidianDistanceTo(input));
-			return ordering.leastOf(in_square, number);
-		} finally {
-			env.dispose();
-		}
+		return IndexQueries.firstAtDistance(source, dist, number, alreadyChosen,
+				env -> findIntersects(scope, source, env, f));
 	}
 
 	@Override
 	public IAgent firstAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f) {
-		final double exp = dist * Maths.SQRT2;
-		final Envelope3D env = Envelope3D.of(source.getEnvelope());
-		env.expandBy(exp);
-		try {
-			final Collection<IAgent> in_square = findIntersects(scope, source, env, f);
-			if (in_square.isEmpty()) { return null; }
-			double min_distance = dist;
-			IAgent min_agent = null;
-			for (final IAgent a : in_square) {
-				final Double dd = source.euclidianDistanceTo(a);
-				if (dd < min_distance) {
-					min_distance = dd;
-					min_agent = a;
-				}
-			}
-			return min_agent;
-		} finally {
-			env.dispose();
-		}
+		return IndexQueries.firstAtDistance(source, dist, env -> findIntersects(scope, source, env, f));
 	}
 
 	@Override
@@ -182,6 +188,57 @@ public class GamaQuadTree implements ISpatialIndex {
 		return findIntersects(scope, source, envelope, f);
 	}
 
+	/**
+	 * Visits the nodes and the agents by increasing distance to the source (best-first search), the agents that are
+	 * not points being only added once, although they can be in several leaves
+	 */
+	@Override
+	public Collection<IAgent> nearest(final IScope scope, final IShape source, final IAgentFilter f, final int number,
+			final Collection<IAgent> alreadyChosen) {
+		if (number <= 0) { return GamaListFactory.create(); }
+		final Envelope3D from = source.getEnvelope();
+		if (from == null) { return GamaListFactory.create(); }
+		final Set<IAgent> visited = new HashSet<>();
+		final IndexQueries.BestFirstSearch search = new IndexQueries.BestFirstSearch() {
+
+			@Override
+			boolean isNode(final Object item) {
+				return item instanceof QuadNode;
+			}
+
+			@Override
+			void expand(final Object item) {
+				final QuadNode node = (QuadNode) item;
+				final IMap<IAgent, Envelope3D> objects = node.objects;
+				if (objects != null) {
+					for (final Map.Entry<IAgent, Envelope3D> entry : objects.entrySet()) {
+						final Envelope3D env = entry.getValue();
+						if (env != null && visited.add(entry.getKey())) {
+							add(entry.getKey(), env.distance(from));
+						}
+					}
+				}
+				final QuadNode[] nodes = node.nodes;
+				if (nodes != null) {
+					for (final QuadNode child : nodes) {
+						add(child, child.bounds.distance(from));
+					}
+				}
+			}
+
+			@Override
+			IAgent agentOf(final Object item) {
+				return (IAgent) item;
+			}
+		};
+		search.add(root, root.bounds.distance(from));
+		try {
+			return search.nearest(scope, source, f, number, alreadyChosen);
+		} finally {
+			from.dispose();
+		}
+	}
+
 	@Override
 	public Collection<IAgent> allAgents() {
 		try (final ICollector<IAgent> result = Collector.getOrderedSet()) {
@@ -302,6 +359,74 @@ public class GamaQuadTree implements ISpatialIndex {
 			}
 		}
 
+		/**
+		 * Adds the agents in their order, their keys being either their location (points) or their envelope. The leaf
+		 * is filled and split exactly as it would be by successive calls to add()
+		 */
+		public void addAll(final IAgent[] agents, final Object[] keys, final int size) {
+			int i = 0;
+			if (nodes == null) {
+				while (i < size && !shouldSplit()) {
+					final Object key = keys[i];
+					getOrCreateObjects().put(agents[i],
+							key instanceof Envelope3D ? (Envelope3D) key : Envelope3D.of((Coordinate) key));
+					i++;
+				}
+				if (i == size) { return; }
+				split();
+			}
+			final int remaining = size - i;
+			final int[] counts = new int[4];
+			final boolean[][] routes = new boolean[4][remaining];
+			for (int j = 0; j < remaining; j++) {
+				final Object key = keys[i + j];
+				if (key instanceof Envelope3D) {
+					for (int q = 0; q < 4; q++) {
+						if (nodes[q].bounds.intersects((Envelope3D) key)) {
+							routes[q][j] = true;
+							counts[q]++;
+						}
+					}
+				} else {
+					final int q = quadrant((Coordinate) key);
+					routes[q][j] = true;
+					counts[q]++;
+				}
+			}
+			final Runnable[] builds = new Runnable[4];
+			for (int q = 0; q < 4; q++) {
+				if (counts[q] == 0) {
+					continue;
+				}
+				final IAgent[] subAgents = new IAgent[counts[q]];
+				final Object[] subKeys = new Object[counts[q]];
+				for (int j = 0, k = 0; j < remaining; j++) {
+					if (routes[q][j]) {
+						subAgents[k] = agents[i + j];
+						subKeys[k++] = keys[i + j];
+					}
+				}
+				final QuadNode node = nodes[q];
+				builds[q] = () -> node.addAll(subAgents, subKeys, subAgents.length);
+			}
+			if (remaining < parallelBulkThreshold || GamaExecutorService.AGENT_PARALLEL_EXECUTOR == null) {
+				for (final Runnable build : builds) {
+					if (build != null) {
+						build.run();
+					}
+				}
+			} else {
+				// The sub-trees are disjoint, so they can be built concurrently
+				final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+				for (final Runnable build : builds) {
+					if (build != null) {
+						tasks.add(ForkJoinTask.adapt(build));
+					}
+				}
+				GamaExecutorService.executeThreaded(() -> ForkJoinTask.invokeAll(tasks));
+			}
+		}
+
 		int quadrant(final Coordinate p) {
 			final boolean north = p.y >= bounds.getMinY() && p.y < halfy;
 			final boolean west = p.x >= bounds.getMinX() && p.x < halfx;
@@ -334,6 +459,33 @@ public class GamaQuadTree implements ISpatialIndex {
 			}
 		}
 
+		/**
+		 * Same as findIntersects(Envelope, Collection), in a reused buffer. Only the agents that are not points can be
+		 * found in several leaves, so only them are checked for duplicates
+		 */
+		public void findIntersects(final Envelope r, final QueryBuffer result) {
+			if (bounds.intersects(r)) {
+				if (objects != null) {
+					for (final Map.Entry<IAgent, Envelope3D> entry : objects.entrySet()) {
+						final Envelope3D env = entry.getValue();
+						if (env != null && env.intersects(r)) {
+							if (env.getWidth() == 0d && env.getHeight() == 0d) {
+								result.add(entry.getKey());
+							} else {
+								result.addOnce(entry.getKey());
+							}
+						}
+					}
+				}
+				final QuadNode[] nodes = this.nodes;
+				if (nodes != null) {
+					for (final QuadNode node : nodes) {
+						node.findIntersects(r, result);
+					}
+				}
+			}
+		}
+
 		public void findIntersects(final Envelope r, final Collection<IAgent> result) {
 			if (bounds.intersects(r)) {
 				if (objects != null) {
@@ -0,0 +1,580 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.GamaSpatialHash.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+import msi.gama.common.geometry.Envelope3D;
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.shape.IShape;
+import msi.gama.metamodel.topology.filter.IAgentFilter;
+import msi.gama.runtime.IScope;
+import msi.gama.util.Collector;
+import msi.gama.util.GamaListFactory;
+import msi.gama.util.ICollector;
+import msi.gaml.operators.Maths;
+
+/**
+ * A spatial index dedicated to the agents of one population (see the 'spatial_index' facet of species), which divides
+ * the environment in a uniform grid of square cells. Each agent is kept in the cell that contains the centre of its
+ * envelope, in a doubly linked list whose links are stored in primitive arrays indexed by the index of the agents, so
+ * that moving an agent from one cell to another only changes a few integers, without allocating anything.
+ *
+ * It is meant for large populations of small (ideally point) agents that move often. The queries look into the cells
+ * covered by their envelope, enlarged by the largest half-size of the agents indexed so far, which makes this index
+ * ill-suited to agents of very different sizes.
+ *
+ * The index can also be three-dimensional (for agents moving in 3D, see MovingSkill3D), in which case the cells are
+ * cubes and the environment is divided in a number of layers along z. As the extent of the agents along z is not known
+ * in advance, the z coordinates of the cells wrap around the layers: a layer gathers the cells whose z coordinate is
+ * congruent to its number, and the agents found in it are filtered by their z. As the distances between a point and
+ * another shape are computed in 2D, the queries are only filtered along z when they come from a point and when the
+ * index only contains points.
+ *
+ * When the index is parallel, the cells are protected by a number of locks (stripes), each of them guarding the cells
+ * whose number is congruent to its own: an agent moving from one cell to another only locks the stripes of these two
+ * cells (always in the same order), so that agents moved by different threads in different parts of the environment do
+ * not wait for each other. The arrays are only grown while holding all the stripes.
+ */
+public class GamaSpatialHash implements ISpatialIndex {
+
+	/**
+	 * The number of cells along the largest side of the environment when no cell size is given
+	 */
+	public static final int DEFAULT_RESOLUTION = 100;
+	/**
+	 * The number of layers of cells along z of the three-dimensional indexes
+	 */
+	public static final int DEFAULT_LAYERS = 16;
+	private static final int NONE = -1;
+	private static final int MAX_STRIPES = 256;
+	private static final Comparator<IAgent> BY_INDEX = Comparator.comparingInt(IAgent::getIndex);
+
+	private final double minX, minY, minZ, cellSize;
+	private final int columns, rows, layers;
+	private final boolean parallel;
+	/**
+	 * The first agent (index) of each cell, or NONE
+	 */
+	private final int[] heads;
+	/**
+	 * The locks guarding the cells (the cell c being guarded by stripes[c & stripeMask])
+	 */
+	private final ReentrantLock[] stripes;
+	private final int stripeMask;
+	/**
+	 * By agent index: the cell, the previous and next agents in the cell, the centre and half-sizes of the envelope
+	 */
+	private int[] cells, previous, next;
+	private double[] xs, ys, zs, halfWidths, halfHeights, halfDepths;
+	private IAgent[] agents;
+	private volatile int capacity;
+	private volatile double maxHalfWidth, maxHalfHeight, maxHalfDepth;
+	/**
+	 * Whether all the agents indexed so far are points
+	 */
+	private volatile boolean onlyPoints = true;
+
+	public GamaSpatialHash(final Envelope bounds, final double cellSize, final boolean parallel) {
+		this(bounds, cellSize, 1, parallel);
+	}
+
+	/**
+	 * Creates an index whose cells are divided in layers along z if layers is greater than 1
+	 */
+	public GamaSpatialHash(final Envelope bounds, final double cellSize, final int layers, final boolean parallel) {
+		this.parallel = parallel;
+		this.layers = Math.max(1, layers);
+		minX = bounds.getMinX();
+		minY = bounds.getMinY();
+		minZ = bounds instanceof Envelope3D ? ((Envelope3D) bounds).getMinZ() : 0d;
+		this.cellSize = cellSize > 0 ? cellSize
+				: Math.max(bounds.getWidth(), bounds.getHeight()) / DEFAULT_RESOLUTION;
+		columns = Math.max(1, (int) Math.ceil(bounds.getWidth() / this.cellSize));
+		rows = Math.max(1, (int) Math.ceil(bounds.getHeight() / this.cellSize));
+		heads = new int[columns * rows * this.layers];
+		Arrays.fill(heads, NONE);
+		final int nbStripes = parallel ? Math.min(MAX_STRIPES, Integer.highestOneBit(heads.length - 1) << 1) : 1;
+		stripes = new ReentrantLock[Math.max(1, nbStripes)];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		stripeMask = stripes.length - 1;
+		resize(64);
+	}
+
+	/**
+	 * Makes sure the arrays can hold the agent whose index is passed. The arrays are replaced while holding all the
+	 * stripes, so that no thread reads or writes them meanwhile
+	 */
+	private void ensureCapacity(final int index) {
+		if (index < capacity) { return; }
+		lockAll();
+		try {
+			if (index >= capacity) {
+				resize(index + 1);
+			}
+		} finally {
+			unlockAll();
+		}
+	}
+
+	private void lockAll() {
+		for (final ReentrantLock stripe : stripes) {
+			stripe.lock();
+		}
+	}
+
+	private void unlockAll() {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			stripes[i].unlock();
+		}
+	}
+
+	/**
+	 * Locks the stripes of two cells, the one with the lowest number first to avoid deadlocks. NONE designates no cell
+	 */
+	private void lock(final int cell1, final int cell2) {
+		final int s1 = cell1 == NONE ? NONE : cell1 & stripeMask, s2 = cell2 == NONE ? NONE : cell2 & stripeMask;
+		final int first = Math.min(s1, s2), second = Math.max(s1, s2);
+		if (first != NONE) {
+			stripes[first].lock();
+		}
+		if (second != first) {
+			stripes[second].lock();
+		}
+	}
+
+	private void unlock(final int cell1, final int cell2) {
+		final int s1 = cell1 == NONE ? NONE : cell1 & stripeMask, s2 = cell2 == NONE ? NONE : cell2 & stripeMask;
+		final int first = Math.min(s1, s2), second = Math.max(s1, s2);
+		if (second != first) {
+			stripes[second].unlock();
+		}
+		if (first != NONE) {
+			stripes[first].unlock();
+		}
+	}
+
+	private void resize(final int size) {
+		final int newCapacity = Math.max(size, capacity + (capacity >> 1));
+		cells = Arrays.copyOf(cells == null ? new int[0] : cells, newCapacity);
+		Arrays.fill(cells, capacity, newCapacity, NONE);
+		previous = Arrays.copyOf(previous == null ? new int[0] : previous, newCapacity);
+		next = Arrays.copyOf(next == null ? new int[0] : next, newCapacity);
+		xs = Arrays.copyOf(xs == null ? new double[0] : xs, newCapacity);
+		ys = Arrays.copyOf(ys == null ? new double[0] : ys, newCapacity);
+		zs = Arrays.copyOf(zs == null ? new double[0] : zs, newCapacity);
+		halfWidths = Arrays.copyOf(halfWidths == null ? new double[0] : halfWidths, newCapacity);
+		halfHeights = Arrays.copyOf(halfHeights == null ? new double[0] : halfHeights, newCapacity);
+		halfDepths = Arrays.copyOf(halfDepths == null ? new double[0] : halfDepths, newCapacity);
+		agents = Arrays.copyOf(agents == null ? new IAgent[0] : agents, newCapacity);
+		capacity = newCapacity;
+	}
+
+	private int column(final double x) {
+		final int c = (int) ((x - minX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+
+	private int row(final double y) {
+		final int r = (int) ((y - minY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+
+	/**
+	 * The z coordinate of the cells containing z, before wrapping it around the layers
+	 */
+	private int level(final double z) {
+		return (int) Math.floor((z - minZ) / cellSize);
+	}
+
+	private int cell(final int level, final int row, final int column) {
+		return (Math.floorMod(level, layers) * rows + row) * columns + column;
+	}
+
+	/**
+	 * Whether the agents are filtered along z by the queries whose envelope is passed: only the three-dimensional
+	 * indexes do, for the queries expressed in 3D, and as long as they only contain points
+	 */
+	private boolean isFilteredAlongZ(final Envelope r, final boolean alongZ) {
+		return alongZ && layers > 1 && r instanceof Envelope3D && onlyPoints;
+	}
+
+	/**
+	 * The first level of cells to scan along z for the query whose envelope is passed (and which is filtered along z
+	 * or not). The levels scanned never cover more than all the layers
+	 */
+	private int firstLevel(final Envelope r, final boolean filtered) {
+		if (!filtered) { return 0; }
+		final int first = level(((Envelope3D) r).getMinZ() - maxHalfDepth);
+		final int last = level(((Envelope3D) r).getMaxZ() + maxHalfDepth);
+		return (long) last - first >= layers ? 0 : first;
+	}
+
+	private int lastLevel(final Envelope r, final boolean filtered) {
+		if (!filtered) { return layers - 1; }
+		final int first = level(((Envelope3D) r).getMinZ() - maxHalfDepth);
+		final int last = level(((Envelope3D) r).getMaxZ() + maxHalfDepth);
+		return (long) last - first >= layers ? layers - 1 : last;
+	}
+
+	/**
+	 * Whether the envelope of the agent i intersects the envelope (along z too if asked)
+	 */
+	private boolean intersects(final int i, final Envelope r, final boolean alongZ) {
+		if (xs[i] + halfWidths[i] < r.getMinX() || xs[i] - halfWidths[i] > r.getMaxX()
+				|| ys[i] + halfHeights[i] < r.getMinY() || ys[i] - halfHeights[i] > r.getMaxY()) {
+			return false;
+		}
+		return !alongZ || zs[i] + halfDepths[i] >= ((Envelope3D) r).getMinZ()
+				&& zs[i] - halfDepths[i] <= ((Envelope3D) r).getMaxZ();
+	}
+
+	@Override
+	public void insert(final IAgent agent) {
+		if (agent == null) { return; }
+		final int i = agent.getIndex();
+		ensureCapacity(i);
+		final double x, y, z, hw, hh, hd;
+		if (agent.isPoint()) {
+			final IShape location = agent.getLocation();
+			x = location.getLocation().getX();
+			y = location.getLocation().getY();
+			z = location.getLocation().getZ();
+			hw = hh = hd = 0d;
+		} else {
+			final Envelope3D env = agent.getEnvelope();
+			x = (env.getMinX() + env.getMaxX()) / 2;
+			y = (env.getMinY() + env.getMaxY()) / 2;
+			z = (env.getMinZ() + env.getMaxZ()) / 2;
+			hw = env.getWidth() / 2;
+			hh = env.getHeight() / 2;
+			hd = env.getDepth() / 2;
+			env.dispose();
+			if (onlyPoints) {
+				onlyPoints = false;
+			}
+			if (hw > maxHalfWidth || hh > maxHalfHeight || hd > maxHalfDepth) {
+				widen(hw, hh, hd);
+			}
+		}
+		final int cell = cell(layers == 1 ? 0 : level(z), row(y), column(x));
+		// The cell of the agent is read before locking, and read again once locked in case it has changed meanwhile
+		while (true) {
+			final int from = cells[i];
+			lock(from, cell);
+			try {
+				if (cells[i] != from) {
+					continue;
+				}
+				xs[i] = x;
+				ys[i] = y;
+				zs[i] = z;
+				halfWidths[i] = hw;
+				halfHeights[i] = hh;
+				halfDepths[i] = hd;
+				agents[i] = agent;
+				if (from != cell) {
+					unlink(i);
+					link(i, cell);
+				}
+				return;
+			} finally {
+				unlock(from, cell);
+			}
+		}
+	}
+
+	private synchronized void widen(final double hw, final double hh, final double hd) {
+		if (hw > maxHalfWidth) {
+			maxHalfWidth = hw;
+		}
+		if (hh > maxHalfHeight) {
+			maxHalfHeight = hh;
+		}
+		if (hd > maxHalfDepth) {
+			maxHalfDepth = hd;
+		}
+	}
+
+	/**
+	 * Adds the agent at the head of the list of the cell. The stripe of the cell must be held
+	 */
+	private void link(final int i, final int cell) {
+		cells[i] = cell;
+		previous[i] = NONE;
+		next[i] = heads[cell];
+		if (heads[cell] != NONE) {
+			previous[heads[cell]] = i;
+		}
+		heads[cell] = i;
+	}
+
+	/**
+	 * Removes the agent from the list of its cell, if any. The stripe of this cell must be held
+	 */
+	private void unlink(final int i) {
+		final int cell = cells[i];
+		if (cell == NONE) { return; }
+		if (previous[i] == NONE) {
+			heads[cell] = next[i];
+		} else {
+			next[previous[i]] = next[i];
+		}
+		if (next[i] != NONE) {
+			previous[next[i]] = previous[i];
+		}
+		cells[i] = NONE;
+	}
+
+	@Override
+	public void remove(final Envelope3D previousEnvelope, final IAgent agent) {
+		if (agent == null) { return; }
+		final int i = agent.getIndex();
+		if (i >= capacity) { return; }
+		while (true) {
+			final int from = cells[i];
+			if (from == NONE) { return; }
+			lock(from, NONE);
+			try {
+				if (cells[i] != from) {
+					continue;
+				}
+				if (agents[i] == agent) {
+					unlink(i);
+					agents[i] = null;
+				}
+				return;
+			} finally {
+				unlock(from, NONE);
+			}
+		}
+	}
+
+	/**
+	 * Collects, in the order of their indices, the agents whose envelope intersects the envelope passed (along z too,
+	 * if asked and if the index is three-dimensional). The order does not depend on the order in which the agents
+	 * have been moved, which keeps the shuffling of the results reproducible. Each cell is scanned while holding its
+	 * stripe
+	 */
+	private IAgent[] intersecting(final Envelope r, final boolean alongZ) {
+		IAgent[] found = new IAgent[16];
+		int size = 0;
+		final boolean filtered = isFilteredAlongZ(r, alongZ);
+		final double margin = Math.max(maxHalfWidth, maxHalfHeight);
+		final int c0 = column(r.getMinX() - margin), c1 = column(r.getMaxX() + margin);
+		final int r0 = row(r.getMinY() - margin), r1 = row(r.getMaxY() + margin);
+		final int l0 = firstLevel(r, filtered), l1 = lastLevel(r, filtered);
+		for (int level = l0; level <= l1; level++) {
+			for (int row = r0; row <= r1; row++) {
+				for (int column = c0; column <= c1; column++) {
+					final int cell = cell(level, row, column);
+					lock(cell, NONE);
+					try {
+						for (int i = heads[cell]; i != NONE; i = next[i]) {
+							if (!intersects(i, r, filtered)) {
+								continue;
+							}
+							if (size == found.length) {
+								found = Arrays.copyOf(found, size * 2);
+							}
+							found[size++] = agents[i];
+						}
+					} finally {
+						unlock(cell, NONE);
+					}
+				}
+			}
+		}
+		found = Arrays.copyOf(found, size);
+		Arrays.sort(found, BY_INDEX);
+		return found;
+	}
+
+	protected Collection<IAgent> findIntersects(final IScope scope, final IShape source, final Envelope r,
+			final IAgentFilter filter, final boolean alongZ) {
+		final IAgent[] found = intersecting(r, alongZ);
+		if (found.length == 0) { return GamaListFactory.create(); }
+		try (final ICollector<IAgent> list = Collector.getOrderedSet()) {
+			for (final IAgent agent : found) {
+				list.add(agent);
+			}
+			filter.filter(scope, source, list);
+			list.shuffleInPlaceWith(scope.getRandom());
+			return list.items();
+		}
+	}
+
+	@Override
+	public Collection<IAgent> allAtDistance(final IScope scope, final IShape source, final double dist,
+			final IAgentFilter f) {
+		return IndexQueries.allAtDistance(source, dist, env -> findIntersects(scope, source, env, f, source.isPoint()));
+	}
+
+	/**
+	 * The agents are gathered in a reused buffer, and only visited once all the cells have been scanned (and their
+	 * stripes released), as the visitor may move agents or run other queries
+	 */
+	@Override
+	public void forEachAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f,
+			final Predicate<IAgent> visitor) {
+		final Envelope3D r = source.getEnvelope();
+		if (r == null) { return; }
+		r.expandBy(dist);
+		final QueryBuffer buffer = QueryBuffer.acquire();
+		try {
+			final boolean filtered = isFilteredAlongZ(r, source.isPoint());
+			final double margin = Math.max(maxHalfWidth, maxHalfHeight);
+			final int c0 = column(r.getMinX() - margin), c1 = column(r.getMaxX() + margin);
+			final int r0 = row(r.getMinY() - margin), r1 = row(r.getMaxY() + margin);
+			final int l0 = firstLevel(r, filtered), l1 = lastLevel(r, filtered);
+			for (int level = l0; level <= l1; level++) {
+				for (int row = r0; row <= r1; row++) {
+					for (int column = c0; column <= c1; column++) {
+						final int cell = cell(level, row, column);
+						lock(cell, NONE);
+						try {
+							for (int i = heads[cell]; i != NONE; i = next[i]) {
+								if (intersects(i, r, filtered)) {
+									buffer.add(agents[i]);
+								}
+							}
+						} finally {
+							unlock(cell, NONE);
+						}
+					}
+				}
+			}
+			IndexQueries.visitAtDistance(scope, source, dist, f, buffer, visitor);
+		} finally {
+			buffer.release();
+			r.dispose();
+		}
+	}
+
+	@Override
+	public Collection<IAgent> firstAtDistance(final IScope scope, final IShape source, final double dist,
+			final IAgentFilter f, final int number, final Collection<IAgent> alreadyChosen) {
+		return IndexQueries.firstAtDistance(source, dist, number, alreadyChosen,
+				env -> findIntersects(scope, source, env, f, source.isPoint()));
+	}
+
+	@Override
+	public IAgent firstAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f) {
+		return IndexQueries.firstAtDistance(source, dist,
+				env -> findIntersects(scope, source, env, f, source.isPoint()));
+	}
+
+	@Override
+	public Collection<IAgent> allInEnvelope(final IScope scope, final IShape source, final Envelope envelope,
+			final IAgentFilter f, final boolean contained) {
+		// The envelope is intersected with the (flat) environment by the topology, so it is not used along z
+		return findIntersects(scope, source, envelope, f, false);
+	}
+
+	/**
+	 * Visits the cells ring by ring around the ones covered by the source, and stops once the number agents have been
+	 * found and the agents of the next ring cannot be as close as the last of them. Outside the cells already visited,
+	 * the centres of the agents are at least 'ring' cells away from the source. In three-dimensional indexes, the cells
+	 * of all the layers are visited, as this bound only considers x and y
+	 */
+	@Override
+	public Collection<IAgent> nearest(final IScope scope, final IShape source, final IAgentFilter f, final int number,
+			final Collection<IAgent> alreadyChosen) {
+		if (number <= 0) { return GamaListFactory.create(); }
+		final Envelope3D from = source.getEnvelope();
+		if (from == null) { return GamaListFactory.create(); }
+		final double margin = Math.max(maxHalfWidth, maxHalfHeight);
+		final int c0 = column(from.getMinX()), c1 = column(from.getMaxX());
+		final int r0 = row(from.getMinY()), r1 = row(from.getMaxY());
+		from.dispose();
+		final NearestAgents found = new NearestAgents();
+		IAgent[] inRing = new IAgent[16];
+		for (int ring = 0;; ring++) {
+			if (c0 - ring < 0 && r0 - ring < 0 && c1 + ring >= columns && r1 + ring >= rows) {
+				break;
+			}
+			if (ring > 0 && found.distanceOf(number) < (ring - 1) * cellSize - margin * Maths.SQRT2) {
+				break;
+			}
+			int size = 0;
+			for (int row = Math.max(0, r0 - ring); row <= Math.min(rows - 1, r1 + ring); row++) {
+				final boolean edge = ring == 0 || row == r0 - ring || row == r1 + ring;
+				for (int column = Math.max(0, c0 - ring); column <= Math.min(columns - 1, c1 + ring); column++) {
+					if (!edge && column != c0 - ring && column != c1 + ring) {
+						continue;
+					}
+					for (int layer = 0; layer < layers; layer++) {
+						final int cell = cell(layer, row, column);
+						lock(cell, NONE);
+						try {
+							for (int i = heads[cell]; i != NONE; i = next[i]) {
+								if (size == inRing.length) {
+									inRing = Arrays.copyOf(inRing, size * 2);
+								}
+								inRing[size++] = agents[i];
+							}
+						} finally {
+							unlock(cell, NONE);
+						}
+					}
+				}
+			}
+			for (int i = 0; i < size; i++) {
+				final IAgent agent = inRing[i];
+				if (!agent.dead() && !alreadyChosen.contains(agent) && f.accept(scope, source, agent)) {
+					found.add(agent, source.euclidianDistanceTo(agent));
+				}
+			}
+		}
+		return found.closest(scope, number);
+	}
+
+	@Override
+	public Collection<IAgent> allAgents() {
+		lockAll();
+		try (final ICollector<IAgent> result = Collector.getOrderedSet()) {
+			for (int i = 0; i < capacity; i++) {
+				if (agents[i] != null && cells[i] != NONE) {
+					result.add(agents[i]);
+				}
+			}
+			return result.items();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		lockAll();
+		try {
+			Arrays.fill(heads, NONE);
+			Arrays.fill(cells, NONE);
+			Arrays.fill(agents, null);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public boolean isParallel() {
+		return parallel;
+	}
+
+}
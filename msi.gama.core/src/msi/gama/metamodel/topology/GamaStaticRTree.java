@@ -0,0 +1,378 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.GamaStaticRTree.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+import msi.gama.common.geometry.Envelope3D;
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.shape.IShape;
+import msi.gama.metamodel.topology.filter.IAgentFilter;
+import msi.gama.runtime.IScope;
+import msi.gama.util.Collector;
+import msi.gama.util.GamaListFactory;
+import msi.gama.util.ICollector;
+
+/**
+ * A spatial index dedicated to the agents of one population that neither move nor die (see the 'spatial_index' facet
+ * of species), like the buildings or the parcels read from a shapefile. The agents are bulk-loaded in an R-tree packed
+ * with the Sort-Tile-Recursive algorithm: the entries of each level are sorted by the x of their centre, cut in
+ * vertical slices, sorted by y within each slice and grouped by NODE_CAPACITY. Each agent is found in exactly one leaf,
+ * whatever its size, and the tree is stored in a few primitive arrays (the agents first, then the nodes level by level,
+ * the root last).
+ *
+ * Inserting an agent with a new envelope or removing an agent discards the tree, which is built again, from all the
+ * agents, by the next query. The index is therefore only suited to populations that are modified rarely.
+ */
+public class GamaStaticRTree implements ISpatialIndex {
+
+	/**
+	 * The maximal number of children of a node
+	 */
+	public static final int NODE_CAPACITY = 16;
+	private static final Comparator<IAgent> BY_INDEX = Comparator.comparingInt(IAgent::getIndex);
+
+	private final boolean parallel;
+	/**
+	 * The agents indexed, with their envelope when they were inserted. Also used as the lock of the index
+	 */
+	private final Map<IAgent, Envelope> members = new HashMap<>();
+	/**
+	 * The tree built from the members, or null if they have changed since
+	 */
+	private volatile Tree tree;
+
+	public GamaStaticRTree(final boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	@Override
+	public void insert(final IAgent agent) {
+		if (agent == null) { return; }
+		final Envelope3D env = agent.getEnvelope();
+		if (env == null) { return; }
+		final Envelope envelope = new Envelope(env);
+		env.dispose();
+		synchronized (members) {
+			if (!envelope.equals(members.put(agent, envelope))) {
+				tree = null;
+			}
+		}
+	}
+
+	@Override
+	public void remove(final Envelope3D previous, final IAgent agent) {
+		if (agent == null) { return; }
+		synchronized (members) {
+			if (members.remove(agent) != null) {
+				tree = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the tree of the current members, building it if they have changed since the last query
+	 */
+	private Tree tree() {
+		final Tree t = tree;
+		if (t != null) { return t; }
+		synchronized (members) {
+			if (tree == null) {
+				tree = new Tree(members);
+			}
+			return tree;
+		}
+	}
+
+	/**
+	 * The packed tree. Positions below the number of agents designate the agents (the leaves' entries), the others
+	 * the nodes, whose children occupy a contiguous range of positions in the level below
+	 */
+	private static final class Tree {
+
+		final IAgent[] agents;
+		final double[] minXs, minYs, maxXs, maxYs;
+		/**
+		 * By node (position minus the number of agents): the first position of its children and the one after the last
+		 */
+		final int[] firsts, ends;
+		/**
+		 * The position of the root (NONE if the tree is empty) and the size of the stack needed to traverse the tree
+		 */
+		final int root, stackSize;
+
+		Tree(final Map<IAgent, Envelope> members) {
+			final int n = members.size();
+			int total = n, levels = 0;
+			for (int count = n; count > 1; count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY) {
+				total += (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+				levels++;
+			}
+			agents = new IAgent[n];
+			minXs = new double[total];
+			minYs = new double[total];
+			maxXs = new double[total];
+			maxYs = new double[total];
+			firsts = new int[total - n];
+			ends = new int[total - n];
+			root = total - 1;
+			stackSize = (levels + 1) * NODE_CAPACITY;
+			if (n == 0) { return; }
+			// The agents are sorted by index first, so that the tree (and the order of the results) does not depend on
+			// the order in which they were inserted
+			final IAgent[] sorted = members.keySet().toArray(new IAgent[n]);
+			Arrays.sort(sorted, BY_INDEX);
+			final Envelope[] envelopes = new Envelope[n];
+			for (int i = 0; i < n; i++) {
+				envelopes[i] = members.get(sorted[i]);
+			}
+			final int[] order = sortTileRecursive(envelopes);
+			for (int i = 0; i < n; i++) {
+				final int j = order[i];
+				agents[i] = sorted[j];
+				set(i, envelopes[j]);
+			}
+			int start = 0, end = n;
+			while (end - start > 1) {
+				final int count = (end - start + NODE_CAPACITY - 1) / NODE_CAPACITY;
+				final Envelope[] nodes = new Envelope[count];
+				final int[] nodeFirsts = new int[count], nodeEnds = new int[count];
+				for (int k = 0; k < count; k++) {
+					nodeFirsts[k] = start + k * NODE_CAPACITY;
+					nodeEnds[k] = Math.min(end, nodeFirsts[k] + NODE_CAPACITY);
+					final Envelope bounds = new Envelope();
+					for (int child = nodeFirsts[k]; child < nodeEnds[k]; child++) {
+						bounds.expandToInclude(minXs[child], minYs[child]);
+						bounds.expandToInclude(maxXs[child], maxYs[child]);
+					}
+					nodes[k] = bounds;
+				}
+				// The nodes of this level are sorted in turn, so that their parents group neighbouring nodes
+				final int[] nodeOrder = sortTileRecursive(nodes);
+				for (int k = 0; k < count; k++) {
+					final int position = end + k, j = nodeOrder[k];
+					set(position, nodes[j]);
+					firsts[position - n] = nodeFirsts[j];
+					ends[position - n] = nodeEnds[j];
+				}
+				start = end;
+				end += count;
+			}
+		}
+
+		private void set(final int position, final Envelope e) {
+			minXs[position] = e.getMinX();
+			minYs[position] = e.getMinY();
+			maxXs[position] = e.getMaxX();
+			maxYs[position] = e.getMaxY();
+		}
+
+		/**
+		 * Returns the order of the envelopes in which they must be grouped by NODE_CAPACITY: sorted by x in slices of
+		 * about sqrt(number of groups) groups, and sorted by y within each slice. The sorts are stable
+		 */
+		private static int[] sortTileRecursive(final Envelope[] envelopes) {
+			final int count = envelopes.length;
+			final Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, Comparator.comparingDouble(i -> envelopes[i].getMinX() + envelopes[i].getMaxX()));
+			final int groups = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+			final int sliceSize = (int) Math.ceil(Math.sqrt(groups)) * NODE_CAPACITY;
+			for (int from = 0; from < count; from += sliceSize) {
+				Arrays.sort(order, from, Math.min(count, from + sliceSize),
+						Comparator.comparingDouble(i -> envelopes[i].getMinY() + envelopes[i].getMaxY()));
+			}
+			final int[] result = new int[count];
+			for (int i = 0; i < count; i++) {
+				result[i] = order[i];
+			}
+			return result;
+		}
+
+		boolean isAgent(final int position) {
+			return position < agents.length;
+		}
+
+		boolean intersects(final int position, final Envelope r) {
+			return maxXs[position] >= r.getMinX() && minXs[position] <= r.getMaxX() && maxYs[position] >= r.getMinY()
+					&& minYs[position] <= r.getMaxY();
+		}
+
+		/**
+		 * The distance between the bounds of the position and the envelope, a lower bound of the distance between
+		 * what they contain
+		 */
+		double distance(final int position, final Envelope r) {
+			final double dx = Math.max(0d, Math.max(minXs[position] - r.getMaxX(), r.getMinX() - maxXs[position]));
+			final double dy = Math.max(0d, Math.max(minYs[position] - r.getMaxY(), r.getMinY() - maxYs[position]));
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+
+		/**
+		 * Adds to the buffer, in the order of the tree, the agents whose envelope intersects the envelope passed
+		 */
+		void search(final Envelope r, final QueryBuffer buffer) {
+			if (agents.length == 0) { return; }
+			final int[] stack = new int[stackSize];
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0) {
+				final int position = stack[--top];
+				if (!intersects(position, r)) {
+					continue;
+				}
+				if (isAgent(position)) {
+					buffer.add(agents[position]);
+				} else {
+					final int node = position - agents.length;
+					for (int child = ends[node] - 1; child >= firsts[node]; child--) {
+						stack[top++] = child;
+					}
+				}
+			}
+		}
+	}
+
+	protected Collection<IAgent> findIntersects(final IScope scope, final IShape source, final Envelope r,
+			final IAgentFilter filter) {
+		final QueryBuffer buffer = QueryBuffer.acquire();
+		try (final ICollector<IAgent> list = Collector.getOrderedSet()) {
+			tree().search(r, buffer);
+			if (buffer.size() == 0) { return GamaListFactory.create(); }
+			for (int i = 0; i < buffer.size(); i++) {
+				list.add(buffer.get(i));
+			}
+			filter.filter(scope, source, list);
+			list.shuffleInPlaceWith(scope.getRandom());
+			return list.items();
+		} finally {
+			buffer.release();
+		}
+	}
+
+	@Override
+	public Collection<IAgent> allAtDistance(final IScope scope, final IShape source, final double dist,
+			final IAgentFilter f) {
+		return IndexQueries.allAtDistance(source, dist, env -> findIntersects(scope, source, env, f));
+	}
+
+	@Override
+	public void forEachAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f,
+			final Predicate<IAgent> visitor) {
+		final Envelope3D r = source.getEnvelope();
+		if (r == null) { return; }
+		r.expandBy(dist);
+		final QueryBuffer buffer = QueryBuffer.acquire();
+		try {
+			tree().search(r, buffer);
+			IndexQueries.visitAtDistance(scope, source, dist, f, buffer, visitor);
+		} finally {
+			buffer.release();
+			r.dispose();
+		}
+	}
+
+	@Override
+	public Collection<IAgent> firstAtDistance(final IScope scope, final IShape source, final double dist,
+			final IAgentFilter f, final int number, final Collection<IAgent> alreadyChosen) {
+		return IndexQueries.firstAtDistance(source, dist, number, alreadyChosen,
+				env -> findIntersects(scope, source, env, f));
+	}
+
+	@Override
+	public IAgent firstAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f) {
+		return IndexQueries.firstAtDistance(source, dist, env -> findIntersects(scope, source, env, f));
+	}
+
+	@Override
+	public Collection<IAgent> allInEnvelope(final IScope scope, final IShape source, final Envelope envelope,
+			final IAgentFilter f, final boolean contained) {
+		return findIntersects(scope, source, envelope, f);
+	}
+
+	/**
+	 * Visits the nodes and the agents by increasing distance to the source (best-first search), the items of the search
+	 * being their positions in the tree
+	 */
+	@Override
+	public Collection<IAgent> nearest(final IScope scope, final IShape source, final IAgentFilter f, final int number,
+			final Collection<IAgent> alreadyChosen) {
+		if (number <= 0) { return GamaListFactory.create(); }
+		final Envelope3D from = source.getEnvelope();
+		if (from == null) { return GamaListFactory.create(); }
+		final Tree t = tree();
+		try {
+			if (t.agents.length == 0) { return GamaListFactory.create(); }
+			final IndexQueries.BestFirstSearch search = new IndexQueries.BestFirstSearch() {
+
+				@Override
+				boolean isNode(final Object item) {
+					return !t.isAgent((Integer) item);
+				}
+
+				@Override
+				void expand(final Object item) {
+					final int node = (Integer) item - t.agents.length;
+					for (int child = t.firsts[node]; child < t.ends[node]; child++) {
+						add(child, t.distance(child, from));
+					}
+				}
+
+				@Override
+				IAgent agentOf(final Object item) {
+					return t.agents[(Integer) item];
+				}
+			};
+			search.add(t.root, t.distance(t.root, from));
+			return search.nearest(scope, source, f, number, alreadyChosen);
+		} finally {
+			from.dispose();
+		}
+	}
+
+	@Override
+	public Collection<IAgent> allAgents() {
+		final IAgent[] agents;
+		synchronized (members) {
+			agents = members.keySet().toArray(new IAgent[members.size()]);
+		}
+		Arrays.sort(agents, BY_INDEX);
+		try (final ICollector<IAgent> result = Collector.getOrderedSet()) {
+			for (final IAgent agent : agents) {
+				result.add(agent);
+			}
+			return result.items();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		synchronized (members) {
+			members.clear();
+			tree = null;
+		}
+	}
+
+	@Override
+	public boolean isParallel() {
+		return parallel;
+	}
+
+}
@@ -11,6 +11,7 @@
 package msi.gama.metamodel.topology;
 
 import java.util.Collection;
+import java.util.function.Predicate;
 
 import com.vividsolutions.jts.geom.Envelope;
 
@@ -31,6 +32,15 @@ public interface ISpatialIndex {
 
 	void insert(IAgent agent);
 
+	/**
+	 * Inserts several agents at once, in their order. Indexes able to load agents in bulk should redefine it
+	 */
+	default void insertAll(final Collection<? extends IAgent> agents) {
+		for (final IAgent agent : agents) {
+			insert(agent);
+		}
+	}
+
 	void remove(final Envelope3D previous, final IAgent agent);
 
 	IAgent firstAtDistance(IScope scope, final IShape source, final double dist, final IAgentFilter f);
@@ -38,11 +48,34 @@ public interface ISpatialIndex {
 	Collection<IAgent> firstAtDistance(IScope scope, final IShape source, final double dist, final IAgentFilter f,
 			int number, Collection<IAgent> alreadyChosen);
 
+	/**
+	 * Returns the number agents accepted by the filter, and not already chosen, that are the closest to the source,
+	 * whatever their distance, by increasing distance (the agents at the same distance being ordered randomly). Returns
+	 * null if the index cannot search its agents by increasing distance, in which case firstAtDistance() is used with
+	 * increasing distances instead
+	 */
+	default Collection<IAgent> nearest(final IScope scope, final IShape source, final IAgentFilter f, final int number,
+			final Collection<IAgent> alreadyChosen) {
+		return null;
+	}
+
 	Collection<IAgent> allInEnvelope(IScope scope, final IShape source, final Envelope envelope, final IAgentFilter f,
 			boolean contained);
 
 	Collection<IAgent> allAtDistance(IScope scope, IShape source, double dist, IAgentFilter f);
 
+	/**
+	 * Visits, in no particular order, the agents accepted by the filter whose distance to the source is at most dist,
+	 * without building a collection of them. The visit stops as soon as the visitor returns false. Indexes should
+	 * redefine it to avoid building the result of allAtDistance()
+	 */
+	default void forEachAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f,
+			final Predicate<IAgent> visitor) {
+		for (final IAgent agent : allAtDistance(scope, source, dist, f)) {
+			if (!visitor.test(agent)) { return; }
+		}
+	}
+
 	void dispose();
 
 	public interface Compound extends ISpatialIndex {
@@ -55,6 +88,12 @@ public interface ISpatialIndex {
 
 		void mergeWith(Compound spatialIndex);
 
+		/**
+		 * Records the move of an agent, to be applied with the other moves of its population just before the next
+		 * query concerning this population. Previous is the envelope of the agent before the move
+		 */
+		void updateLater(Envelope3D previous, IAgent agent);
+
 	}
 
 	Collection<IAgent> allAgents();
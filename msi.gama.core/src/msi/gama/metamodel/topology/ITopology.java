@@ -12,6 +12,7 @@ package msi.gama.metamodel.topology;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Predicate;
 
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -64,6 +65,16 @@ public interface ITopology extends IValue {
 
 	void updateAgent(Envelope3D previous, IAgent agent);
 
+	/**
+	 * Indexes agents that have just been created and whose geometries have not been indexed yet (see
+	 * {@link IPopulation#isIndexingDeferred(IAgent)})
+	 */
+	default void addAgents(final Collection<? extends IAgent> agents) {
+		for (final IAgent agent : agents) {
+			updateAgent(null, agent);
+		}
+	}
+
 	void removeAgent(final IAgent agent);
 
 	List<Geometry> listToroidalGeometries(final Geometry geom);
@@ -77,6 +88,17 @@ public interface ITopology extends IValue {
 	Collection<IAgent> getNeighborsOf(IScope scope, final IShape source, final Double distance, IAgentFilter filter)
 			throws GamaRuntimeException;
 
+	/**
+	 * Visits the agents returned by getNeighborsOf(), in no particular order, until the visitor returns false.
+	 * Topologies able to do so without building the collection of the neighbors should redefine it
+	 */
+	default void forEachNeighborOf(final IScope scope, final IShape source, final Double distance,
+			final IAgentFilter filter, final Predicate<IAgent> visitor) throws GamaRuntimeException {
+		for (final IAgent agent : getNeighborsOf(scope, source, distance, filter)) {
+			if (!visitor.test(agent)) { return; }
+		}
+	}
+
 	Collection<IAgent> getAgentsIn(IScope scope, final IShape source, final IAgentFilter f, boolean covered);
 
 	boolean isTorus();
@@ -0,0 +1,186 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.IndexQueries.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology;
+
+import java.util.Collection;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import com.google.common.collect.Ordering;
+
+import msi.gama.common.geometry.Envelope3D;
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.shape.IShape;
+import msi.gama.metamodel.topology.filter.IAgentFilter;
+import msi.gama.runtime.IScope;
+import msi.gama.util.GamaListFactory;
+import msi.gaml.operators.Maths;
+
+/**
+ * The queries shared by the spatial indexes (see {@link ISpatialIndex}): the queries at a distance, which refine the
+ * agents found by an index in an envelope around the source, and the best-first search of the nearest neighbours in a
+ * tree
+ */
+class IndexQueries {
+
+	/**
+	 * The search, by an index, of the agents (accepted by the filter of the query) whose envelopes intersect an envelope
+	 */
+	interface Intersecting {
+		Collection<IAgent> find(Envelope3D envelope);
+	}
+
+	static Collection<IAgent> allAtDistance(final IShape source, final double dist, final Intersecting intersecting) {
+		final Envelope3D env = Envelope3D.of(source.getEnvelope());
+		env.expandBy(dist);
+		try {
+			final Collection<IAgent> result = intersecting.find(env);
+			if (result.isEmpty()) { return GamaListFactory.create(); }
+			result.removeIf(each -> source.euclidianDistanceTo(each) > dist);
+			return result;
+		} finally {
+			env.dispose();
+		}
+	}
+
+	static Collection<IAgent> firstAtDistance(final IShape source, final double dist, final int number,
+			final Collection<IAgent> alreadyChosen, final Intersecting intersecting) {
+		final Envelope3D env = Envelope3D.of(source.getEnvelope());
+		env.expandBy(dist * Maths.SQRT2);
+		try {
+			final Collection<IAgent> in_square = intersecting.find(env);
+			in_square.removeAll(alreadyChosen);
+			if (in_square.isEmpty()) { return GamaListFactory.create(); }
+			if (in_square.size() <= number) { return in_square; }
+			final Ordering<IShape> ordering = Ordering.natural().onResultOf(input -> source.euclidianDistanceTo(input));
+			return ordering.leastOf(in_square, number);
+		} finally {
+			env.dispose();
+		}
+	}
+
+	static IAgent firstAtDistance(final IShape source, final double dist, final Intersecting intersecting) {
+		final Envelope3D env = Envelope3D.of(source.getEnvelope());
+		env.expandBy(dist * Maths.SQRT2);
+		try {
+			final Collection<IAgent> in_square = intersecting.find(env);
+			if (in_square.isEmpty()) { return null; }
+			double min_distance = dist;
+			IAgent min_agent = null;
+			for (final IAgent a : in_square) {
+				final double dd = source.euclidianDistanceTo(a);
+				if (dd < min_distance) {
+					min_distance = dd;
+					min_agent = a;
+				}
+			}
+			return min_agent;
+		} finally {
+			env.dispose();
+		}
+	}
+
+	/**
+	 * Visits the agents of the buffer (found in the envelope of the source expanded by dist) that are accepted by the
+	 * filter and actually within dist of the source, until the visitor returns false
+	 */
+	static void visitAtDistance(final IScope scope, final IShape source, final double dist, final IAgentFilter f,
+			final QueryBuffer buffer, final Predicate<IAgent> visitor) {
+		for (int i = 0; i < buffer.size(); i++) {
+			final IAgent agent = buffer.get(i);
+			if (f.accept(scope, source, agent) && source.euclidianDistanceTo(agent) <= dist && !visitor.test(agent)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A node or an agent waiting to be visited by a nearest neighbours search, with a lower bound of its distance to
+	 * the source (the distance between their envelopes) or, once computed, the exact distance of the agent
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+		final double distance;
+		final Object item;
+		final boolean exact;
+
+		Candidate(final double distance, final Object item, final boolean exact) {
+			this.distance = distance;
+			this.item = item;
+			this.exact = exact;
+		}
+
+		@Override
+		public int compareTo(final Candidate o) {
+			return Double.compare(distance, o.distance);
+		}
+	}
+
+	/**
+	 * A search of the nearest neighbours of a source in a tree, which visits its nodes and agents by increasing distance
+	 * to the source (best-first search), and stops once the number agents have been found and no other agent can be as
+	 * close as the last of them. The trees describe their items (nodes or agents) by implementing the abstract methods,
+	 * and add the root (and then the children of each node expanded) with {@link #add(Object, double)}
+	 */
+	static abstract class BestFirstSearch {
+
+		private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+
+		/**
+		 * Adds a node or an agent to visit, with a lower bound of its distance to the source
+		 */
+		final void add(final Object item, final double distance) {
+			queue.add(new Candidate(distance, item, false));
+		}
+
+		/**
+		 * Whether this item is a node, whose children are to be added, rather than an agent
+		 */
+		abstract boolean isNode(Object item);
+
+		/**
+		 * Adds the children of this node
+		 */
+		abstract void expand(Object node);
+
+		/**
+		 * The agent represented by this item, which is not a node
+		 */
+		abstract IAgent agentOf(Object item);
+
+		final Collection<IAgent> nearest(final IScope scope, final IShape source, final IAgentFilter f,
+				final int number, final Collection<IAgent> alreadyChosen) {
+			final NearestAgents found = new NearestAgents();
+			double last = Double.POSITIVE_INFINITY;
+			while (!queue.isEmpty()) {
+				final Candidate c = queue.poll();
+				if (c.distance > last) {
+					break;
+				}
+				if (c.exact) {
+					// Exact distances are polled in increasing order
+					found.add((IAgent) c.item, c.distance);
+					if (found.size() == number) {
+						last = c.distance;
+					}
+				} else if (isNode(c.item)) {
+					expand(c.item);
+				} else {
+					final IAgent agent = agentOf(c.item);
+					if (!agent.dead() && !alreadyChosen.contains(agent) && f.accept(scope, source, agent)) {
+						queue.add(new Candidate(source.euclidianDistanceTo(agent), agent, true));
+					}
+				}
+			}
+			return found.closest(scope, number);
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.NearestAgents.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.runtime.IScope;
+import msi.gama.util.GamaListFactory;
+import msi.gama.util.IList;
+
+/**
+ * The agents found by a search of the nearest neighbours of a source (see {@link ISpatialIndex#nearest}), with their
+ * distances to it. The agents are returned by increasing distance, the ones at the same distance being ordered randomly
+ * with the random generator of the scope (see Issue 722)
+ */
+class NearestAgents {
+
+	private final List<IAgent> agents = new ArrayList<>();
+	private double[] distances = new double[16];
+
+	void add(final IAgent agent, final double distance) {
+		if (agents.size() == distances.length) {
+			distances = Arrays.copyOf(distances, distances.length * 2);
+		}
+		distances[agents.size()] = distance;
+		agents.add(agent);
+	}
+
+	int size() {
+		return agents.size();
+	}
+
+	/**
+	 * The distance of the number-th closest agent found so far, or the positive infinity if less agents have been found
+	 */
+	double distanceOf(final int number) {
+		if (number <= 0 || agents.size() < number) { return Double.POSITIVE_INFINITY; }
+		final double[] sorted = Arrays.copyOf(distances, agents.size());
+		Arrays.sort(sorted);
+		return sorted[number - 1];
+	}
+
+	/**
+	 * Returns at most number agents, by increasing distance
+	 */
+	IList<IAgent> closest(final IScope scope, final int number) {
+		final IList<IAgent> result = GamaListFactory.create();
+		final int size = agents.size();
+		if (size == 0 || number <= 0) { return result; }
+		final List<Integer> order = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			order.add(i);
+		}
+		// The sort is stable: shuffling first breaks the ties randomly
+		scope.getRandom().shuffleInPlace(order);
+		order.sort((i, j) -> Double.compare(distances[i], distances[j]));
+		for (int i = 0; i < Math.min(number, size); i++) {
+			result.add(agents.get(order.get(i)));
+		}
+		return result;
+	}
+
+}
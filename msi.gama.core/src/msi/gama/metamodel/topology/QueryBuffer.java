@@ -0,0 +1,72 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.QueryBuffer.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import msi.gama.metamodel.agent.IAgent;
+
+/**
+ * The buffers in which the spatial indexes gather the candidates of the queries that visit their results (see
+ * {@link ISpatialIndex#forEachAtDistance}). They are kept by thread and reused from one query to the other. As the
+ * visitors can themselves run queries, each thread keeps a stack of them.
+ */
+class QueryBuffer {
+
+	private static final ThreadLocal<ArrayDeque<QueryBuffer>> FREE = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private IAgent[] agents = new IAgent[64];
+	private int size;
+	/**
+	 * The agents that can be found several times (the ones that are not points, in the quadtree)
+	 */
+	private final Set<IAgent> unique = new HashSet<>();
+
+	static QueryBuffer acquire() {
+		final QueryBuffer buffer = FREE.get().poll();
+		return buffer == null ? new QueryBuffer() : buffer;
+	}
+
+	void release() {
+		Arrays.fill(agents, 0, size, null);
+		size = 0;
+		unique.clear();
+		FREE.get().push(this);
+	}
+
+	void add(final IAgent agent) {
+		if (size == agents.length) {
+			agents = Arrays.copyOf(agents, size * 2);
+		}
+		agents[size++] = agent;
+	}
+
+	/**
+	 * Adds the agent only if it has not been added by this method before
+	 */
+	void addOnce(final IAgent agent) {
+		if (unique.add(agent)) {
+			add(agent);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	IAgent get(final int i) {
+		return agents[i];
+	}
+
+}
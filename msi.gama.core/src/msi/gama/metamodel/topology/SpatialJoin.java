@@ -0,0 +1,256 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.SpatialJoin.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import msi.gama.common.geometry.Envelope3D;
+import msi.gama.metamodel.shape.IShape;
+import msi.gama.runtime.concurrent.GamaExecutorService;
+import msi.gaml.operators.Maths;
+
+/**
+ * Joins two sets of shapes (agents or geometries) in one pass, instead of querying a spatial index once for each shape
+ * of the first set. The shapes of the second set are bucketed in a temporary uniform grid, stored in primitive arrays
+ * (the positions of the shapes sorted by cell, and the first position of each cell), and the shapes of the first set
+ * look into the cells they reach. Large joins are split in chunks computed concurrently.
+ *
+ * The results only depend on the operands: the shapes found are returned in the order of the second set, and the ties
+ * between the nearest shapes are broken by this order. The distances are euclidean, so the joins ignore the torus or
+ * the graph of a topology.
+ */
+public final class SpatialJoin {
+
+	/**
+	 * The number of shapes of the first set under which the join is computed sequentially, and the size of the chunks
+	 * computed concurrently otherwise
+	 */
+	static final int CHUNK = 1000;
+	/**
+	 * The maximal number of cells of the grid by shape of the second set
+	 */
+	static final int MAX_CELLS_BY_SHAPE = 4;
+
+	private final IShape[] shapes;
+	private final double[] minXs, minYs, maxXs, maxYs;
+	private final double minX, minY, cellSize, margin;
+	private final int columns, rows;
+	/**
+	 * The positions of the shapes sorted by cell (and by position within a cell), and the index in this array of the
+	 * first shape of each cell (the last element being the number of shapes)
+	 */
+	private final int[] sorted, starts;
+
+	/**
+	 * Builds the grid of the shapes passed, with cells of about the size passed (enlarged if there would be too many)
+	 */
+	private SpatialJoin(final IShape[] shapes, final double size) {
+		this.shapes = shapes;
+		final int n = shapes.length;
+		minXs = new double[n];
+		minYs = new double[n];
+		maxXs = new double[n];
+		maxYs = new double[n];
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY, half = 0d;
+		for (int i = 0; i < n; i++) {
+			final Envelope3D env = shapes[i].getEnvelope();
+			minXs[i] = env.getMinX();
+			minYs[i] = env.getMinY();
+			maxXs[i] = env.getMaxX();
+			maxYs[i] = env.getMaxY();
+			env.dispose();
+			x0 = Math.min(x0, minXs[i]);
+			y0 = Math.min(y0, minYs[i]);
+			x1 = Math.max(x1, maxXs[i]);
+			y1 = Math.max(y1, maxYs[i]);
+			half = Math.max(half, Math.max(maxXs[i] - minXs[i], maxYs[i] - minYs[i]) / 2);
+		}
+		minX = x0;
+		minY = y0;
+		margin = half;
+		final double width = Math.max(x1 - x0, 0d), height = Math.max(y1 - y0, 0d);
+		final double maxCells = (double) n * MAX_CELLS_BY_SHAPE;
+		final double smallest = Math.max(Math.sqrt(width * height / maxCells), Math.max(width, height) / maxCells);
+		cellSize = Math.max(Math.max(size, smallest), Double.MIN_NORMAL);
+		columns = Math.max(1, (int) Math.min(Integer.MAX_VALUE / 2, Math.ceil(width / cellSize)));
+		rows = Math.max(1, (int) Math.min(Integer.MAX_VALUE / 2 / columns, Math.ceil(height / cellSize)));
+		// Counting sort of the positions by cell, which keeps them in their order within each cell
+		final int[] cellOf = new int[n];
+		starts = new int[columns * rows + 1];
+		for (int i = 0; i < n; i++) {
+			cellOf[i] = row((minYs[i] + maxYs[i]) / 2) * columns + column((minXs[i] + maxXs[i]) / 2);
+			starts[cellOf[i] + 1]++;
+		}
+		for (int c = 0; c < columns * rows; c++) {
+			starts[c + 1] += starts[c];
+		}
+		sorted = new int[n];
+		final int[] next = Arrays.copyOf(starts, starts.length - 1);
+		for (int i = 0; i < n; i++) {
+			sorted[next[cellOf[i]]++] = i;
+		}
+	}
+
+	private int column(final double x) {
+		final int c = (int) ((x - minX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+
+	private int row(final double y) {
+		final int r = (int) ((y - minY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+
+	/**
+	 * Returns, for each shape of the first array, the shapes of the second one (itself excepted) whose distance to it
+	 * is at most the distance passed, in the order of the second array
+	 */
+	public static IShape[][] withinDistance(final IShape[] left, final IShape[] right, final double distance) {
+		final IShape[][] result = new IShape[left.length][];
+		if (right.length == 0 || distance < 0) {
+			Arrays.fill(result, new IShape[0]);
+			return result;
+		}
+		final SpatialJoin grid = new SpatialJoin(right, distance);
+		final double[][] envelopes = envelopesOf(left);
+		run(left.length, (from, to) -> {
+			int[] found = new int[16];
+			for (int i = from; i < to; i++) {
+				final IShape source = left[i];
+				final double x0 = envelopes[0][i] - distance, y0 = envelopes[1][i] - distance;
+				final double x1 = envelopes[2][i] + distance, y1 = envelopes[3][i] + distance;
+				int size = 0;
+				final int c0 = grid.column(x0 - grid.margin), c1 = grid.column(x1 + grid.margin);
+				final int r0 = grid.row(y0 - grid.margin), r1 = grid.row(y1 + grid.margin);
+				for (int row = r0; row <= r1; row++) {
+					for (int column = c0; column <= c1; column++) {
+						final int cell = row * grid.columns + column;
+						for (int k = grid.starts[cell]; k < grid.starts[cell + 1]; k++) {
+							final int p = grid.sorted[k];
+							if (grid.maxXs[p] < x0 || grid.minXs[p] > x1 || grid.maxYs[p] < y0 || grid.minYs[p] > y1
+									|| grid.shapes[p] == source) {
+								continue;
+							}
+							if (source.euclidianDistanceTo(grid.shapes[p]) > distance) {
+								continue;
+							}
+							if (size == found.length) {
+								found = Arrays.copyOf(found, size * 2);
+							}
+							found[size++] = p;
+						}
+					}
+				}
+				Arrays.sort(found, 0, size);
+				final IShape[] shapes = new IShape[size];
+				for (int k = 0; k < size; k++) {
+					shapes[k] = grid.shapes[found[k]];
+				}
+				result[i] = shapes;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns, for each shape of the first array, the closest shape of the second one (itself excepted), or null if
+	 * there is none. The cells are visited ring by ring around the ones covered by the shape, until the next ring
+	 * cannot contain a closer shape
+	 */
+	public static IShape[] nearest(final IShape[] left, final IShape[] right) {
+		final IShape[] result = new IShape[left.length];
+		if (right.length == 0) { return result; }
+		final SpatialJoin grid = new SpatialJoin(right, 0d);
+		final double[][] envelopes = envelopesOf(left);
+		run(left.length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final IShape source = left[i];
+				final int c0 = grid.column(envelopes[0][i]), c1 = grid.column(envelopes[2][i]);
+				final int r0 = grid.row(envelopes[1][i]), r1 = grid.row(envelopes[3][i]);
+				double best = Double.POSITIVE_INFINITY;
+				int closest = -1;
+				for (int ring = 0;; ring++) {
+					if (c0 - ring < 0 && r0 - ring < 0 && c1 + ring >= grid.columns && r1 + ring >= grid.rows) {
+						break;
+					}
+					if (ring > 0 && best < (ring - 1) * grid.cellSize - grid.margin * Maths.SQRT2) {
+						break;
+					}
+					for (int row = Math.max(0, r0 - ring); row <= Math.min(grid.rows - 1, r1 + ring); row++) {
+						final boolean edge = ring == 0 || row == r0 - ring || row == r1 + ring;
+						for (int column = Math.max(0, c0 - ring); column <= Math.min(grid.columns - 1,
+								c1 + ring); column++) {
+							if (!edge && column != c0 - ring && column != c1 + ring) {
+								continue;
+							}
+							final int cell = row * grid.columns + column;
+							for (int k = grid.starts[cell]; k < grid.starts[cell + 1]; k++) {
+								final int p = grid.sorted[k];
+								if (grid.shapes[p] == source) {
+									continue;
+								}
+								final double d = source.euclidianDistanceTo(grid.shapes[p]);
+								if (d < best || d == best && p < closest) {
+									best = d;
+									closest = p;
+								}
+							}
+						}
+					}
+				}
+				result[i] = closest < 0 ? null : grid.shapes[closest];
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * The envelopes of the shapes (min x, min y, max x and max y arrays), computed before the shapes are split among
+	 * threads
+	 */
+	private static double[][] envelopesOf(final IShape[] shapes) {
+		final double[][] result = new double[4][shapes.length];
+		for (int i = 0; i < shapes.length; i++) {
+			final Envelope3D env = shapes[i].getEnvelope();
+			result[0][i] = env.getMinX();
+			result[1][i] = env.getMinY();
+			result[2][i] = env.getMaxX();
+			result[3][i] = env.getMaxY();
+			env.dispose();
+		}
+		return result;
+	}
+
+	private interface Chunk {
+		void compute(int from, int to);
+	}
+
+	/**
+	 * Computes the chunks of the range [0, size[, concurrently if there are several of them
+	 */
+	private static void run(final int size, final Chunk chunk) {
+		if (size <= CHUNK || GamaExecutorService.AGENT_PARALLEL_EXECUTOR == null) {
+			chunk.compute(0, size);
+			return;
+		}
+		final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int from = 0; from < size; from += CHUNK) {
+			final int start = from, end = Math.min(size, from + CHUNK);
+			tasks.add(ForkJoinTask.adapt(() -> chunk.compute(start, end)));
+		}
+		GamaExecutorService.executeThreaded(() -> ForkJoinTask.invokeAll(tasks));
+	}
+
+}
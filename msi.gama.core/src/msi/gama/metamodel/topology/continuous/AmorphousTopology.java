@@ -117,6 +117,11 @@ public class AmorphousTopology implements ITopology {
 		expandableEnvironment.setGeometry(new GamaShape(ng.getInnerGeometry().getEnvelope()));
 	}
 
+	@Override
+	public void addAgents(final Collection<? extends IAgent> agents) {
+		// Nothing to do: the environment has already been expanded by updateAgent()
+	}
+
 	/**
 	 * @see msi.gama.environment.ITopology#removeAgent(msi.gama.interfaces.IAgent)
 	 */
@@ -10,15 +10,24 @@
  ********************************************************************************************************/
 package msi.gama.metamodel.topology.continuous;
 
+import java.util.function.Predicate;
+
 import msi.gama.common.interfaces.IKeyword;
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.population.IPopulation;
 import msi.gama.metamodel.shape.ILocation;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.metamodel.topology.AbstractTopology;
+import msi.gama.metamodel.topology.GamaSpatialHash;
+import msi.gama.metamodel.topology.GamaStaticRTree;
+import msi.gama.metamodel.topology.ISpatialIndex;
 import msi.gama.metamodel.topology.ITopology;
+import msi.gama.metamodel.topology.filter.IAgentFilter;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.GamaListFactory;
 import msi.gaml.operators.Maths;
+import msi.gaml.species.ISpecies;
 import msi.gaml.types.Types;
 
 /**
@@ -40,6 +49,38 @@ public class ContinuousTopology extends AbstractTopology {
 		places = GamaListFactory.wrap(Types.GEOMETRY, environment);
 	}
 
+	/**
+	 * Gives its own spatial hash or R-tree to the population if its species asks for one (see the 'spatial_index'
+	 * facet). The species moving in 3D get a three-dimensional spatial hash by default, so that the queries at a
+	 * distance made by points do not return the agents above or below them as candidates (as long as these agents are
+	 * points too, the distances to the other shapes being computed in 2D)
+	 */
+	@Override
+	public void initialize(final IScope scope, final IPopulation<? extends IAgent> pop) throws GamaRuntimeException {
+		final ISpecies species = pop.getSpecies();
+		final boolean threeD = species.implementsSkill(IKeyword.MOVING_3D_SKILL);
+		final double cellSize = species.getSpatialHashCellSize();
+		final ISpatialIndex index = getSpatialIndex();
+		if (cellSize >= 0 || threeD && !species.hasFacet(IKeyword.SPATIAL_INDEX)) {
+			((ISpatialIndex.Compound) index).add(new GamaSpatialHash(environment.getEnvelope(), Math.max(0d, cellSize),
+					threeD ? GamaSpatialHash.DEFAULT_LAYERS : 1, index.isParallel()), pop);
+		} else if (species.hasStaticSpatialIndex()) {
+			((ISpatialIndex.Compound) index).add(new GamaStaticRTree(index.isParallel()), pop);
+		}
+		super.initialize(scope, pop);
+	}
+
+	@Override
+	public void forEachNeighborOf(final IScope scope, final IShape source, final Double distance,
+			final IAgentFilter filter, final Predicate<IAgent> visitor) throws GamaRuntimeException {
+		if (isTorus()) {
+			super.forEachNeighborOf(scope, source, distance, filter, visitor);
+			return;
+		}
+		insertAgents(scope, filter);
+		getSpatialIndex().forEachAtDistance(scope, source, distance, filter, visitor);
+	}
+
 	/**
 	 * @see msi.gama.interfaces.IValue#stringValue()
 	 */
@@ -19,13 +19,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Stream;
 
 import com.google.common.collect.Ordering;
@@ -52,6 +51,7 @@ import msi.gama.metamodel.shape.ILocation;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.metamodel.topology.ITopology;
 import msi.gama.metamodel.topology.filter.IAgentFilter;
+import msi.gama.runtime.GAMA;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.concurrent.GamaExecutorService;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
@@ -62,7 +62,9 @@ import msi.gama.util.GamaMapFactory;
 import msi.gama.util.ICollector;
 import msi.gama.util.IContainer;
 import msi.gama.util.IList;
+import msi.gama.util.IMap;
 import msi.gama.util.file.GamaGridFile;
+import msi.gama.util.file.GamaGridFile.GridValues;
 import msi.gama.util.matrix.GamaMatrix;
 import msi.gama.util.matrix.IMatrix;
 import msi.gama.util.path.GamaSpatialPath;
@@ -99,10 +101,19 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	protected IShape[] matrix;
 
 	double cellWidth, cellHeight;
+	/**
+	 * The colors and the values of the cells. In a lazy grid, they are only allocated when they are first written (see
+	 * {@link #pixels()} and {@link #values()}), the cells reading the default ones until then
+	 */
 	public int[] supportImagePixels;
 	public double[] gridValue;
 	public int nbBands = 1;
 	public List<IList<Double>> bands = null;
+	/**
+	 * The values of the bands of the cells, band by band, when they have been read directly from a file by a lazy grid
+	 * (in which case bands is null)
+	 */
+	double[][] bandValues = null;
 	protected Boolean usesVN = null;
 	protected Boolean isTorus = null;
 	protected Boolean isHexagon = null;
@@ -113,12 +124,42 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 	int actualNumberOfCells;
 	int firstCell, lastCell;
+	/**
+	 * Whether the cells are only built when they are accessed (see {@link #cellAt(IScope, int)}). The matrix is then
+	 * null: the cells built so far are published in lazyCells, once their agent is initialized, and all the cells are
+	 * only gathered in gatheredCells when all of them are asked for (by the path searches, the iterator or the list of
+	 * the agents, for instance). The random values drawn by the initializers of the cells are therefore drawn when the
+	 * cells are first accessed, which depends on the order in which the threads access them when the model runs in
+	 * parallel
+	 */
+	public final boolean lazy;
+	private AtomicReferenceArray<IShape> lazyCells;
+	private volatile IShape[] gatheredCells;
+	/**
+	 * The lock under which the cells of all the lazy grids are built: as the initializers of a cell can access the cells
+	 * of another lazy grid, a lock per grid could lead two threads to wait for each other
+	 */
+	private static final Object LAZY_LOCK = new Object();
+	/**
+	 * The population of the cells of a lazy grid, once it has been created, its agents in the order of their creation,
+	 * and the ones being initialized (only accessed by the thread that builds them, under the lock of the lazy grids)
+	 */
+	private GridPopulation lazyPopulation;
+	private final List<IAgent> builtAgents = new ArrayList<>();
+	private final Map<Integer, IAgent> agentsInConstruction = new HashMap<>();
+	private IAgent[] agentsToStep = new IAgent[0];
 	// UnmodifiableIterator<? extends IShape> iterator = null;
 	private ISpecies cellSpecies;
 	// private IAgentFilter cellFilter;
 
 	Map hexAgentToLoc = null;
 
+	/**
+	 * The flow fields computed last on this grid, the most recent first
+	 */
+	private final List<GridFlowField> flowFields = new ArrayList<>();
+	static final int FLOW_FIELDS_CACHE = 4;
+
 	final IShape referenceShape;
 
 	@Override
@@ -130,13 +171,27 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		gridValue = null;
 		_clear();
 		matrix = null;
+		lazyCells = null;
+		gatheredCells = null;
 		diffuser = null;
 		cellSpecies = null;
+		lazyPopulation = null;
+		builtAgents.clear();
+		agentsToStep = new IAgent[0];
+		synchronized (flowFields) {
+			flowFields.clear();
+		}
 	}
 
 	public GamaSpatialMatrix(final IScope scope, final IShape environment, final Integer cols, final Integer rows,
 			final boolean isTorus, final boolean usesVN, final boolean indiv, final boolean useNeighborsCache,
 			final String optimizer) throws GamaRuntimeException {
+		this(scope, environment, cols, rows, isTorus, usesVN, indiv, useNeighborsCache, optimizer, false);
+	}
+
+	public GamaSpatialMatrix(final IScope scope, final IShape environment, final Integer cols, final Integer rows,
+			final boolean isTorus, final boolean usesVN, final boolean indiv, final boolean useNeighborsCache,
+			final String optimizer, final boolean lazy) throws GamaRuntimeException {
 		super(cols, rows, Types.GEOMETRY);
 		environmentFrame = environment.getGeometry();
 		bounds = environmentFrame.getEnvelope();
@@ -144,9 +199,14 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		cellHeight = bounds.getHeight() / rows;
 		precision = bounds.getWidth() / 1000;
 		final int size = numRows * numCols;
-		createMatrix(size);
-		// image = ImageUtils.createCompatibleImage(cols, rows);
-		supportImagePixels = new int[size];
+		this.lazy = lazy && environmentFrame.getInnerGeometry().isRectangle();
+		if (this.lazy) {
+			lazyCells = new AtomicReferenceArray<>(size);
+		} else {
+			createMatrix(size);
+			// image = ImageUtils.createCompatibleImage(cols, rows);
+			supportImagePixels = new int[size];
+		}
 		this.isTorus = isTorus;
 		this.usesVN = usesVN;
 		actualNumberOfCells = 0;
@@ -156,27 +216,45 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		this.isHexagon = false;
 		useIndividualShapes = indiv;
 		this.useNeighborsCache = useNeighborsCache;
-		createCells(scope, false);
+		if (this.lazy) {
+			countCells();
+		} else {
+			createCells(scope, false);
+		}
 		this.optimizer = optimizer;
 	}
 
 	public GamaSpatialMatrix(final IScope scope, final GamaGridFile gfile, final boolean isTorus, final boolean usesVN,
 			final boolean indiv, final boolean useNeighborsCache, final String optimizer) throws GamaRuntimeException {
+		this(scope, gfile, isTorus, usesVN, indiv, useNeighborsCache, optimizer, false);
+	}
+
+	public GamaSpatialMatrix(final IScope scope, final GamaGridFile gfile, final boolean isTorus, final boolean usesVN,
+			final boolean indiv, final boolean useNeighborsCache, final String optimizer, final boolean lazy)
+			throws GamaRuntimeException {
 		super(100, 100, Types.GEOMETRY);
 		// DEBUG.OUT("GamaSpatialMatrix.GamaSpatialMatrix create
 		// new");
-		numRows = gfile.getNbRows(scope);
-		numCols = gfile.getNbCols(scope);
-
 		environmentFrame = scope.getSimulation().getGeometry();
+		this.lazy = lazy && environmentFrame.getInnerGeometry().isRectangle();
+		// In a lazy grid, the values are read without building the geometries of the file
+		final GridValues values = this.lazy ? gfile.readValues(scope) : null;
+		numRows = values == null ? gfile.getNbRows(scope) : values.numRows;
+		numCols = values == null ? gfile.getNbCols(scope) : values.numCols;
+
 		// environmentFrame = gfile.getGeometry(scope);
 		bounds = environmentFrame.getEnvelope();
 		cellWidth = bounds.getWidth() / numCols;
 		cellHeight = bounds.getHeight() / numRows;
 		precision = bounds.getWidth() / 1000;
-		final int size = gfile.length(scope);
-		createMatrix(size);
-		supportImagePixels = new int[size];
+		final int size = values == null ? gfile.length(scope) : values.values.length;
+		if (values == null) {
+			createMatrix(size);
+			supportImagePixels = new int[size];
+		} else {
+			lazyCells = new AtomicReferenceArray<>(size);
+			gridValue = values.values;
+		}
 		referenceShape = GamaGeometryType.buildRectangle(cellWidth, cellHeight, new GamaPoint(0, 0));
 		this.isTorus = isTorus;
 		this.usesVN = usesVN;
@@ -185,6 +263,11 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		this.useNeighborsCache = useNeighborsCache;
 		this.optimizer = optimizer;
 		this.nbBands = gfile.nbBands;
+		if (values != null) {
+			bandValues = nbBands > 1 ? values.bands : null;
+			countCells();
+			return;
+		}
 		if (nbBands > 1) {
 			bands = new ArrayList<>();
 
@@ -234,6 +317,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		this.isHexagon = false;
 		this.useNeighborsCache = useNeighborsCache;
 		this.optimizer = optimizer;
+		this.lazy = false;
 		this.nbBands = gfiles.size();
 		bands = new ArrayList<>();
 		
@@ -301,6 +385,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		firstCell = -1;
 		lastCell = -1;
 		useIndividualShapes = indiv;
+		this.lazy = false;
 
 		this.optimizer = optimizer;
 		this.useNeighborsCache = useNeighborsCache;
@@ -438,17 +523,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			final int xx = i - yy * numCols;
 
 			// WARNING HACK
-			IShape rect = null;
-			if (useIndividualShapes) {
-				// Change in the function used in building cells in order to minimize computations and mutualize points.
-				// See #2896
-				rect = new GamaShape(GeometryUtils.GEOMETRY_FACTORY.buildRectangle(new GamaPoint[] { xs[xx][yy],
-						xs[xx + 1][yy], xs[xx + 1][yy + 1], xs[xx][yy + 1], xs[xx][yy] }));
-			} else {
-				final double cmx = cellWidth / 2;
-				final double cmy = cellHeight / 2;
-				rect = new CellProxyGeometry(new GamaPoint(xx * cellWidth + cmx, yy * cellHeight + cmy));
-			}
+			final IShape rect = buildCell(xs[xx][yy], xs[xx + 1][yy], xs[xx + 1][yy + 1], xs[xx][yy + 1], xx, yy);
 			boolean ok = isRectangle || translatedReferenceFrame.covers(rect);
 			if (partialCells && !ok && rect.intersects(translatedReferenceFrame)) {
 				rect.setGeometry(Spatial.Operators.inter(scope, rect, translatedReferenceFrame));
@@ -467,6 +542,109 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		}
 	}
 
+	private IShape buildCell(final GamaPoint p0, final GamaPoint p1, final GamaPoint p2, final GamaPoint p3,
+			final int xx, final int yy) {
+		if (useIndividualShapes) {
+			// Change in the function used in building cells in order to minimize computations and mutualize points.
+			// See #2896
+			return new GamaShape(GeometryUtils.GEOMETRY_FACTORY.buildRectangle(new GamaPoint[] { p0, p1, p2, p3, p0 }));
+		}
+		final double cmx = cellWidth / 2;
+		final double cmy = cellHeight / 2;
+		return new CellProxyGeometry(new GamaPoint(xx * cellWidth + cmx, yy * cellHeight + cmy));
+	}
+
+	/**
+	 * Counts the cells of a lazy grid without building them (its environment being a rectangle, all of them are part of
+	 * the grid)
+	 */
+	private void countCells() {
+		actualNumberOfCells = numRows * numCols;
+		firstCell = actualNumberOfCells == 0 ? -1 : 0;
+		lastCell = actualNumberOfCells - 1;
+	}
+
+	/**
+	 * Returns the cell at this index: its agent once the population of the grid has been created, its geometry before,
+	 * or null if there is no cell at this index. In a lazy grid, the cell (and its agent) is built the first time it is
+	 * accessed, its agent being initialized in this scope (or in a copy of the scope of the host if it is null)
+	 */
+	final IShape cellAt(final IScope scope, final int index) {
+		if (!lazy) { return matrix[index]; }
+		final IShape s = lazyCells.get(index);
+		if (s != null) { return s; }
+		return buildCellAt(scope, index);
+	}
+
+	/**
+	 * Builds the cell at this index, and its agent if the population exists. The agent is only published once it has
+	 * been initialized and scheduled, so that the other threads never see an incomplete cell; the thread that builds
+	 * it can access it during its initialization
+	 */
+	private IShape buildCellAt(final IScope scope, final int index) {
+		synchronized (LAZY_LOCK) {
+			IShape s = lazyCells.get(index);
+			if (s != null) { return s; }
+			s = agentsInConstruction.get(index);
+			if (s != null) { return s; }
+			final int yy = index / numCols;
+			final int xx = index - yy * numCols;
+			final GamaPoint p0 = new GamaPoint(xx * cellWidth, yy * cellHeight);
+			final GamaPoint p2 = new GamaPoint((xx + 1) * cellWidth, (yy + 1) * cellHeight);
+			s = buildCell(p0, new GamaPoint(p2.x, p0.y), p2, new GamaPoint(p0.x, p2.y), xx, yy);
+			if (lazyPopulation != null) {
+				s = lazyPopulation.createCell(scope, index, s);
+			}
+			lazyCells.set(index, s);
+			return s;
+		}
+	}
+
+	/**
+	 * The colors of the cells, allocated the first time they are needed in a lazy grid
+	 */
+	final int[] pixels() {
+		final int[] result = supportImagePixels;
+		if (result != null || !lazy) { return result; }
+		synchronized (this) {
+			if (supportImagePixels == null) {
+				supportImagePixels = new int[lazyCells.length()];
+			}
+			return supportImagePixels;
+		}
+	}
+
+	/**
+	 * The values of the cells, allocated the first time they are needed in a lazy grid
+	 */
+	final double[] values() {
+		final double[] result = gridValue;
+		if (result != null || !lazy) { return result; }
+		synchronized (this) {
+			if (gridValue == null) {
+				gridValue = new double[lazyCells.length()];
+			}
+			return gridValue;
+		}
+	}
+
+	/**
+	 * Returns all the cells, after having built, in a lazy grid, the ones that have not been accessed yet (when all of
+	 * them are asked for)
+	 */
+	private IShape[] allCells(final IScope scope) {
+		if (!lazy) { return matrix; }
+		IShape[] result = gatheredCells;
+		if (result == null) {
+			result = new IShape[lazyCells.length()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = cellAt(scope, i);
+			}
+			gatheredCells = result;
+		}
+		return result;
+	}
+
 	@Override
 	public INeighborhood getNeighborhood() {
 		if (neighborhood == null) {
@@ -483,19 +661,19 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 	@Override
 	public int[] getDisplayData() {
-		return supportImagePixels;
+		return pixels();
 	}
 
 	@Override
 	public double[] getGridValue() {
-		return gridValue;
+		return values();
 	}
 
 	@Override
 	public double[] getGridValueOf(final IScope scope, final IExpression exp) {
-		final double[] result = new double[matrix.length];
-		for (int i = 0; i < matrix.length; i++) {
-			final IShape s = matrix[i];
+		final double[] result = new double[lazy ? lazyCells.length() : gridValue.length];
+		for (int i = 0; i < result.length; i++) {
+			final IShape s = cellAt(scope, i);
 			if (s != null) {
 				final IAgent a = s.getAgent();
 				if (a != null) {
@@ -507,9 +685,22 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		return result;
 	}
 
+	/**
+	 * The values of the bands of the cell at this index (when there are several of them)
+	 */
+	IList<Double> bandsAt(final int index) {
+		if (bands != null) { return bands.get(index); }
+		final IList<Double> result = GamaListFactory.create(Types.FLOAT, bandValues.length);
+		for (final double[] band : bandValues) {
+			result.add(band[index]);
+		}
+		return result;
+	}
+
 	public double getGridValue(final int col, final int row) {
 		final int index = getPlaceIndexAt(col, row);
-		if (index != -1) { return gridValue[index]; }
+		final double[] values = gridValue;
+		if (index != -1 && values != null) { return values[index]; }
 		return 0.0;
 	}
 
@@ -587,7 +778,17 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		if (c == null) { return null; }
 		final int p = getPlaceIndexAt(c);
 		if (p == -1) { return null; }
-		return matrix[p];
+		return cellAt(null, p);
+	}
+
+	/**
+	 * Same as getPlaceAt(ILocation), except that, in a lazy grid, the cell is built in this scope
+	 */
+	public IShape getPlaceAt(final IScope scope, final ILocation c) {
+		if (c == null) { return null; }
+		final int p = getPlaceIndexAt(c);
+		if (p == -1) { return null; }
+		return cellAt(scope, p);
 	}
 
 	@Override
@@ -599,7 +800,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	@Override
 	public IShape get(final IScope scope, final int col, final int row) {
 		final int index = getPlaceIndexAt(col, row);
-		if (index != -1) { return matrix[index]; }
+		if (index != -1) { return cellAt(scope, index); }
 		return null;
 	}
 
@@ -629,13 +830,16 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 	@Override
 	public void _clear() {
-		Arrays.fill(matrix, null);
+		if (matrix != null) {
+			Arrays.fill(matrix, null);
+		}
 		matrix = null;
 	}
 
 	@Override
 	protected IList _listValue(final IScope scope, final IType contentType, final boolean cast) {
 		if (actualNumberOfCells == 0) { return GamaListFactory.EMPTY_LIST; }
+		final IShape[] matrix = allCells(scope);
 		if (cellSpecies == null) {
 			return cast ? GamaListFactory.create(scope, contentType, matrix)
 					: GamaListFactory.wrap(contentType, matrix);
@@ -654,7 +858,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 	@Override
 	public java.lang.Iterable<IShape> iterable(final IScope scope) {
-		return Arrays.asList(matrix);
+		return Arrays.asList(allCells(scope));
 	}
 
 	@Override
@@ -672,13 +876,13 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	@Override
 	public IShape _first(final IScope scope) {
 		if (firstCell == -1) { return null; }
-		return matrix[firstCell];
+		return cellAt(scope, firstCell);
 	}
 
 	@Override
 	public IShape _last(final IScope scope) {
 		if (lastCell == -1) { return null; }
-		return matrix[lastCell];
+		return cellAt(scope, lastCell);
 	}
 
 	@Override
@@ -691,7 +895,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	public IMatrix copy(final IScope scope, final ILocation size, final boolean copy) throws GamaRuntimeException {
 		if (size == null && !copy) { return this; }
 		return new GamaSpatialMatrix(scope, environmentFrame, numCols, numRows, isTorus, usesVN, useIndividualShapes,
-				useNeighborsCache, optimizer);
+				useNeighborsCache, optimizer, lazy);
 	}
 
 	@Override
@@ -721,6 +925,11 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		return useIndividualShapes;
 	}
 
+	@Override
+	public boolean isLazy() {
+		return lazy;
+	}
+
 	@Override
 	public int manhattanDistanceBetween(final IShape g1, final IShape g2) {
 
@@ -836,7 +1045,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	public IAgent getAgentClosestTo(final IScope scope, final IShape source, final IAgentFilter filter)
 			throws GamaRuntimeException {
 		final int currentplace = getPlaceIndexAt(source.getLocation());
-		final IAgent startAg = matrix[currentplace].getAgent();
+		final IAgent startAg = cellAt(scope, currentplace).getAgent();
 		if (filter.accept(scope, source, startAg)) { return startAg; }
 		IAgent agT = testPlace(scope, source, filter, startAg);
 		if (agT != null) { return agT; }
@@ -883,31 +1092,33 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			final ITopology topo, final IList<IAgent> on) throws GamaRuntimeException {
 		final int currentplace = getPlaceIndexAt(source.getLocation());
 		final int targetplace = getPlaceIndexAt(target.getLocation());
-		final IAgent startAg = matrix[currentplace].getAgent();
-		final IAgent endAg = matrix[targetplace].getAgent();
+		final IAgent startAg = cellAt(scope, currentplace).getAgent();
+		final IAgent endAg = cellAt(scope, targetplace).getAgent();
 		if (startAg == endAg) { return simplePath(scope, source, target, topo, startAg, endAg); }
-		final boolean[] open = new boolean[this.getAgents().size()];
-		initOpen(open, on);
-
-		final List<IAgent> frontier = new ArrayList<>();
-		final Map<IAgent, IAgent> cameFrom = new Hashtable<>();
-
-		frontier.add(startAg);
-		while (!frontier.isEmpty()) {
-			final IAgent current = frontier.remove(0);
-			if (current == endAg) { return finalPath(scope, source, target, topo, startAg, current, cameFrom); }
-			final Collection<IAgent> neigh = getNeighborhood().getNeighborsIn(scope, current.getIndex(), 1);
-
-			for (final IAgent next : neigh) {
-				if (!open[next.getIndex()]) {
-					continue;
+		final PathBuffer buffer = PathBuffer.acquire(actualNumberOfCells);
+		try {
+			final boolean[] open = buffer.open;
+			buffer.initOpen(on);
+			buffer.reach(startAg, 0.0, -1);
+			buffer.enqueue(startAg.getIndex());
+			while (!buffer.isEmpty()) {
+				final IAgent current = buffer.cellAt(buffer.dequeue());
+				if (current == endAg) { return finalPath(scope, source, target, topo, startAg, current, buffer); }
+				final Collection<IAgent> neigh = getNeighborhood().getNeighborsIn(scope, current.getIndex(), 1);
+
+				for (final IAgent next : neigh) {
+					if (!open[next.getIndex()]) {
+						continue;
+					}
+					buffer.reach(next, 0.0, current.getIndex());
+					buffer.enqueue(next.getIndex());
+					open[next.getIndex()] = false;
 				}
-				frontier.add(next);
-				cameFrom.put(next, current);
-				open[next.getIndex()] = false;
 			}
+			return null;
+		} finally {
+			buffer.release();
 		}
-		return null;
 
 	}
 
@@ -916,63 +1127,45 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			throws GamaRuntimeException {
 		final int currentplace = getPlaceIndexAt(source.getLocation());
 		final int targetplace = getPlaceIndexAt(target.getLocation());
-		final IAgent startAg = matrix[currentplace].getAgent();
-		final IAgent endAg = matrix[targetplace].getAgent();
+		final IAgent startAg = cellAt(scope, currentplace).getAgent();
+		final IAgent endAg = cellAt(scope, targetplace).getAgent();
 		if (startAg == endAg) { return simplePath(scope, source, target, topo, startAg, endAg); }
-		final Double maxDim = onWithWeight != null ? Math.max(this.cellHeight, this.cellWidth) : 0.0;
-
-		final boolean[] open = new boolean[this.getAgents().size()];
-		initOpen(open, onWithWeight != null ? onWithWeight.keySet() : on);
+		final double maxDim = onWithWeight != null ? Math.max(this.cellHeight, this.cellWidth) : 0.0;
 
-		final Map<IAgent, IAgent> cameFrom = new HashMap<>();
-
-		final PriorityQueue frontier = newPriorityQueue();
-
-		final Map<IAgent, Double> costSoFar = new HashMap<>();
-		costSoFar.put(startAg, 0.0);
-
-		frontier.add(new ArrayList() {
-			{
-				add(startAg);
-				add(0.0);
-			}
-		});
-		while (!frontier.isEmpty()) {
-			final IAgent current = (IAgent) ((List) frontier.remove()).get(0);
-			if (current == endAg) {
-				if (onWithWeight != null) {
-					return finalPath(scope, source, target, topo, startAg, current, cameFrom, onWithWeight);
-				} else {
-					return finalPath(scope, source, target, topo, startAg, current, cameFrom);
+		final PathBuffer buffer = PathBuffer.acquire(actualNumberOfCells);
+		try {
+			final boolean[] open = buffer.open;
+			buffer.initOpen(onWithWeight != null ? onWithWeight.keySet() : on);
+			buffer.reach(startAg, 0.0, -1);
+			buffer.push(startAg.getIndex(), 0.0);
+			while (!buffer.isEmpty()) {
+				final IAgent current = buffer.cellAt(buffer.pop());
+				if (current == endAg) {
+					return finalPath(scope, source, target, topo, startAg, current, buffer, onWithWeight);
 				}
-			}
-			Collection<IAgent> neigh;
-			neigh = getNeighborhood().getNeighborsIn(scope, current.getIndex(), 1);
-			final Double cost = costSoFar.get(current);
+				final Collection<IAgent> neigh = getNeighborhood().getNeighborsIn(scope, current.getIndex(), 1);
+				final double cost = buffer.costOf(current.getIndex());
 
-			for (final IAgent next : neigh) {
-				if (!open[next.getIndex()]) {
-					continue;
-				}
-				final double dist = current.getLocation().euclidianDistanceTo(next.getLocation());
-				final double nextCost = cost + (onWithWeight == null ? dist
-						: Cast.asFloat(scope, onWithWeight.get(next)) + (dist > maxDim ? Double.MIN_VALUE : 0.0));
-
-				frontier.add(new ArrayList() {
-					{
-						add(next);
-						add(nextCost);
+				for (final IAgent next : neigh) {
+					final int index = next.getIndex();
+					if (!open[index]) {
+						continue;
 					}
-				});
-				open[next.getIndex()] = false;
+					final double dist = current.getLocation().euclidianDistanceTo(next.getLocation());
+					final double nextCost = cost + (onWithWeight == null ? dist
+							: Cast.asFloat(scope, onWithWeight.get(next)) + (dist > maxDim ? Double.MIN_VALUE : 0.0));
 
-				if (!costSoFar.containsKey(next) || nextCost < costSoFar.get(next)) {
-					costSoFar.put(next, nextCost);
-					cameFrom.put(next, current);
+					if (!buffer.isReached(index) || nextCost < buffer.costOf(index)) {
+						buffer.reach(next, nextCost, current.getIndex());
+					}
+					buffer.push(index, nextCost);
+					open[index] = false;
 				}
 			}
+			return null;
+		} finally {
+			buffer.release();
 		}
-		return null;
 
 	}
 
@@ -982,57 +1175,43 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			throws GamaRuntimeException {
 		final int currentplace = getPlaceIndexAt(source.getLocation());
 		final int targetplace = getPlaceIndexAt(target.getLocation());
-		final IAgent startAg = matrix[currentplace].getAgent();
-		final IAgent endAg = matrix[targetplace].getAgent();
+		final IAgent startAg = cellAt(scope, currentplace).getAgent();
+		final IAgent endAg = cellAt(scope, targetplace).getAgent();
 		final boolean weighted = onWithWeight != null;
 		if (startAg == endAg) { return simplePath(scope, source, target, topo, startAg, endAg); }
-		final Double maxDim = weighted ? Math.max(this.cellHeight, this.cellWidth) : 0.0;
+		final double maxDim = weighted ? Math.max(this.cellHeight, this.cellWidth) : 0.0;
 
-		final boolean[] open = new boolean[this.getAgents().size()];
-		initOpen(open, weighted ? onWithWeight.keySet() : on);
-		final PriorityQueue frontier = newPriorityQueue();
-		final Map<IAgent, IAgent> cameFrom = new HashMap<>();
-		final Map<IAgent, Double> costSoFar = new HashMap<>();
-
-		frontier.add(new ArrayList() {
-			{
-				add(startAg);
-				add(weighted ? Cast.asFloat(scope, onWithWeight.get(startAg)) : 0.0);
-			}
-		});
-		costSoFar.put(startAg, 0.0);
-		while (!frontier.isEmpty()) {
-			final IAgent current = (IAgent) ((List) frontier.remove()).get(0);
-			if (current == endAg) {
-				if (weighted) {
-					return finalPath(scope, source, target, topo, startAg, current, cameFrom, onWithWeight);
-				} else {
-					return finalPath(scope, source, target, topo, startAg, current, cameFrom);
-				}
-			}
-			final Double cost = costSoFar.get(current);
-			final Set<IAgent> neigh = getNeighborhood().getNeighborsIn(scope, current.getIndex(), 1);
-			for (final IAgent next : neigh) {
-				if (!open[next.getIndex()]) {
-					continue;
+		final PathBuffer buffer = PathBuffer.acquire(actualNumberOfCells);
+		try {
+			final boolean[] open = buffer.open;
+			buffer.initOpen(weighted ? onWithWeight.keySet() : on);
+			buffer.reach(startAg, 0.0, -1);
+			buffer.push(startAg.getIndex(), weighted ? Cast.asFloat(scope, onWithWeight.get(startAg)) : 0.0);
+			while (!buffer.isEmpty()) {
+				final IAgent current = buffer.cellAt(buffer.pop());
+				if (current == endAg) {
+					return finalPath(scope, source, target, topo, startAg, current, buffer, onWithWeight);
 				}
-				final double dist = current.getLocation().euclidianDistanceTo(next.getLocation());
-				final double nextCost = cost + (!weighted ? dist
-						: Cast.asFloat(scope, onWithWeight.get(next)) + (dist > maxDim ? Double.MIN_VALUE : 0.0));
-				if (!costSoFar.containsKey(next) || nextCost < costSoFar.get(next)) {
-					costSoFar.put(next, nextCost);
-					frontier.add(new ArrayList() {
-						{
-							add(next);
-							add(nextCost + heuristic(next, endAg));
-						}
-					});
-					cameFrom.put(next, current);
-
+				final double cost = buffer.costOf(current.getIndex());
+				final Set<IAgent> neigh = getNeighborhood().getNeighborsIn(scope, current.getIndex(), 1);
+				for (final IAgent next : neigh) {
+					final int index = next.getIndex();
+					if (!open[index]) {
+						continue;
+					}
+					final double dist = current.getLocation().euclidianDistanceTo(next.getLocation());
+					final double nextCost = cost + (!weighted ? dist
+							: Cast.asFloat(scope, onWithWeight.get(next)) + (dist > maxDim ? Double.MIN_VALUE : 0.0));
+					if (!buffer.isReached(index) || nextCost < buffer.costOf(index)) {
+						buffer.reach(next, nextCost, current.getIndex());
+						buffer.push(index, nextCost + heuristic(next, endAg));
+					}
 				}
 			}
+			return null;
+		} finally {
+			buffer.release();
 		}
-		return null;
 
 	}
 
@@ -1041,49 +1220,40 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		final int currentplace = getPlaceIndexAt(source.getLocation());
 		final int targetplace = getPlaceIndexAt(target.getLocation());
-		final IAgent startAg = matrix[currentplace].getAgent();
-		final IAgent endAg = matrix[targetplace].getAgent();
+		final IAgent startAg = cellAt(scope, currentplace).getAgent();
+		final IAgent endAg = cellAt(scope, targetplace).getAgent();
 
 		if (startAg == endAg) { return simplePath(scope, source, target, topo, startAg, endAg); }
-		final boolean[] open = new boolean[this.getAgents().size()];
-		initOpen(open, on);
-		final PriorityQueue frontier = newPriorityQueue();
-		final Map<IAgent, IAgent> cameFrom = new HashMap<>();
-		final Map<IAgent, Double> costSoFar = new HashMap<>();
-
-		frontier.add(new ArrayList() {
-			{
-				add(startAg);
-				add(0.0);
-			}
-		});
-		costSoFar.put(startAg, 0.0);
-		while (!frontier.isEmpty()) {
-			final IAgent current = (IAgent) ((List) frontier.remove()).get(0);
-			if (current == endAg) { return finalPath(scope, source, target, topo, startAg, current, cameFrom); }
-			final Double cost = costSoFar.get(current);
-			final Set<IAgent> neigh = getNeighborsPrune(scope, current, cameFrom.get(current), open);
-
-			for (final IAgent next : neigh) {
-				if (!open[next.getIndex()]) {
-					continue;
-				}
-				final IAgent jumpt = jump(scope, next, current, open, endAg);
-				final IAgent ne = jumpt == null ? next : jumpt;
-				final double nextCost = cost + current.getLocation().euclidianDistanceTo(ne.getLocation());
-				if (!costSoFar.containsKey(ne) || nextCost < costSoFar.get(ne)) {
-					costSoFar.put(ne, nextCost);
-					frontier.add(new ArrayList() {
-						{
-							add(ne);
-							add(nextCost + heuristic(ne, endAg));
-						}
-					});
-					cameFrom.put(ne, current);
+		final PathBuffer buffer = PathBuffer.acquire(actualNumberOfCells);
+		try {
+			final boolean[] open = buffer.open;
+			buffer.initOpen(on);
+			buffer.reach(startAg, 0.0, -1);
+			buffer.push(startAg.getIndex(), 0.0);
+			while (!buffer.isEmpty()) {
+				final IAgent current = buffer.cellAt(buffer.pop());
+				if (current == endAg) { return finalPath(scope, source, target, topo, startAg, current, buffer); }
+				final double cost = buffer.costOf(current.getIndex());
+				final Set<IAgent> neigh = getNeighborsPrune(scope, current, buffer.parentOf(current.getIndex()), open);
+
+				for (final IAgent next : neigh) {
+					if (!open[next.getIndex()]) {
+						continue;
+					}
+					final IAgent jumpt = jump(scope, next, current, open, endAg);
+					final IAgent ne = jumpt == null ? next : jumpt;
+					final int index = ne.getIndex();
+					final double nextCost = cost + current.getLocation().euclidianDistanceTo(ne.getLocation());
+					if (!buffer.isReached(index) || nextCost < buffer.costOf(index)) {
+						buffer.reach(ne, nextCost, current.getIndex());
+						buffer.push(index, nextCost + heuristic(ne, endAg));
+					}
 				}
 			}
+			return null;
+		} finally {
+			buffer.release();
 		}
-		return null;
 	}
 
 	public boolean walkable(final IScope scope, final int x, final int y, final boolean[] open) {
@@ -1244,6 +1414,145 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		return computeShortestPathBetweenDijkstra(scope, source, target, topo, null, on);
 	}
 
+	@Override
+	public GridFlowField computeFlowFieldTo(final IScope scope, final IContainer<?, IShape> targets,
+			final IList<IAgent> on) {
+		return flowFieldTo(scope, targets, on, null);
+	}
+
+	@Override
+	public GridFlowField computeFlowFieldToWeighted(final IScope scope, final IContainer<?, IShape> targets,
+			final Map<IAgent, Object> on) {
+		return flowFieldTo(scope, targets, null, on);
+	}
+
+	private GridFlowField flowFieldTo(final IScope scope, final IContainer<?, IShape> targets,
+			final IList<IAgent> on, final Map<IAgent, Object> onWithWeight) {
+		final boolean weighted = onWithWeight != null;
+		final long stamp = stampOf(scope, targets, weighted ? onWithWeight.keySet() : on, onWithWeight);
+		synchronized (flowFields) {
+			for (final GridFlowField field : flowFields) {
+				if (field.isComputedFor(stamp)) {
+					flowFields.remove(field);
+					flowFields.add(0, field);
+					return field;
+				}
+			}
+		}
+		final boolean[] open = new boolean[actualNumberOfCells];
+		PathBuffer.initOpen(open, weighted ? onWithWeight.keySet() : on);
+		final double[] weights = weighted ? new double[actualNumberOfCells] : null;
+		if (weighted) {
+			for (final Map.Entry<IAgent, Object> entry : onWithWeight.entrySet()) {
+				weights[entry.getKey().getIndex()] = Cast.asFloat(scope, entry.getValue());
+			}
+		}
+		final List<IAgent> cells = new ArrayList<>();
+		for (final IShape target : targets.iterable(scope)) {
+			final IAgent cell = target == null ? null : getAgentAt(target.getLocation());
+			if (cell != null) {
+				cells.add(cell);
+			}
+		}
+		final IAgent[] sources = cells.toArray(new IAgent[cells.size()]);
+		final GridFlowField field = computeFlowField(scope, sources, open, weights, stamp);
+		synchronized (flowFields) {
+			flowFields.add(0, field);
+			if (flowFields.size() > FLOW_FIELDS_CACHE) {
+				flowFields.remove(FLOW_FIELDS_CACHE);
+			}
+		}
+		return field;
+	}
+
+	/**
+	 * Returns a stamp of the targets, the open cells (all of them if on is null) and their weights (null if the search
+	 * is not weighted) of a flow field, computed in one pass without allocating anything. The stamps are 64 bits
+	 * hashes: two searches with the same stamp are considered to be the same
+	 */
+	private long stampOf(final IScope scope, final IContainer<?, IShape> targets, final Collection<IAgent> on,
+			final Map<IAgent, Object> weights) {
+		long stamp = 1;
+		for (final IShape target : targets.iterable(scope)) {
+			final IAgent cell = target == null ? null : getAgentAt(target.getLocation());
+			if (cell != null) {
+				stamp = 31 * stamp + GridFlowField.mix(cell.getIndex());
+			}
+		}
+		long open = on == null ? -1 : 0;
+		if (on != null) {
+			for (final IAgent cell : on) {
+				open += GridFlowField.mix(cell.getIndex());
+			}
+		}
+		long costs = weights == null ? 0 : 1;
+		if (weights != null) {
+			for (final Map.Entry<IAgent, Object> entry : weights.entrySet()) {
+				final double weight = Cast.asFloat(scope, entry.getValue());
+				costs += GridFlowField.mix(31L * entry.getKey().getIndex() + Double.doubleToLongBits(weight));
+			}
+		}
+		return GridFlowField.mix(GridFlowField.mix(GridFlowField.mix(stamp) + open) + costs);
+	}
+
+	/**
+	 * Computes the distances to the targets by a Dijkstra search starting from all of them. The cost of moving from a
+	 * cell to the next one is the one used by the shortest paths: the distance between their centers or, if the search
+	 * is weighted, the weight of the next cell
+	 */
+	private GridFlowField computeFlowField(final IScope scope, final IAgent[] sources, final boolean[] cells,
+			final double[] weights, final long stamp) {
+		final double maxDim = Math.max(this.cellHeight, this.cellWidth);
+		final PathBuffer buffer = PathBuffer.acquire(actualNumberOfCells);
+		try {
+			buffer.initOpen(cells);
+			final boolean[] open = buffer.open;
+			for (final IAgent source : sources) {
+				open[source.getIndex()] = true;
+				if (!buffer.isReached(source.getIndex())) {
+					buffer.reach(source, 0.0, -1);
+					buffer.push(source.getIndex(), 0.0);
+				}
+			}
+			while (!buffer.isEmpty()) {
+				final int index = buffer.pop();
+				// The cells can be found several times in the frontier: only the first (and cheapest) one counts
+				if (!open[index]) {
+					continue;
+				}
+				open[index] = false;
+				final IAgent current = buffer.cellAt(index);
+				final double cost = buffer.costOf(index) + (weights == null ? 0.0 : weights[index]);
+				for (final IAgent previous : getNeighborhood().getNeighborsIn(scope, index, 1)) {
+					final int i = previous.getIndex();
+					if (!open[i]) {
+						continue;
+					}
+					final double dist = current.getLocation().euclidianDistanceTo(previous.getLocation());
+					final double previousCost =
+							weights == null ? cost + dist : cost + (dist > maxDim ? Double.MIN_VALUE : 0.0);
+					if (!buffer.isReached(i) || previousCost < buffer.costOf(i)) {
+						buffer.reach(previous, previousCost, index);
+						buffer.push(i, previousCost);
+					}
+				}
+			}
+			final IMap<IAgent, IAgent> nextCells = GamaMapFactory.create(Types.AGENT, Types.AGENT);
+			final IMap<IAgent, Double> distances = GamaMapFactory.create(Types.AGENT, Types.FLOAT);
+			for (int i = 0; i < actualNumberOfCells; i++) {
+				if (buffer.isReached(i)) {
+					final IAgent cell = buffer.cellAt(i);
+					final IAgent next = buffer.parentOf(i);
+					nextCells.put(cell, next == null ? cell : next);
+					distances.put(cell, buffer.costOf(i));
+				}
+			}
+			return new GridFlowField(stamp, nextCells, distances);
+		} finally {
+			buffer.release();
+		}
+	}
+
 	private GamaSpatialPath simplePath(final IScope scope, final IShape source, final IShape target,
 			final ITopology topo, final IAgent startAg, final IAgent endAg) {
 		final IList<IShape> nodesPt = GamaListFactory.create(Types.GEOMETRY);
@@ -1253,14 +1562,15 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	}
 
 	private GamaSpatialPath finalPath(final IScope scope, final IShape source, final IShape target,
-			final ITopology topo, final IAgent startAg, final IAgent agent, final Map<IAgent, IAgent> cameFrom,
+			final ITopology topo, final IAgent startAg, final IAgent agent, final PathBuffer buffer,
 			final Map<IAgent, Object> on) {
+		if (on == null) { return finalPath(scope, source, target, topo, startAg, agent, buffer); }
 		IAgent current = agent;
 		final IList<IShape> nodesPt = GamaListFactory.create(Types.GEOMETRY);
 		double weight = Cast.asFloat(scope, on.get(current));
 		nodesPt.add(target.getLocation());
 		while (current != startAg) {
-			current = cameFrom.get(current);
+			current = buffer.parentOf(current.getIndex());
 			weight += Cast.asFloat(scope, on.get(current));
 			if (current != startAg) {
 				nodesPt.add(current.getLocation());
@@ -1272,13 +1582,13 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	}
 
 	private GamaSpatialPath finalPath(final IScope scope, final IShape source, final IShape target,
-			final ITopology topo, final IAgent startAg, final IAgent agent, final Map<IAgent, IAgent> cameFrom) {
+			final ITopology topo, final IAgent startAg, final IAgent agent, final PathBuffer buffer) {
 		IAgent current = agent;
 		final IList<IShape> nodesPt = GamaListFactory.create(Types.GEOMETRY);
 		double weight = 1;
 		nodesPt.add(target.getLocation());
 		while (current != startAg) {
-			current = cameFrom.get(current);
+			current = buffer.parentOf(current.getIndex());
 			weight += 1;
 			if (current != startAg) {
 				nodesPt.add(current.getLocation());
@@ -1289,23 +1599,6 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		return PathFactory.newInstance(scope, topo, nodesPt, weight);
 	}
 
-	private void initOpen(final boolean[] open, final Collection<IAgent> on) {
-		if (on == null) {
-			Arrays.fill(open, true);
-		} else {
-			Arrays.fill(open, false);
-			for (final IAgent ag : on) {
-				open[ag.getIndex()] = true;
-			}
-		}
-	}
-
-	private PriorityQueue newPriorityQueue() {
-		final Comparator<List> comparator = (o1, o2) -> ((Double) o1.get(1)).compareTo((Double) o2.get(1));
-
-		return new PriorityQueue(comparator);
-	}
-
 	@Override
 	public final IAgent getAgentAt(final ILocation c) {
 		final IShape g = getPlaceAt(c);
@@ -1355,10 +1648,10 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 	@Override
 	public List<IAgent> getAgents() {
-		if (matrix == null) { return Collections.EMPTY_LIST; }
+		if (lazy ? lazyCells == null : matrix == null) { return Collections.EMPTY_LIST; }
 		// Later, do return Arrays.asList(matrix);
 		final List<IAgent> agents = GamaListFactory.create(Types.AGENT);
-		for (final IShape element : matrix) {
+		for (final IShape element : allCells(null)) {
 			if (element != null) {
 				agents.add(element.getAgent());
 			}
@@ -1367,7 +1660,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	}
 
 	public Object[] getMatrix() {
-		return matrix;
+		return allCells(null);
 	}
 
 	@Override
@@ -1426,7 +1719,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		}
 	}
 
-	private Set<IAgent> inEnvelope(final Envelope env) {
+	private Set<IAgent> inEnvelope(final IScope scope, final Envelope env) {
 		// TODO Is it really efficient?
 		final Set<IAgent> shapes = new LinkedHashSet();
 		int minX = 0;
@@ -1457,7 +1750,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 				final int index = getPlaceIndexAt(i, j);
 				// BUGFIX AD 28/01/13 Changed "1" into "-1"
 				if (index != -1) {
-					final IAgent ag = matrix[index].getAgent();
+					final IAgent ag = cellAt(scope, index).getAgent();
 					if (ag != null) {
 						shapes.add(ag);
 					}
@@ -1475,7 +1768,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		// scope.getGui().debug("GamaSpatialMatrix.allInEnvelope");
 		// if ( !f.filterSpecies(cellSpecies) ) { return
 		// Iterators.emptyIterator(); }
-		final Set<IAgent> shapes = inEnvelope(env);
+		final Set<IAgent> shapes = inEnvelope(scope, env);
 		shapes.remove(source);
 
 		shapes.removeIf(each -> {
@@ -1597,12 +1890,12 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		public Stream<G> stream() {
-			return (Stream<G>) StreamEx.of(matrix);
+			return (Stream<G>) StreamEx.of(allCells(null));
 		}
 
 		@Override
 		public StreamEx<G> stream(final IScope scope) {
-			return (StreamEx<G>) StreamEx.of(matrix);
+			return (StreamEx<G>) StreamEx.of(allCells(scope));
 		}
 
 		@Override
@@ -1620,6 +1913,20 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		public IList<G> createAgents(final IScope scope, final IContainer<?, ? extends IShape> geometries) {
+			if (lazy) {
+				// The agents will be created when their cells are accessed, except for the cells already built
+				synchronized (LAZY_LOCK) {
+					lazyPopulation = this;
+					for (int i = 0; i < actualNumberOfCells; i++) {
+						final IShape s = lazyCells.get(i);
+						if (s != null) {
+							lazyCells.set(i, createCell(scope, i, s.getGeometry()));
+						}
+					}
+					gatheredCells = null;
+				}
+				return null;
+			}
 			for (int i = 0; i < actualNumberOfCells; i++) {
 				final IShape s = matrix[i];
 				final Class javaBase = species.getDescription().getJavaBase();
@@ -1651,6 +1958,32 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		}
 
+		/**
+		 * Creates, initializes and schedules the agent of a cell of a lazy grid, whose geometry has just been built
+		 * (under the lock of the lazy grids). The agent is returned to be published by the caller
+		 */
+		IAgent createCell(final IScope callerScope, final int index, final IShape geometry) {
+			final IScope scope = callerScope == null ? getHost().getScope().copy(" - lazy grid - ") : callerScope;
+			final boolean usesRegularAgents =
+					GamlAgent.class.isAssignableFrom(species.getDescription().getJavaBase());
+			final IAgent a = usesRegularAgents ? new GamlGridAgent(index, geometry)
+					: new MinimalGridAgent(index, geometry);
+			agentsInConstruction.put(index, a);
+			try {
+				for (final String s : orderedVarNames) {
+					species.getVar(s).initializeWith(scope, a, null);
+				}
+				a.schedule(scope);
+			} finally {
+				agentsInConstruction.remove(index);
+				if (scope != callerScope) {
+					GAMA.releaseScope(scope);
+				}
+			}
+			builtAgents.add(a);
+			return a;
+		}
+
 		@Override
 		public String serialize(final boolean includingBuiltIn) {
 			return getName();
@@ -1658,7 +1991,21 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		protected boolean stepAgents(final IScope scope) {
-			return GamaExecutorService.step(scope, matrix, getSpecies());
+			if (lazy) { return GamaExecutorService.step(scope, agentsToStep(), getSpecies(), stepCosts); }
+			return GamaExecutorService.step(scope, matrix, getSpecies(), stepCosts);
+		}
+
+		/**
+		 * Only the agents of a lazy grid that have been created are stepped, in the order of their index
+		 */
+		private IAgent[] agentsToStep() {
+			synchronized (LAZY_LOCK) {
+				if (agentsToStep.length != builtAgents.size()) {
+					agentsToStep = builtAgents.toArray(new IAgent[builtAgents.size()]);
+					Arrays.sort(agentsToStep, Comparator.comparingInt(IAgent::getIndex));
+				}
+				return agentsToStep;
+			}
 		}
 
 		public int getNbCols() {
@@ -1683,7 +2030,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		@Override
 		public G getAgent(final Integer index) {
 			if (index >= size() || index < 0) { return null; }
-			final IShape s = GamaSpatialMatrix.this.matrix[index];
+			final IShape s = cellAt(null, index);
 			return (G) (s == null ? null : s.getAgent());
 		}
 
@@ -1701,7 +2048,8 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		public G getAgent(final IScope scope, final ILocation coord) {
-			return (G) GamaSpatialMatrix.this.getAgentAt(coord);
+			final IShape s = GamaSpatialMatrix.this.getPlaceAt(scope, coord);
+			return (G) (s == null ? null : s.getAgent());
 		}
 
 		@Override
@@ -1711,7 +2059,9 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		public void killMembers() throws GamaRuntimeException {
-			for (final IShape a : GamaSpatialMatrix.this.matrix) {
+			// Only the agents already built are killed in a lazy grid
+			final IShape[] cells = lazy ? agentsToStep() : GamaSpatialMatrix.this.matrix;
+			for (final IShape a : cells) {
 				if (a != null) {
 					a.dispose();
 				}
@@ -1720,6 +2070,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		public synchronized G[] toArray() {
+			final IShape[] matrix = allCells(null);
 			return (G[]) Arrays.copyOf(matrix, matrix.length, IAgent[].class);
 		}
 
@@ -1744,7 +2095,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 		@Override
 		public G get(final IScope scope, final Integer index) throws GamaRuntimeException {
 			// WARNING False if the matrix is not dense
-			return (G) matrix[index];
+			return (G) cellAt(scope, index);
 		}
 
 		// @Override
@@ -1775,7 +2126,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 		@Override
 		public Iterator<G> iterator() {
-			return JavaUtils.iterator(matrix);
+			return JavaUtils.iterator(allCells(null));
 		}
 
 		@Override
@@ -1835,7 +2186,11 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			// HIERARCHY
 
 			public GamlGridAgent(final int index) {
-				super(GridPopulation.this, index, matrix[index].getGeometry());
+				this(index, matrix[index].getGeometry());
+			}
+
+			GamlGridAgent(final int index, final IShape geometry) {
+				super(GridPopulation.this, index, geometry);
 				// setIndex(index);
 				// geometry = matrix[getIndex()].getGeometry(); // TODO Verify
 				// this
@@ -1844,7 +2199,8 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			@Override
 			public GamaColor getColor() {
 				if (isHexagon) { return (GamaColor) getAttribute(IKeyword.COLOR); }
-				return GamaColor.getInt(supportImagePixels[getIndex()]);
+				final int[] pixels = supportImagePixels;
+				return GamaColor.getInt(pixels == null ? 0 : pixels[getIndex()]);
 			}
 
 			@Override
@@ -1852,7 +2208,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 				if (isHexagon) {
 					setAttribute(IKeyword.COLOR, color);
 				} else {
-					supportImagePixels[getIndex()] = color.getRGB();
+					pixels()[getIndex()] = color.getRGB();
 				}
 			}
 
@@ -1870,7 +2226,8 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 			@Override
 			public double getValue() {
-				if (gridValue != null) { return gridValue[getIndex()]; }
+				final double[] values = gridValue;
+				if (values != null) { return values[getIndex()]; }
 				return 0d;
 			}
 
@@ -1881,13 +2238,14 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 					bd.add(getValue());
 					return bd;
 				}
-				return bands.get(getIndex());
+				return bandsAt(getIndex());
 			}
 
 			@Override
 			public void setValue(final double d) {
-				if (gridValue != null) {
-					gridValue[getIndex()] = d;
+				final double[] values = values();
+				if (values != null) {
+					values[getIndex()] = d;
 				}
 			}
 
@@ -1908,14 +2266,19 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 			private final IShape geometry;
 
 			public MinimalGridAgent(final int index) {
+				this(index, matrix[index].getGeometry());
+			}
+
+			MinimalGridAgent(final int index, final IShape geometry) {
 				super(index);
-				geometry = matrix[index].getGeometry();
+				this.geometry = geometry;
 			}
 
 			@Override
 			public GamaColor getColor() {
 				if (isHexagon) { return (GamaColor) getAttribute(IKeyword.COLOR); }
-				return GamaColor.getInt(supportImagePixels[getIndex()]);
+				final int[] pixels = supportImagePixels;
+				return GamaColor.getInt(pixels == null ? 0 : pixels[getIndex()]);
 			}
 
 			@Override
@@ -1925,7 +2288,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 				} else {
 					// image.setRGB(getX(), getY(), color.getRGB());
 
-					supportImagePixels[getIndex()] = color.getRGB();
+					pixels()[getIndex()] = color.getRGB();
 				}
 			}
 
@@ -1946,14 +2309,16 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 			@Override
 			public double getValue() {
-				if (gridValue != null) { return gridValue[getIndex()]; }
+				final double[] values = gridValue;
+				if (values != null) { return values[getIndex()]; }
 				return 0d;
 			}
 
 			@Override
 			public void setValue(final double d) {
-				if (gridValue != null) {
-					gridValue[getIndex()] = d;
+				final double[] values = values();
+				if (values != null) {
+					values[getIndex()] = d;
 				}
 			}
 
@@ -2110,7 +2475,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 					bd.add(getValue());
 					return bd;
 				}
-				return bands.get(getIndex());
+				return bandsAt(getIndex());
 			}
 
 		}
@@ -2131,7 +2496,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 	public IShape getNthElement(final Integer index) {
 		if (index == null) { return null; }
 		if (index > lastCell) { return null; }
-		return matrix[index];
+		return cellAt(null, index);
 	}
 
 	@Override
@@ -2144,7 +2509,7 @@ public class GamaSpatialMatrix extends GamaMatrix<IShape> implements IGrid {
 
 	@Override
 	public StreamEx<IShape> stream(final IScope scope) {
-		return StreamEx.of(matrix);
+		return StreamEx.of(allCells(scope));
 	}
 
 	@Override
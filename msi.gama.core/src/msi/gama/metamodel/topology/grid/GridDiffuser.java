@@ -17,14 +17,18 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
 
 import msi.gama.metamodel.agent.IAgent;
 import msi.gama.metamodel.population.IPopulation;
 import msi.gama.metamodel.topology.grid.GamaSpatialMatrix.GridPopulation;
 import msi.gama.runtime.IScope;
+import msi.gama.runtime.concurrent.GamaExecutorService;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gaml.operators.Cast;
+import msi.gaml.types.IType;
 import msi.gaml.variables.IVariable;
+import msi.gaml.variables.Variable;
 
 public class GridDiffuser {
 
@@ -185,6 +189,11 @@ public class GridDiffuser {
 		}
 	}
 
+	/**
+	 * The number of rows of the bands of the grid computed concurrently. Grids with fewer rows are computed sequentially
+	 */
+	static final int ROWS_BY_BAND = 32;
+
 	private boolean is_torus;
 	private boolean is_gradient;
 	private String var_diffu;
@@ -202,6 +211,17 @@ public class GridDiffuser {
 	double min_value;
 	IPopulation<? extends IAgent> population;
 
+	/**
+	 * The buffers reused from one diffusion to the other: the kernel as a flat array (flipped for the convolution),
+	 * the cells that are not masked (null if there is no mask), the indices of the rows and the columns read by each
+	 * row and column of the kernel (-1 if they are outside of the grid), once wrapped if the grid is a torus, and the
+	 * cells among which the values are redistributed when the masked cells are avoided
+	 */
+	private double[] kernel = new double[0];
+	private boolean[] open = new boolean[0];
+	private int[] rowsOfKernel = new int[0], columnsOfKernel = new int[0], redistributed = new int[0];
+	private boolean masked;
+
 	public GridDiffuser() {}
 
 	public void loadGridProperties(final PairVarGrid pairVarGrid) {
@@ -244,85 +264,176 @@ public class GridDiffuser {
 
 	}
 
-	public void doDiffusion_with_convolution() {
-		// default method : convolution
-
+	/**
+	 * Fills the kernel, the mask and the indices of the rows and columns read by the kernel. The rows and columns of
+	 * the signal (the input for the convolution, the output for the dot product) are wrapped like the previous
+	 * versions of this diffuser did, so that the results do not change
+	 */
+	private void prepare(final boolean flipped, final int signalRows, final int signalCols) {
 		final int kRows = mat_diffu.length;
 		final int kCols = mat_diffu[0].length;
-
 		final int kCenterX = kCols / 2;
 		final int kCenterY = kRows / 2;
+		if (kernel.length < kRows * kCols) {
+			kernel = new double[kRows * kCols];
+			redistributed = new int[kRows * kCols];
+		}
+		for (int m = 0; m < kRows; ++m) {
+			for (int n = 0; n < kCols; ++n) {
+				kernel[m * kCols + n] = flipped ? mat_diffu[kRows - m - 1][kCols - n - 1] : mat_diffu[m][n];
+			}
+		}
+		masked = mask != null;
+		if (masked) {
+			if (open.length < nbRows * nbCols) {
+				open = new boolean[nbRows * nbCols];
+			}
+			for (int y = 0; y < nbRows; y++) {
+				for (int x = 0; x < nbCols; x++) {
+					open[y * nbCols + x] = mask[x][y] == 1;
+				}
+			}
+		}
+		if (rowsOfKernel.length < signalRows * kRows) {
+			rowsOfKernel = new int[signalRows * kRows];
+		}
+		for (int j = 0; j < signalRows; ++j) {
+			for (int m = 0; m < kRows; ++m) {
+				int jj = j + m - kCenterY;
+				if (is_torus) {
+					if (jj < 0) {
+						jj = nbCols + jj;
+					} else if (jj >= nbCols) {
+						jj = jj - nbCols;
+					}
+				}
+				rowsOfKernel[j * kRows + m] = jj >= 0 && jj < nbRows ? jj : -1;
+			}
+		}
+		if (columnsOfKernel.length < signalCols * kCols) {
+			columnsOfKernel = new int[signalCols * kCols];
+		}
+		for (int i = 0; i < signalCols; ++i) {
+			for (int n = 0; n < kCols; ++n) {
+				int ii = i + n - kCenterX;
+				if (is_torus) {
+					if (ii < 0) {
+						ii = nbRows + ii;
+					} else if (ii >= nbRows) {
+						ii = ii - nbRows;
+					}
+				}
+				columnsOfKernel[i * kCols + n] = ii >= 0 && ii < nbCols ? ii : -1;
+			}
+		}
+	}
 
-		for (int i = 0; i < nbCols; ++i) // output rows
-		{
-			for (int j = 0; j < nbRows; ++j) // output columns
-			{
-				double value_to_redistribute = 0;
-				final ArrayList<int[]> non_masked_cells = new ArrayList<>();
-				for (int m = 0; m < kRows; ++m) // kernel rows
-				{
-					for (int n = 0; n < kCols; ++n) // kernel columns
-					{
-						// index of input signal, used for checking boundary
-						int ii = i + n - kCenterX;
-						int jj = j + m - kCenterY;
-						// ignore input samples which are out of bound
-						if (is_torus) {
-							if (ii < 0) {
-								ii = nbRows + ii;
-							} else if (ii >= nbRows) {
-								ii = ii - nbRows;
-							}
+	public void doDiffusion_with_convolution() {
+		// default method : convolution
+		prepare(true, nbRows, nbCols);
+		if (avoid_mask && masked) {
+			// The values of the masked cells are redistributed to other cells: the cells are computed in sequence
+			for (int i = 0; i < nbCols; ++i) {
+				for (int j = 0; j < nbRows; ++j) {
+					convolveAndRedistribute(i, j);
+				}
+			}
+		} else {
+			// Each cell only depends on the input: the bands of rows are computed concurrently
+			runByBands(nbRows, (from, to) -> {
+				for (int j = from; j < to; ++j) {
+					for (int i = 0; i < nbCols; ++i) {
+						convolve(i, j);
+					}
+				}
+			});
+		}
+	}
 
-							if (jj < 0) {
-								jj = nbCols + jj;
-							} else if (jj >= nbCols) {
-								jj = jj - nbCols;
-							}
-						}
-						// diffuse if the input value is in the grid, and if the
-						// cell is not masked
-						if (ii >= 0 && ii < nbCols && jj >= 0 && jj < nbRows && (mask == null || mask[ii][jj] == 1)) {
-							final double value_before_change = output[j * nbCols + i];
-							if (output[j * nbCols + i] == -Double.MAX_VALUE) {
-								output[j * nbCols + i] =
-										input[jj * nbCols + ii] * mat_diffu[kRows - m - 1][kCols - n - 1];
-							} else {
-								if (is_gradient) {
-									if (output[j * nbCols + i] < input[jj * nbCols + ii]
-											* mat_diffu[kRows - m - 1][kCols - n - 1]) {
-										output[j * nbCols + i] =
-												input[jj * nbCols + ii] * mat_diffu[kRows - m - 1][kCols - n - 1];
-									}
-								} else {
-									output[j * nbCols + i] +=
-											input[jj * nbCols + ii] * mat_diffu[kRows - m - 1][kCols - n - 1];
-								}
-							}
+	/**
+	 * Computes the output cell (i, j) from the input cells read by the kernel, in the same order as before (kernel rows,
+	 * then kernel columns), so that the sums are rounded the same way
+	 */
+	private void convolve(final int i, final int j) {
+		final int kRows = mat_diffu.length;
+		final int kCols = mat_diffu[0].length;
+		double value = output[j * nbCols + i];
+		for (int m = 0; m < kRows; ++m) {
+			final int jj = rowsOfKernel[j * kRows + m];
+			if (jj < 0) {
+				continue;
+			}
+			for (int n = 0; n < kCols; ++n) {
+				final int ii = columnsOfKernel[i * kCols + n];
+				// diffuse if the input value is in the grid, and if the cell is not masked
+				if (ii < 0 || masked && !open[jj * nbCols + ii]) {
+					continue;
+				}
+				final double diffused = input[jj * nbCols + ii] * kernel[m * kCols + n];
+				if (value == -Double.MAX_VALUE) {
+					value = diffused;
+				} else if (is_gradient) {
+					if (value < diffused) {
+						value = diffused;
+					}
+				} else {
+					value += diffused;
+				}
+			}
+		}
+		output[j * nbCols + i] = value;
+	}
 
-							// undo the changes if "avoid_mask" and if the
-							// output cell is masked.
-							if (avoid_mask && (mask == null ? false : mask[i][j] != 1)) {
-								value_to_redistribute += output[j * nbCols + i];
-								output[j * nbCols + i] = value_before_change;
-								if (mask[ii][jj] == 1) {
-									// input cell not masked
-									non_masked_cells.add(new int[] { ii, jj });
-								}
-							}
-						}
+	private void convolveAndRedistribute(final int i, final int j) {
+		final int kRows = mat_diffu.length;
+		final int kCols = mat_diffu[0].length;
+		final int outputIndex = j * nbCols + i;
+		// the output cell is masked: its changes are undone and redistributed to the input cells
+		final boolean undone = !open[outputIndex];
+		double value_to_redistribute = 0;
+		int non_masked_cells = 0;
+		for (int m = 0; m < kRows; ++m) {
+			final int jj = rowsOfKernel[j * kRows + m];
+			if (jj < 0) {
+				continue;
+			}
+			for (int n = 0; n < kCols; ++n) {
+				final int ii = columnsOfKernel[i * kCols + n];
+				final int inputIndex = jj * nbCols + ii;
+				if (ii < 0 || !open[inputIndex]) {
+					continue;
+				}
+				final double value_before_change = output[outputIndex];
+				final double diffused = input[inputIndex] * kernel[m * kCols + n];
+				if (output[outputIndex] == -Double.MAX_VALUE) {
+					output[outputIndex] = diffused;
+				} else if (is_gradient) {
+					if (output[outputIndex] < diffused) {
+						output[outputIndex] = diffused;
 					}
+				} else {
+					output[outputIndex] += diffused;
 				}
-				if (value_to_redistribute != 0) {
-					final double value_to_add = value_to_redistribute * proportion / non_masked_cells.size();
-					for (final int[] coord : non_masked_cells) {
-						if (output[coord[1] * nbCols + coord[0]] == -Double.MAX_VALUE) {
-							output[coord[1] * nbCols + coord[0]] = value_to_add;
-						} else {
-							if (!is_gradient) {
-								output[coord[1] * nbCols + coord[0]] += value_to_add;
-							}
-						}
+				if (undone) {
+					value_to_redistribute += output[outputIndex];
+					output[outputIndex] = value_before_change;
+					redistributed[non_masked_cells++] = inputIndex;
+				}
+			}
+		}
+		redistribute(value_to_redistribute, non_masked_cells);
+	}
+
+	private void redistribute(final double value_to_redistribute, final int non_masked_cells) {
+		if (value_to_redistribute != 0) {
+			final double value_to_add = value_to_redistribute * proportion / non_masked_cells;
+			for (int k = 0; k < non_masked_cells; k++) {
+				final int index = redistributed[k];
+				if (output[index] == -Double.MAX_VALUE) {
+					output[index] = value_to_add;
+				} else {
+					if (!is_gradient) {
+						output[index] += value_to_add;
 					}
 				}
 			}
@@ -330,13 +441,12 @@ public class GridDiffuser {
 	}
 
 	public void doDiffusion_with_dotProduct() {
-		// dot product
-
+		// dot product. Each input cell is spread over several output cells, so the cells are computed in sequence
 		final int kRows = mat_diffu.length;
 		final int kCols = mat_diffu[0].length;
-
-		final int kCenterX = kCols / 2;
-		final int kCenterY = kRows / 2;
+		// The input rows and columns are swapped in the loops, as they have always been: the output indices are
+		// computed from the input indices seen as signal rows (jj) and columns (ii)
+		prepare(false, nbCols, nbRows);
 
 		for (int ii = 0; ii < nbRows; ++ii) // input rows
 		{
@@ -345,72 +455,47 @@ public class GridDiffuser {
 				if (mask == null || mask[ii][jj] == 1) {
 					// diffuse only if the input is not masked
 					double value_to_redistribute = 0;
-					final ArrayList<int[]> non_masked_cells = new ArrayList<>();
+					int non_masked_cells = 0;
+					final int inputIndex = jj * nbCols + ii;
 					for (int m = 0; m < kRows; ++m) // kernel rows
 					{
+						final int j = rowsOfKernel[jj * kRows + m];
+						if (j < 0) {
+							continue;
+						}
 						for (int n = 0; n < kCols; ++n) // kernel columns
 						{
-							// index of output signal, used for checking
-							// boundary
-							int i = ii + n - kCenterX;
-							int j = jj + m - kCenterY;
-							// ignore output samples which are out of bound
-							if (is_torus) {
-								if (i < 0) {
-									i = nbRows + i;
-								} else if (i >= nbRows) {
-									i = i - nbRows;
-								}
-
-								if (j < 0) {
-									j = nbCols + j;
-								} else if (j >= nbCols) {
-									j = j - nbCols;
-								}
-							}
+							final int i = columnsOfKernel[ii * kCols + n];
 							// diffuse if the output value is in the grid
-							if (i >= 0 && i < nbCols && j >= 0 && j < nbRows) {
-								final double value_before_change = output[j * nbCols + i];
-								final int outputIndex = j * nbCols + i;
-								final int inputIndex = jj * nbCols + ii;
-								final double matrixValue = mat_diffu[m][n];
-								if (output[outputIndex] == -Double.MAX_VALUE) {
-									output[outputIndex] = input[inputIndex] * matrixValue;
-								} else {
-									if (is_gradient) {
-										if (output[outputIndex] < input[inputIndex] * matrixValue) {
-											output[outputIndex] = input[inputIndex] * matrixValue;
-										}
-									} else {
-										output[outputIndex] += input[inputIndex] * matrixValue;
-									}
-								}
-
-								// undo the changes if "avoid_mask" and if the
-								// output cell is masked.
-								if (avoid_mask && (mask == null ? false : mask[i][j] != 1)) {
-									value_to_redistribute += output[outputIndex];
-									output[outputIndex] = value_before_change;
-									if (mask[ii][jj] == 1) {
-										// input cell not masked
-										non_masked_cells.add(new int[] { ii, jj });
-									}
-								}
+							if (i < 0) {
+								continue;
 							}
-						}
-					}
-					if (value_to_redistribute != 0) {
-						final double value_to_add = value_to_redistribute * proportion / non_masked_cells.size();
-						for (final int[] coord : non_masked_cells) {
-							if (output[coord[1] * nbCols + coord[0]] == -Double.MAX_VALUE) {
-								output[coord[1] * nbCols + coord[0]] = value_to_add;
+							final int outputIndex = j * nbCols + i;
+							final double value_before_change = output[outputIndex];
+							final double matrixValue = kernel[m * kCols + n];
+							if (output[outputIndex] == -Double.MAX_VALUE) {
+								output[outputIndex] = input[inputIndex] * matrixValue;
 							} else {
-								if (!is_gradient) {
-									output[coord[1] * nbCols + coord[0]] += value_to_add;
+								if (is_gradient) {
+									if (output[outputIndex] < input[inputIndex] * matrixValue) {
+										output[outputIndex] = input[inputIndex] * matrixValue;
+									}
+								} else {
+									output[outputIndex] += input[inputIndex] * matrixValue;
 								}
 							}
+
+							// undo the changes if "avoid_mask" and if the
+							// output cell is masked.
+							if (avoid_mask && (mask == null ? false : mask[i][j] != 1)) {
+								value_to_redistribute += output[outputIndex];
+								output[outputIndex] = value_before_change;
+								// the input cell is not masked
+								redistributed[non_masked_cells++] = inputIndex;
+							}
 						}
 					}
+					redistribute(value_to_redistribute, non_masked_cells);
 				}
 			}
 		}
@@ -419,42 +504,67 @@ public class GridDiffuser {
 	public void finishDiffusion(final IScope scope, final IPopulation<? extends IAgent> pop) {
 		final IVariable v = pop.getVar(var_diffu);
 		if (v == null) { return; }
+		// Float attributes without setter nor facet to honour are written directly (and concurrently) in the agents
+		final boolean direct = v instanceof Variable && ((Variable) v).isSetDirectly()
+				&& v.getType().id() == IType.FLOAT && pop.getUpdateBuffer() == null;
+		if (direct) {
+			runByBands(nbRows, (from, to) -> {
+				for (int i = from * nbCols; i < Math.min(output.length, to * nbCols); i++) {
+					final double valToPut = valueToPut(i);
+					if (valToPut != -Double.MAX_VALUE) {
+						((Variable) v).setValDirectly(pop.get(scope, i), valToPut);
+					}
+				}
+			});
+			return;
+		}
 		for (int i = 0; i < output.length; i++) {
-			double valToPut = output[i];
-			if (valToPut == -Double.MAX_VALUE) {
-				continue;
+			final double valToPut = valueToPut(i);
+			if (valToPut != -Double.MAX_VALUE) {
+				v.setVal(scope, pop.get(scope, i), valToPut);
 			}
+		}
+	}
 
-			if (is_gradient) {
-				if (valToPut > input[i]) {
-					if (valToPut < min_value) {
-						valToPut = 0;
-					}
-				} else {
-					continue;
+	/**
+	 * The value to write in the cell of index i, or -Double.MAX_VALUE if it must not be written
+	 */
+	private double valueToPut(final int i) {
+		double valToPut = output[i];
+		if (valToPut == -Double.MAX_VALUE) { return valToPut; }
+		if (is_gradient) {
+			if (valToPut > input[i]) {
+				if (valToPut < min_value) {
+					valToPut = 0;
 				}
 			} else {
-				valToPut = Math.max(valToPut, min_value);
+				return -Double.MAX_VALUE;
 			}
-			v.setVal(scope, pop.get(scope, i), valToPut);
+		} else {
+			valToPut = Math.max(valToPut, min_value);
 		}
+		return valToPut;
 	}
 
-	// public double[][] translateMatrix(final IScope scope, final IMatrix<?>
-	// mm) {
-	// if (mm == null) {
-	// return null;
-	// }
-	// final int rows = mm.getRows(scope);
-	// final int cols = mm.getCols(scope);
-	// final double[][] res = new double[rows][cols];
-	// for (int i = 0; i < rows; i++) {
-	// for (int j = 0; j < cols; j++) {
-	// res[i][j] = Cast.asFloat(scope, mm.get(scope, i, j));
-	// }
-	// }
-	// return res;
-	// }
+	private interface Band {
+		void compute(int from, int to);
+	}
+
+	/**
+	 * Computes the bands of the rows [0, rows[, concurrently if there are several of them
+	 */
+	private static void runByBands(final int rows, final Band band) {
+		if (rows <= ROWS_BY_BAND || GamaExecutorService.AGENT_PARALLEL_EXECUTOR == null) {
+			band.compute(0, rows);
+			return;
+		}
+		final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int from = 0; from < rows; from += ROWS_BY_BAND) {
+			final int start = from, end = Math.min(rows, from + ROWS_BY_BAND);
+			tasks.add(ForkJoinTask.adapt(() -> band.compute(start, end)));
+		}
+		GamaExecutorService.executeThreaded(() -> ForkJoinTask.invokeAll(tasks));
+	}
 
 	public Object diffuse() throws GamaRuntimeException {
 
@@ -466,8 +576,11 @@ public class GridDiffuser {
 			final List<GridDiffusion> listGridDiffu = m_diffusions.get(pairVarGrid);
 			loadGridProperties(pairVarGrid);
 			final Iterator<GridDiffusion> gridDiffIterator = listGridDiffu.iterator();
-			input = new double[pairVarGrid.NbCols * pairVarGrid.NbRows];
-			output = new double[pairVarGrid.NbCols * pairVarGrid.NbRows];
+			final int size = pairVarGrid.NbCols * pairVarGrid.NbRows;
+			if (input == null || input.length != size) {
+				input = new double[size];
+				output = new double[size];
+			}
 			Arrays.fill(output, -Double.MAX_VALUE);
 			while (gridDiffIterator.hasNext()) {
 				final GridDiffusion gridDiffusion = gridDiffIterator.next();
@@ -0,0 +1,69 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.grid.GridFlowField.java, in plugin msi.gama.core, is part of the source code of the
+ * GAMA modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology.grid;
+
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.util.GamaMapFactory;
+import msi.gama.util.IMap;
+
+/**
+ * The distances of the cells of a grid to the closest of a set of target cells, and the next cell to move to from each
+ * of them to reach this target, computed at once by a search starting from all the targets (see
+ * {@link IGrid#computeFlowFieldTo}). The fields are kept by the grid along with a stamp of the targets, the open
+ * cells and the weights they have been computed with, and are reused as long as this stamp does not change.
+ */
+public class GridFlowField {
+
+	private final long stamp;
+	private final IMap<IAgent, IAgent> nextCells;
+	private final IMap<IAgent, Double> distances;
+
+	GridFlowField(final long stamp, final IMap<IAgent, IAgent> nextCells, final IMap<IAgent, Double> distances) {
+		this.stamp = stamp;
+		this.nextCells = GamaMapFactory.unmodifiableMap(nextCells);
+		this.distances = GamaMapFactory.unmodifiableMap(distances);
+	}
+
+	/**
+	 * Whether this field has been computed with the targets, open cells and weights of this stamp
+	 */
+	boolean isComputedFor(final long stamp) {
+		return this.stamp == stamp;
+	}
+
+	/**
+	 * Mixes the bits of a value (with the finalizer of SplitMix64), so that the sums of mixed values used by the
+	 * stamps are very unlikely to collide
+	 */
+	static long mix(final long value) {
+		long h = value + 0x9E3779B97F4A7C15L;
+		h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+		return h ^ h >>> 31;
+	}
+
+	/**
+	 * The next cell to move to from each of the cells from which a target can be reached (the targets being associated
+	 * with themselves). This map is shared by all the agents asking for the same field and cannot be modified
+	 */
+	public IMap<IAgent, IAgent> getNextCells() {
+		return nextCells;
+	}
+
+	/**
+	 * The distance (or the cost, if the search is weighted) from each of the cells from which a target can be reached
+	 * to the closest target. This map is shared by all the agents asking for the same field and cannot be modified
+	 */
+	public IMap<IAgent, Double> getDistances() {
+		return distances;
+	}
+
+}
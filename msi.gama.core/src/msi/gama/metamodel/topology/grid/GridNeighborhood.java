@@ -32,9 +32,9 @@ public abstract class GridNeighborhood implements INeighborhood {
 
 	public GridNeighborhood(final GamaSpatialMatrix matrix) {
 		this.matrix = matrix;
-		neighbors = new int[matrix.matrix.length][0];
+		neighbors = new int[matrix.numRows * matrix.numCols][0];
 		// neighborsIndexes = new ArrayList[agents.length];
-		neighborsIndexes = new int[matrix.matrix.length][];
+		neighborsIndexes = new int[matrix.numRows * matrix.numCols][];
 	}
 
 	@Override
@@ -109,7 +109,7 @@ public abstract class GridNeighborhood implements INeighborhood {
 		final int nnSize = neighborsIndexes[placeIndex][radius - 1];
 		try (final Collector.AsOrderedSet<IAgent> result = Collector.getOrderedSet()) {
 			for (int i = 0; i < nnSize; i++) {
-				result.add(matrix.matrix[nn[i]].getAgent());
+				result.add(matrix.cellAt(scope, nn[i]).getAgent());
 			}
 			result.shuffleInPlaceWith(scope.getRandom());
 			return result.items();
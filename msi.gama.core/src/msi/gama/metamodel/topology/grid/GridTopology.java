@@ -32,6 +32,7 @@ import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.Collector;
 import msi.gama.util.GamaListFactory;
 import msi.gama.util.ICollector;
+import msi.gama.util.IContainer;
 import msi.gama.util.IList;
 import msi.gama.util.file.GamaGridFile;
 import msi.gama.util.path.GamaSpatialPath;
@@ -67,15 +68,15 @@ public class GridTopology extends AbstractTopology {
 
 	public GridTopology(final IScope scope, final IShape environment, final int rows, final int columns,
 			final boolean isTorus, final boolean usesVN, final boolean isHexagon, final boolean horizontalOrientation,
-			final boolean useIndividualShapes, final boolean useNeighborsCache, final String optimizer)
-			throws GamaRuntimeException {
+			final boolean useIndividualShapes, final boolean useNeighborsCache, final String optimizer,
+			final boolean lazy) throws GamaRuntimeException {
 		super(scope, environment, null);
 		if (isHexagon) {
 			places = new GamaSpatialMatrix(scope, environment, rows, columns, isTorus, usesVN, isHexagon,
 					horizontalOrientation, useIndividualShapes, useNeighborsCache, optimizer);
 		} else {
 			places = new GamaSpatialMatrix(scope, environment, rows, columns, isTorus, usesVN, useIndividualShapes,
-					useNeighborsCache, optimizer);
+					useNeighborsCache, optimizer, lazy);
 		}
 		// FIXME Not sure it needs to be set
 		// root.setTorus(isTorus);
@@ -84,9 +85,10 @@ public class GridTopology extends AbstractTopology {
 
 	public GridTopology(final IScope scope, final IShape environment, final GamaGridFile file, final boolean isTorus,
 			final boolean usesVN, final boolean useIndividualShapes, final boolean useNeighborsCache,
-			final String optimizer) throws GamaRuntimeException {
+			final String optimizer, final boolean lazy) throws GamaRuntimeException {
 		super(scope, environment, null);
-		places = new GamaSpatialMatrix(scope, file, isTorus, usesVN, useIndividualShapes, useNeighborsCache, optimizer);
+		places = new GamaSpatialMatrix(scope, file, isTorus, usesVN, useIndividualShapes, useNeighborsCache, optimizer,
+				lazy);
 		// FIXME Not sure it needs to be set
 
 		// root.setTorus(isTorus);
@@ -134,7 +136,7 @@ public class GridTopology extends AbstractTopology {
 		final IGrid grid = (IGrid) places;
 		return new GridTopology(scope, environment, grid.getRows(scope), grid.getCols(scope), grid.isTorus(),
 				grid.getNeighborhood().isVN(), grid.isHexagon(), grid.isHorizontalOrientation(),
-				grid.usesIndiviualShapes(), grid.usesNeighborsCache(), grid.optimizer());
+				grid.usesIndiviualShapes(), grid.usesNeighborsCache(), grid.optimizer(), grid.isLazy());
 	}
 
 	@Override
@@ -142,6 +144,16 @@ public class GridTopology extends AbstractTopology {
 		return (IGrid) super.getPlaces();
 	}
 
+	public GridFlowField flowFieldTo(final IScope scope, final IContainer<?, IShape> targets,
+			final IList<IAgent> on) {
+		return getPlaces().computeFlowFieldTo(scope, targets, on);
+	}
+
+	public GridFlowField flowFieldTo(final IScope scope, final IContainer<?, IShape> targets,
+			final Map<IAgent, Object> on) {
+		return getPlaces().computeFlowFieldToWeighted(scope, targets, on);
+	}
+
 	/**
 	 * @throws GamaRuntimeException
 	 * @see msi.gama.environment.ITopology#pathBetween(msi.gama.interfaces.IGeometry, msi.gama.interfaces.IGeometry)
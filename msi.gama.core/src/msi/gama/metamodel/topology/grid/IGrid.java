@@ -23,6 +23,7 @@ import msi.gama.metamodel.topology.ITopology;
 import msi.gama.metamodel.topology.filter.IAgentFilter;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
+import msi.gama.util.IContainer;
 import msi.gama.util.IList;
 import msi.gama.util.matrix.IMatrix;
 import msi.gama.util.path.GamaSpatialPath;
@@ -59,6 +60,16 @@ public interface IGrid extends IMatrix<IShape>, ISpatialIndex {
 	GamaSpatialPath computeShortestPathBetweenWeighted(final IScope scope, final IShape source, final IShape target,
 			final ITopology topo, final Map<IAgent, Object> on) throws GamaRuntimeException;
 
+	/**
+	 * Returns the distances of the cells passed to the closest of the targets (cells, or geometries designating the
+	 * cells at their location), and the next cell to move to from each of them, computed at once for all the cells. The
+	 * result is kept as long as the same cells and targets are passed
+	 */
+	GridFlowField computeFlowFieldTo(final IScope scope, final IContainer<?, IShape> targets, final IList<IAgent> on);
+
+	GridFlowField computeFlowFieldToWeighted(final IScope scope, final IContainer<?, IShape> targets,
+			final Map<IAgent, Object> on);
+
 	// public abstract Iterator<IAgent> getNeighborsOf(final IScope scope, final
 	// ILocation shape, final Double
 	// distance,
@@ -100,6 +111,11 @@ public interface IGrid extends IMatrix<IShape>, ISpatialIndex {
 
 	boolean usesIndiviualShapes();
 
+	/**
+	 * Whether the cells of this grid are only built when they are accessed
+	 */
+	boolean isLazy();
+
 	/**
 	 * @return
 	 */
@@ -48,7 +48,7 @@ public class NoCacheNeighborhood implements INeighborhood {
 			for (int i = begin; i <= end; i++) {
 				for (final Integer index : matrix.usesVN ? get4NeighborsAtRadius(placeIndex, i)
 						: get8NeighborsAtRadius(placeIndex, i)) {
-					result.add(matrix.matrix[index].getAgent());
+					result.add(matrix.cellAt(scope, index).getAgent());
 				}
 			}
 			// Addresses Issue 1071 by explicitly shuffling the result
@@ -0,0 +1,236 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.metamodel.topology.grid.PathBuffer.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.metamodel.topology.grid;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+
+import msi.gama.metamodel.agent.IAgent;
+
+/**
+ * The buffers in which the shortest paths are searched in a grid (see
+ * {@link GamaSpatialMatrix#computeShortestPathBetween}). The cells are designated by their index, and their cost, the
+ * cell they have been reached from and the frontier of the search are kept in primitive arrays, reused from one search
+ * to the other by each thread. The cells reached by the current search are marked by a stamp, so that these arrays do
+ * not have to be cleared between two searches: only the references to the cells reached are released, their indexes
+ * being recorded when they are first reached.
+ */
+final class PathBuffer {
+
+	private static final ThreadLocal<ArrayDeque<PathBuffer>> FREE = ThreadLocal.withInitial(ArrayDeque::new);
+
+	/**
+	 * The cells that can still be entered by the search (the size of this array is the number of cells)
+	 */
+	boolean[] open = new boolean[0];
+	/**
+	 * Whether all the cells were open at the beginning of the search: as the searches only close the cells they reach,
+	 * reopening these cells is then enough to reuse the array for the next search of this kind
+	 */
+	private boolean allOpen;
+	private IAgent[] cells = new IAgent[0];
+	private double[] costs = new double[0];
+	private int[] parents = new int[0];
+	private int[] stamps = new int[0];
+	private int stamp;
+	private int[] reached = new int[64];
+	private int nbReached;
+	/**
+	 * The frontier of the search: a binary heap of cells ordered by their keys, which behaves exactly like the
+	 * {@link java.util.PriorityQueue} previously used (so that the ties are broken in the same way), or a FIFO queue
+	 * when only cells are added
+	 */
+	private int[] frontier = new int[64];
+	private double[] keys = new double[64];
+	private int head, size;
+
+	static PathBuffer acquire(final int numberOfCells) {
+		PathBuffer buffer = FREE.get().poll();
+		if (buffer == null) {
+			buffer = new PathBuffer();
+		}
+		buffer.reset(numberOfCells);
+		return buffer;
+	}
+
+	void release() {
+		for (int i = 0; i < nbReached; i++) {
+			cells[reached[i]] = null;
+		}
+		if (allOpen) {
+			for (int i = 0; i < nbReached; i++) {
+				open[reached[i]] = true;
+			}
+		}
+		nbReached = 0;
+		FREE.get().push(this);
+	}
+
+	private void reset(final int numberOfCells) {
+		if (open.length != numberOfCells) {
+			open = new boolean[numberOfCells];
+			allOpen = false;
+		}
+		if (stamps.length < numberOfCells) {
+			cells = new IAgent[numberOfCells];
+			costs = new double[numberOfCells];
+			parents = new int[numberOfCells];
+			stamps = new int[numberOfCells];
+			stamp = 0;
+		}
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Opens all the cells, or only the ones passed if they are not null
+	 */
+	void initOpen(final Collection<IAgent> on) {
+		if (on != null || !allOpen) {
+			initOpen(open, on);
+		}
+		allOpen = on == null;
+	}
+
+	/**
+	 * Opens the cells marked in the array passed
+	 */
+	void initOpen(final boolean[] cells) {
+		System.arraycopy(cells, 0, open, 0, open.length);
+		allOpen = false;
+	}
+
+	static void initOpen(final boolean[] open, final Collection<IAgent> on) {
+		if (on == null) {
+			Arrays.fill(open, true);
+		} else {
+			Arrays.fill(open, false);
+			for (final IAgent ag : on) {
+				open[ag.getIndex()] = true;
+			}
+		}
+	}
+
+	/**
+	 * Records that the cell has been reached from the parent passed (or -1) with the cost passed
+	 */
+	void reach(final IAgent cell, final double cost, final int parent) {
+		final int index = cell.getIndex();
+		if (stamps[index] != stamp) {
+			if (nbReached == reached.length) {
+				reached = Arrays.copyOf(reached, nbReached * 2);
+			}
+			reached[nbReached++] = index;
+		}
+		cells[index] = cell;
+		costs[index] = cost;
+		parents[index] = parent;
+		stamps[index] = stamp;
+	}
+
+	boolean isReached(final int index) {
+		return stamps[index] == stamp;
+	}
+
+	double costOf(final int index) {
+		return costs[index];
+	}
+
+	IAgent cellAt(final int index) {
+		return cells[index];
+	}
+
+	/**
+	 * The cell from which the cell passed has been reached, or null if it is the first one (or has not been reached)
+	 */
+	IAgent parentOf(final int index) {
+		if (!isReached(index) || parents[index] < 0) { return null; }
+		return cells[parents[index]];
+	}
+
+	boolean isEmpty() {
+		return head == size;
+	}
+
+	/**
+	 * Adds the cell at the end of the frontier, used as a FIFO queue
+	 */
+	void enqueue(final int index) {
+		grow();
+		frontier[size++] = index;
+	}
+
+	int dequeue() {
+		return frontier[head++];
+	}
+
+	/**
+	 * Adds the cell to the frontier, used as a priority queue. Same algorithm as PriorityQueue.offer()
+	 */
+	void push(final int index, final double key) {
+		grow();
+		int k = size++;
+		while (k > 0) {
+			final int parent = k - 1 >>> 1;
+			if (Double.compare(key, keys[parent]) >= 0) {
+				break;
+			}
+			frontier[k] = frontier[parent];
+			keys[k] = keys[parent];
+			k = parent;
+		}
+		frontier[k] = index;
+		keys[k] = key;
+	}
+
+	/**
+	 * Removes the cell with the lowest key from the frontier. Same algorithm as PriorityQueue.poll()
+	 */
+	int pop() {
+		final int result = frontier[0];
+		final int n = --size;
+		final int index = frontier[n];
+		final double key = keys[n];
+		int k = 0;
+		final int half = n >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			final int right = child + 1;
+			if (right < n && Double.compare(keys[child], keys[right]) > 0) {
+				child = right;
+			}
+			if (Double.compare(key, keys[child]) <= 0) {
+				break;
+			}
+			frontier[k] = frontier[child];
+			keys[k] = keys[child];
+			k = child;
+		}
+		if (n > 0) {
+			frontier[k] = index;
+			keys[k] = key;
+		}
+		return result;
+	}
+
+	private void grow() {
+		if (size == frontier.length) {
+			frontier = Arrays.copyOf(frontier, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+	}
+
+}
@@ -10,18 +10,21 @@
  ********************************************************************************************************/
 package msi.gama.runtime;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 
 import msi.gama.common.util.PoolUtils;
 import msi.gama.util.GamaMapFactory;
-import msi.gaml.types.Types;
 
 public class ExecutionContext implements IExecutionContext {
 
 	private static final PoolUtils.ObjectPool<ExecutionContext> POOL =
 			PoolUtils.create("Execution Context", true, () -> new ExecutionContext(), null);
 
+	private static final String[] NO_NAMES = new String[0];
+	private static final Object[] NO_VALUES = new Object[0];
+
 	public static ExecutionContext create(final IExecutionContext outer) {
 		return create(outer.getScope(), outer);
 	}
@@ -37,13 +40,20 @@ public class ExecutionContext implements IExecutionContext {
 		return result;
 	}
 
-	Map<String, Object> local;
+	/**
+	 * The frame of the variables declared in this context: their names and their values, at the same positions. A
+	 * context declares a handful of variables at most, so that scanning the names is cheaper than hashing them in a
+	 * map. The arrays are kept when the context is recycled
+	 */
+	String[] names = NO_NAMES;
+	Object[] values = NO_VALUES;
+	int size;
 	IExecutionContext outer;
 	IScope scope;
 
 	@Override
 	public void dispose() {
-		local = null;
+		clearLocalVars();
 		outer = null;
 		scope = null;
 		POOL.release(this);
@@ -61,30 +71,53 @@ public class ExecutionContext implements IExecutionContext {
 		return outer;
 	}
 
+	/**
+	 * Returns the position of the variable in the frame of this context, or -1 if it is not declared here
+	 */
+	int slotOf(final String name) {
+		for (int i = 0; i < size; i++) {
+			if (name.equals(names[i])) { return i; }
+		}
+		return -1;
+	}
+
 	@Override
 	public void setTempVar(final String name, final Object value) {
-		if (local == null || !local.containsKey(name)) {
-			if (outer != null) {
-				outer.setTempVar(name, value);
+		IExecutionContext context = this;
+		// The chain is walked iteratively as long as it is made of ExecutionContexts
+		while (context instanceof ExecutionContext) {
+			final ExecutionContext current = (ExecutionContext) context;
+			final int slot = current.slotOf(name);
+			if (slot >= 0) {
+				current.values[slot] = value;
+				return;
 			}
-		} else {
-			local.put(name, value);
+			context = current.outer;
+		}
+		if (context != null) {
+			context.setTempVar(name, value);
 		}
-
 	}
 
 	@Override
 	public Object getTempVar(final String name) {
-		if (local == null || !local.containsKey(name)) { return outer == null ? null : outer.getTempVar(name); }
-		return local.get(name);
+		IExecutionContext context = this;
+		while (context instanceof ExecutionContext) {
+			final ExecutionContext current = (ExecutionContext) context;
+			final int slot = current.slotOf(name);
+			if (slot >= 0) { return current.values[slot]; }
+			context = current.outer;
+		}
+		return context == null ? null : context.getTempVar(name);
 	}
 
-	@SuppressWarnings ("unchecked")
 	@Override
 	public ExecutionContext createCopy() {
 		final ExecutionContext r = create(scope, outer);
-		if (local != null) {
-			r.local = GamaMapFactory.createWithoutCasting(Types.NO_TYPE, Types.NO_TYPE, local, false);
+		if (size > 0) {
+			r.names = Arrays.copyOf(names, size);
+			r.values = Arrays.copyOf(values, size);
+			r.size = size;
 		}
 		return r;
 	}
@@ -96,43 +129,62 @@ public class ExecutionContext implements IExecutionContext {
 
 	@Override
 	public Map<? extends String, ? extends Object> getLocalVars() {
-		return local == null ? Collections.EMPTY_MAP : local;
+		if (size == 0) { return Collections.EMPTY_MAP; }
+		final Map<String, Object> result = GamaMapFactory.createUnordered();
+		for (int i = 0; i < size; i++) {
+			result.put(names[i], values[i]);
+		}
+		return result;
 	}
 
 	@Override
 	public void clearLocalVars() {
-		local = null;
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
 	}
 
 	@Override
 	public void putLocalVar(final String varName, final Object val) {
-		if (local == null) {
-			local = GamaMapFactory.createUnordered();
+		final int slot = slotOf(varName);
+		if (slot >= 0) {
+			values[slot] = val;
+			return;
+		}
+		if (size == names.length) {
+			final int capacity = Math.max(4, size * 2);
+			names = Arrays.copyOf(names, capacity);
+			values = Arrays.copyOf(values, capacity);
 		}
-		local.put(varName, val);
+		names[size] = varName;
+		values[size++] = val;
 	}
 
 	@Override
 	public Object getLocalVar(final String string) {
-		if (local == null) { return null; }
-		return local.get(string);
+		final int slot = slotOf(string);
+		return slot < 0 ? null : values[slot];
 	}
 
 	@Override
 	public boolean hasLocalVar(final String name) {
-		if (local == null) { return false; }
-		return local.containsKey(name);
+		return slotOf(name) >= 0;
 	}
 
 	@Override
 	public void removeLocalVar(final String name) {
-		if (local == null) { return; }
-		local.remove(name);
+		final int slot = slotOf(name);
+		if (slot < 0) { return; }
+		size--;
+		System.arraycopy(names, slot + 1, names, slot, size - slot);
+		System.arraycopy(values, slot + 1, values, slot, size - slot);
+		names[size] = null;
+		values[size] = null;
 	}
 
 	@Override
 	public String toString() {
-		return "execution context " + local;
+		return "execution context " + getLocalVars();
 	}
 
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import msi.gama.kernel.model.IModel;
 import msi.gama.kernel.simulation.SimulationAgent;
 import msi.gama.kernel.simulation.SimulationClock;
 import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.population.SynchronousUpdateBuffer;
 import msi.gama.metamodel.topology.ITopology;
 import msi.gama.runtime.benchmark.StopWatch;
 import msi.gama.runtime.concurrent.GamaExecutorService;
@@ -61,10 +62,22 @@ public class ExecutionScope implements IScope {
 	private final String scopeName;
 	protected IExecutionContext executionContext;
 	protected AgentExecutionContext agentContext;
+	/**
+	 * The agent contexts popped from the stack, chained by their outer context and reused by the next pushes. A scope
+	 * is only used by one thread at a time (parallel runners work on copies), so they are recycled here rather than in
+	 * a pool shared by all the threads
+	 */
+	private AgentExecutionContext recycledAgentContexts;
 	protected final SpecialContext additionalContext = new SpecialContext();
 	private volatile boolean _action_halted, _loop_halted, _agent_halted, _trace, _in_try_mode, _interrupted,
 			_errors_disabled;
 	private ISymbol currentSymbol;
+	/**
+	 * The random stream used instead of the one of the simulation, if any: the one of the agent stepped within the
+	 * update buffer, or the one of the species stepped concurrently within this scope (see setRandom()). It is not
+	 * copied with the scope, as it can only be used by one thread
+	 */
+	private RandomUtils random;
 
 	class SpecialContext {
 		Object each;
@@ -75,6 +88,8 @@ public class ExecutionScope implements IScope {
 		ITypesManager types;
 		GamaRuntimeException currentError;
 		boolean horizontalPixelContext = false;
+		SynchronousUpdateBuffer updateBuffer;
+		IAgent stepped;
 
 		void clear() {
 			each = null;
@@ -84,6 +99,8 @@ public class ExecutionScope implements IScope {
 			gui = null;
 			types = null;
 			currentError = null;
+			updateBuffer = null;
+			stepped = null;
 		}
 
 		public void copyFrom(final SpecialContext specialContext) {
@@ -95,6 +112,8 @@ public class ExecutionScope implements IScope {
 			gui = specialContext.gui;
 			types = specialContext.types;
 			currentError = specialContext.currentError;
+			updateBuffer = specialContext.updateBuffer;
+			stepped = specialContext.stepped;
 		}
 
 	}
@@ -126,7 +145,12 @@ public class ExecutionScope implements IScope {
 	}
 
 	public AgentExecutionContext createChildContext(final IAgent agent) {
-		return AgentExecutionContext.create(agent, agentContext);
+		final AgentExecutionContext recycled = recycledAgentContexts;
+		if (recycled == null) { return AgentExecutionContext.create(agent, agentContext); }
+		recycledAgentContexts = recycled.outer;
+		recycled.agent = agent;
+		recycled.outer = agentContext;
+		return recycled;
 	};
 
 	/**
@@ -144,8 +168,10 @@ public class ExecutionScope implements IScope {
 			agentContext.dispose();
 		}
 		agentContext = null;
+		recycledAgentContexts = null;
 		additionalContext.clear();
 		currentSymbol = null;
+		random = null;
 	}
 
 	@Override
@@ -246,7 +272,7 @@ public class ExecutionScope implements IScope {
 	 */
 	// @Override
 	@Override
-	public synchronized boolean push(final IAgent agent) {
+	public boolean push(final IAgent agent) {
 		final IAgent a = agentContext == null ? null : agentContext.getAgent();
 		if (a == null) {
 			if (agent instanceof ITopLevelAgent) {
@@ -275,7 +301,9 @@ public class ExecutionScope implements IScope {
 		if (agentContext == null) { throw GamaRuntimeException.warning("Agents stack is empty", this); }
 		final AgentExecutionContext previous = agentContext;
 		agentContext = agentContext.getOuterContext();
-		previous.dispose();
+		previous.agent = null;
+		previous.outer = recycledAgentContexts;
+		recycledAgentContexts = previous;
 		_agent_halted = false;
 	}
 
@@ -411,6 +439,24 @@ public class ExecutionScope implements IScope {
 	@Override
 	public ExecutionResult step(final IStepable agent) {
 		if (agent == null || interrupted()) { return FAILED; }
+		final SynchronousUpdateBuffer buffer = additionalContext.updateBuffer;
+		if (buffer == null || !buffer.buffers(agent)) { return doStep(agent); }
+		// The values assigned while the agent is stepped are attributed to it, and it draws from its own random stream
+		final IAgent previous = additionalContext.stepped;
+		final RandomUtils previousRandom = random;
+		additionalContext.stepped = (IAgent) agent;
+		random = buffer.randomOf((IAgent) agent);
+		final IAgent previousInThread = SynchronousUpdateBuffer.enter((IAgent) agent);
+		try {
+			return doStep(agent);
+		} finally {
+			SynchronousUpdateBuffer.exit(previousInThread);
+			additionalContext.stepped = previous;
+			random = previousRandom;
+		}
+	}
+
+	private ExecutionResult doStep(final IStepable agent) {
 		try (StopWatch w = GAMA.benchmark(this, agent)) {
 			return withValue(agent.step(this));
 		} catch (final Throwable ex) {
@@ -770,6 +816,23 @@ public class ExecutionScope implements IScope {
 		return previous;
 	}
 
+	@Override
+	public SynchronousUpdateBuffer getUpdateBuffer() {
+		return additionalContext.updateBuffer;
+	}
+
+	@Override
+	public SynchronousUpdateBuffer setUpdateBuffer(final SynchronousUpdateBuffer buffer) {
+		final SynchronousUpdateBuffer previous = additionalContext.updateBuffer;
+		additionalContext.updateBuffer = buffer;
+		return previous;
+	}
+
+	@Override
+	public IAgent getSteppedAgent() {
+		return additionalContext.stepped;
+	}
+
 	/**
 	 * Method setGraphics()
 	 *
@@ -936,11 +999,17 @@ public class ExecutionScope implements IScope {
 	 */
 	@Override
 	public RandomUtils getRandom() {
+		if (random != null) { return random; }
 		final ITopLevelAgent root = getRoot();
 		if (root == null) { return new RandomUtils(); }
 		return root.getRandomGenerator();
 	}
 
+	@Override
+	public void setRandom(final RandomUtils random) {
+		this.random = random;
+	}
+
 	@Override
 	public IScope copy(final String additionalName) {
 		final ExecutionScope scope = new ExecutionScope(getRoot(), additionalName);
@@ -24,6 +24,7 @@ import msi.gama.kernel.model.IModel;
 import msi.gama.kernel.simulation.SimulationAgent;
 import msi.gama.kernel.simulation.SimulationClock;
 import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.population.SynchronousUpdateBuffer;
 import msi.gama.metamodel.topology.ITopology;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.IList;
@@ -457,6 +458,15 @@ public interface IScope extends Closeable, IBenchmarkable {
 
 	RandomUtils getRandom();
 
+	/**
+	 * Sets the random generator used within this scope instead of the one of the simulation (or null to use the latter
+	 * again). The generator must only be used by the thread that runs this scope
+	 *
+	 * @param random
+	 *            the generator
+	 */
+	default void setRandom(final RandomUtils random) {}
+
 	/**
 	 * Gets the gui.
 	 *
@@ -487,6 +497,36 @@ public interface IScope extends Closeable, IBenchmarkable {
 	 */
 	ITopology setTopology(ITopology topology);
 
+	/**
+	 * Gets the buffer in which the values assigned in this scope are kept, when it steps the population of a species
+	 * declared with 'synchronous: true'.
+	 *
+	 * @return the buffer, or null if the values are assigned directly
+	 */
+	default SynchronousUpdateBuffer getUpdateBuffer() {
+		return null;
+	}
+
+	/**
+	 * Sets the buffer in which the values assigned in this scope are kept (or null to assign them directly).
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the previous buffer
+	 */
+	default SynchronousUpdateBuffer setUpdateBuffer(final SynchronousUpdateBuffer buffer) {
+		return null;
+	}
+
+	/**
+	 * Gets the agent stepped within the update buffer of this scope, to which the values assigned are attributed.
+	 *
+	 * @return the agent, or null if no agent is stepped within the buffer
+	 */
+	default IAgent getSteppedAgent() {
+		return null;
+	}
+
 	/**
 	 * Sets the graphics.
 	 *
@@ -0,0 +1,139 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.runtime.concurrent.AdaptiveAgentSpliterator.java, in plugin msi.gama.core, is part of the source code of the
+ * GAMA modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.runtime.concurrent;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.shape.IShape;
+import msi.gama.runtime.IScope;
+
+/**
+ * A spliterator that splits an array of agents in chunks of (roughly) equal estimated cost rather than equal size,
+ * using the costs gathered in a {@link StepCostProfile}. It also measures the cost of each agent when stepping it, so
+ * that the next split reflects the actual distribution of costs.
+ */
+public class AdaptiveAgentSpliterator implements Spliterator<IAgent> {
+
+	/**
+	 * The number of chunks per thread we aim at, in order to leave some room for work stealing at the tail
+	 */
+	static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * The minimal estimated cost (in nanoseconds) of a chunk, under which forking a task costs more than it saves
+	 */
+	static final double MIN_CHUNK_COST = 50_000;
+
+	public static AdaptiveAgentSpliterator of(final IShape[] agents, final StepCostProfile profile,
+			final int parallelism) {
+		final int size = agents.length;
+		final double[] costs = profile.prepare(size);
+		final double[] cumulated = new double[size + 1];
+		for (int i = 0; i < size; i++) {
+			cumulated[i + 1] = cumulated[i] + costs[i];
+		}
+		final double grain =
+				Math.max(MIN_CHUNK_COST, cumulated[size] / (Math.max(1, parallelism) * CHUNKS_PER_THREAD));
+		return new AdaptiveAgentSpliterator(agents, profile, cumulated, 0, size, grain);
+	}
+
+	int begin;
+	final int end;
+	final double grain;
+	final double[] cumulated;
+	final IShape[] agents;
+	final StepCostProfile profile;
+
+	private AdaptiveAgentSpliterator(final IShape[] array, final StepCostProfile profile, final double[] cumulated,
+			final int begin, final int end, final double grain) {
+		this.begin = begin;
+		this.end = end;
+		this.grain = grain;
+		this.cumulated = cumulated;
+		this.profile = profile;
+		agents = array;
+	}
+
+	/**
+	 * Steps the remaining agents, recording the time taken by each of them. Dead agents are skipped
+	 *
+	 * @return false if one of the agents failed to step, true otherwise
+	 */
+	public boolean stepRemaining(final IScope scope) {
+		for (int i = begin; i < end; ++i) {
+			final IAgent agent = (IAgent) agents[i];
+			if (agent.dead()) {
+				continue;
+			}
+			final long start = System.nanoTime();
+			final boolean passed = scope.step(agent).passed();
+			profile.record(i, System.nanoTime() - start);
+			if (!passed) { return false; }
+		}
+		begin = end;
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super IAgent> action) {
+		for (int i = begin; i < end; ++i) {
+			action.accept((IAgent) agents[i]);
+		}
+		begin = end;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super IAgent> action) {
+		if (begin >= end) { return false; }
+		action.accept((IAgent) agents[begin++]);
+		return true;
+	}
+
+	/**
+	 * Splits at the position where half of the estimated cost of the chunk is reached, as long as this cost is above
+	 * the grain
+	 */
+	@Override
+	public AdaptiveAgentSpliterator trySplit() {
+		if (end - begin < 2) { return null; }
+		final double from = cumulated[begin];
+		final double to = cumulated[end];
+		if (to - from <= grain) { return null; }
+		final double half = from + (to - from) / 2;
+		// Binary search of the first position whose cumulated cost reaches half
+		int low = begin + 1, high = end - 1;
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			if (cumulated[mid] < half) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		final AdaptiveAgentSpliterator split =
+				new AdaptiveAgentSpliterator(agents, profile, cumulated, begin, low, grain);
+		begin = low;
+		return split;
+	}
+
+	@Override
+	public long estimateSize() {
+		return (long) end - begin;
+	}
+
+	@Override
+	public int characteristics() {
+		return Spliterator.CONCURRENT | Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.SIZED;
+	}
+
+}
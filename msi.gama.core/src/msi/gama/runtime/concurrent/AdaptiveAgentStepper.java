@@ -0,0 +1,39 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.runtime.concurrent.AdaptiveAgentStepper.java, in plugin msi.gama.core, is part of the source code of the
+ * GAMA modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.runtime.concurrent;
+
+import java.util.Spliterator;
+
+import msi.gama.metamodel.agent.IAgent;
+import msi.gama.runtime.IScope;
+import msi.gama.runtime.exceptions.GamaRuntimeException;
+
+/**
+ * Steps agents in parallel using chunks of equal estimated cost (see {@link AdaptiveAgentSpliterator}). Chosen when
+ * the 'parallel:' facet of a species is set to "adaptive".
+ */
+public class AdaptiveAgentStepper extends ParallelAgentRunner<Boolean> {
+
+	public AdaptiveAgentStepper(final IScope scope, final AdaptiveAgentSpliterator agents) {
+		super(scope, agents);
+	}
+
+	@Override
+	public Boolean executeOn(final IScope scope) throws GamaRuntimeException {
+		return ((AdaptiveAgentSpliterator) agents).stepRemaining(scope);
+	}
+
+	@Override
+	ParallelAgentRunner<Boolean> subTask(final Spliterator<IAgent> sub) {
+		return new AdaptiveAgentStepper(originalScope, (AdaptiveAgentSpliterator) sub);
+	}
+
+}
@@ -13,7 +13,10 @@ package msi.gama.runtime.concurrent;
 import static msi.gama.common.preferences.GamaPreferences.create;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -26,15 +29,20 @@ import java.util.concurrent.TimeUnit;
 
 import com.google.common.util.concurrent.MoreExecutors;
 
+import msi.gama.common.interfaces.IKeyword;
 import msi.gama.common.preferences.GamaPreferences;
 import msi.gama.common.preferences.Pref;
+import msi.gama.common.util.RandomUtils;
+import msi.gama.kernel.simulation.SimulationClock;
 import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.population.IPopulation;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.runtime.GAMA;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.benchmark.StopWatch;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
 import msi.gama.util.IList;
+import msi.gaml.descriptions.SpeciesDependencyGraph;
 import msi.gaml.expressions.IExpression;
 import msi.gaml.operators.Cast;
 import msi.gaml.species.ISpecies;
@@ -89,6 +97,13 @@ public abstract class GamaExecutorService {
 										String.valueOf(newValue));
 							});
 
+	/**
+	 * The number of threads shared by all the experiments run in headless mode to step their simulations and agents. 0
+	 * if the user has not asked for it, in which case the experiments step their simulations one after the other and
+	 * their agents as the preferences and facets say
+	 */
+	private static volatile int headlessThreadBudget;
+
 	public static void startUp() {
 		// Called by the activator to init the preferences and executor services
 		setConcurrencyLevel(CONCURRENCY_THREADS_NUMBER.getValue());
@@ -135,6 +150,61 @@ public abstract class GamaExecutorService {
 				};
 	}
 
+	/**
+	 * The level of parallelism returned when agents are to be split in chunks of equal estimated cost (see
+	 * {@link AdaptiveAgentSpliterator})
+	 */
+	public static final int ADAPTIVE = -1;
+
+	/**
+	 * Sets the number of threads that the experiments run in headless mode share to step their simulations and agents
+	 * (only called when the user asks for it on the command line). When the platform is actually in headless mode, the
+	 * executors are resized accordingly
+	 */
+	public static void setHeadlessThreadBudget(final int threads) {
+		final int budget = Math.max(1, threads);
+		if (budget == headlessThreadBudget) { return; }
+		headlessThreadBudget = budget;
+		if (GAMA.isInHeadLessMode()) {
+			setConcurrencyLevel(budget);
+		}
+	}
+
+	/**
+	 * Whether the experiments run in headless mode share a thread budget (see
+	 * {@link #setHeadlessThreadBudget(int)}). Never the case for the headless experiments launched from the GUI
+	 */
+	public static boolean isHeadlessThreadBudgetShared() {
+		return headlessThreadBudget > 0 && GAMA.isInHeadLessMode();
+	}
+
+	/**
+	 * The number of threads that each experiment running in headless mode can use when they share a budget
+	 */
+	public static int getHeadlessThreadShare() {
+		return Math.max(1, headlessThreadBudget / Math.max(1, SimulationRunner.HEADLESS_RUNNERS.get()));
+	}
+
+	/**
+	 * The number of chunks in which the agents stepped in parallel are split: the parallelism of the agent executor,
+	 * or the share of the experiment when the experiments run in headless mode share a thread budget
+	 */
+	public static int getAgentParallelism() {
+		final int parallelism = AGENT_PARALLEL_EXECUTOR.getParallelism();
+		if (!isHeadlessThreadBudgetShared()) { return parallelism; }
+		return Math.min(parallelism, getHeadlessThreadShare());
+	}
+
+	/**
+	 * Raises the threshold under which agents are processed sequentially so that the agents passed are split in about
+	 * {@link #getAgentParallelism()} chunks at most, when the experiments run in headless mode share a thread budget
+	 */
+	private static int shareThreshold(final int threshold, final int size) {
+		if (!isHeadlessThreadBudgetShared()) { return threshold; }
+		final int parallelism = getAgentParallelism();
+		return Math.max(threshold, (size + parallelism - 1) / parallelism);
+	}
+
 	public enum Caller {
 		SPECIES, GRID, NONE, SIMULATION
 	}
@@ -147,7 +217,7 @@ public abstract class GamaExecutorService {
 	 * @param forSpecies
 	 *            whether it is for species or not
 	 * @return 0 for no parallelism, 1 for complete parallelism (i.e. each agent on its own), n for parallelism with a
-	 *         threshold of n
+	 *         threshold of n, {@link #ADAPTIVE} for parallelism with chunks of equal estimated cost
 	 */
 	public static int getParallelism(final IScope scope, final IExpression concurrency, final Caller caller) {
 		if (concurrency == null) {
@@ -185,6 +255,9 @@ public abstract class GamaExecutorService {
 			} else if (o instanceof Integer) {
 				final Integer i = Math.abs((Integer) o);
 				return i;
+			} else if (IKeyword.ADAPTIVE.equals(o)) {
+				if (caller == Caller.SIMULATION) { return CONCURRENCY_THREADS_NUMBER.getValue(); }
+				return ADAPTIVE;
 			} else {
 				return getParallelism(scope, null, caller);
 			}
@@ -197,15 +270,25 @@ public abstract class GamaExecutorService {
 
 	public static <A extends IAgent> Boolean step(final IScope scope, final IList<A> pop, final ISpecies species)
 			throws GamaRuntimeException {
+		return step(scope, pop, species, null);
+	}
+
+	public static <A extends IAgent> Boolean step(final IScope scope, final IList<A> pop, final ISpecies species,
+			final StepCostProfile profile) throws GamaRuntimeException {
 		final IExpression schedule = species.getSchedule();
 		final IList<? extends IAgent> agents = schedule == null ? pop : Cast.asList(scope, schedule.value(scope));
 		final int threshold =
 				getParallelism(scope, species.getConcurrency(), species.isGrid() ? Caller.GRID : Caller.SPECIES);
-		return doStep(scope, agents.toArray(new IAgent[agents.size()]), threshold, species);
+		return doStep(scope, agents.toArray(new IAgent[agents.size()]), threshold, species, profile);
 	}
 
 	public static <A extends IShape> Boolean step(final IScope scope, final A[] array, final ISpecies species)
 			throws GamaRuntimeException {
+		return step(scope, array, species, null);
+	}
+
+	public static <A extends IShape> Boolean step(final IScope scope, final A[] array, final ISpecies species,
+			final StepCostProfile profile) throws GamaRuntimeException {
 		final IExpression schedule = species.getSchedule();
 		final IShape[] scheduledAgents;
 		if (schedule == null) {
@@ -216,17 +299,21 @@ public abstract class GamaExecutorService {
 		}
 		final int threshold =
 				getParallelism(scope, species.getConcurrency(), species.isGrid() ? Caller.GRID : Caller.SPECIES);
-		return doStep(scope, scheduledAgents, threshold, species);
+		return doStep(scope, scheduledAgents, threshold, species, profile);
 	}
 
 	private static <A extends IShape> Boolean doStep(final IScope scope, final A[] array, final int threshold,
-			final ISpecies species) {
+			final ISpecies species, final StepCostProfile profile) {
 		try (final StopWatch w = GAMA.benchmark(scope, species)) {
 			int concurrency = threshold;
 			if (array.length <= threshold) {
 				concurrency = 0;
 			}
 			switch (concurrency) {
+				case ADAPTIVE:
+					// Without a profile kept by the population, costs are only estimated for this step
+					return ParallelAgentRunner.stepAdaptive(scope, array,
+							profile == null ? new StepCostProfile() : profile);
 				case 0:
 					for (final A aa : array) {
 						final IAgent agent = (IAgent) aa;
@@ -242,8 +329,60 @@ public abstract class GamaExecutorService {
 					}
 					break;
 				default:
-					ParallelAgentRunner.step(scope, array, threshold);
+					ParallelAgentRunner.step(scope, array, shareThreshold(threshold, array.length));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Steps the populations passed, in their order, except that the ones that do not conflict (as computed by the
+	 * dependencies) are stepped concurrently, each within its own copy of the scope. Each of them then draws its random
+	 * numbers from its own stream, seeded from the seed of the simulation, the cycle, its host and its rank within its
+	 * level, so that the results do not depend on the order in which the threads run
+	 */
+	public static Boolean step(final IScope scope, final IPopulation<? extends IAgent>[] pops,
+			final SpeciesDependencyGraph dependencies) throws GamaRuntimeException {
+		final String[] names = new String[pops.length];
+		for (int i = 0; i < pops.length; i++) {
+			names[i] = pops[i].getName();
+		}
+		final int[] levels = dependencies.levelsOf(names);
+		final int maxLevel = Arrays.stream(levels).max().orElse(-1);
+		final SimulationClock clock = scope.getClock();
+		final RandomUtils random = scope.getRandom();
+		final Double seed = RandomUtils.derivedSeed(random.getSeed(), clock == null ? 0 : clock.getCycle());
+		final List<IPopulation<? extends IAgent>> stepped = new ArrayList<>();
+		for (int level = 0; level <= maxLevel; level++) {
+			stepped.clear();
+			for (int i = 0; i < pops.length; i++) {
+				if (levels[i] == level) {
+					stepped.add(pops[i]);
+				}
 			}
+			if (stepped.isEmpty()) {
+				continue;
+			}
+			final boolean passed;
+			if (stepped.size() == 1) {
+				passed = scope.step(stepped.get(0)).passed();
+			} else {
+				final List<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+				for (int rank = 0; rank < stepped.size(); rank++) {
+					final IPopulation<? extends IAgent> pop = stepped.get(rank);
+					final IScope copy = scope.copy(" - species " + pop.getName() + " - ");
+					final IAgent host = pop.getHost();
+					final Double hostSeed = RandomUtils.derivedSeed(seed, host == null ? 0 : host.getIndex());
+					copy.setRandom(new RandomUtils(RandomUtils.derivedSeed(hostSeed, rank), random.getRngName()));
+					final Callable<Boolean> step = () -> copy.step(pop).passed();
+					tasks.add(ForkJoinTask.adapt(step));
+				}
+				passed = AGENT_PARALLEL_EXECUTOR.invoke(ForkJoinTask.adapt(() -> {
+					ForkJoinTask.invokeAll(tasks);
+					return tasks.stream().allMatch(ForkJoinTask::join);
+				}));
+			}
+			if (!passed) { return false; }
 		}
 		return true;
 	}
@@ -251,6 +390,9 @@ public abstract class GamaExecutorService {
 	public static <A extends IShape> void execute(final IScope scope, final IExecutable executable, final A[] array,
 			final IExpression parallel) throws GamaRuntimeException {
 		int threshold = getParallelism(scope, parallel, Caller.NONE);
+		if (threshold == ADAPTIVE) {
+			threshold = CONCURRENCY_THRESHOLD.getValue();
+		}
 		if (array.length <= threshold) {
 			threshold = 0;
 		}
@@ -266,7 +408,7 @@ public abstract class GamaExecutorService {
 				}
 				return;
 			default:
-				ParallelAgentRunner.execute(scope, executable, array, threshold);
+				ParallelAgentRunner.execute(scope, executable, array, shareThreshold(threshold, array.length));
 		}
 	}
 
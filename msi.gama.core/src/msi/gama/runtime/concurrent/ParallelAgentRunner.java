@@ -37,6 +37,13 @@ public abstract class ParallelAgentRunner<T> extends RecursiveTask<T> implements
 		return execute(runner);
 	}
 
+	public static <A extends IShape> Boolean stepAdaptive(final IScope scope, final A[] array,
+			final StepCostProfile profile) throws GamaRuntimeException {
+		final AdaptiveAgentSpliterator agents =
+				AdaptiveAgentSpliterator.of(array, profile, GamaExecutorService.getAgentParallelism());
+		return execute(new AdaptiveAgentStepper(scope, agents));
+	}
+
 	public static <A extends IShape> void execute(final IScope scope, final IExecutable executable, final A[] array,
 			final int threshold) throws GamaRuntimeException {
 		final ParallelAgentRunner<?> runner = from(scope, executable, array, threshold);
@@ -10,12 +10,15 @@
  ********************************************************************************************************/
 package msi.gama.runtime.concurrent;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import msi.gama.kernel.experiment.IExperimentPlan;
@@ -25,10 +28,18 @@ import msi.gama.runtime.concurrent.GamaExecutorService.Caller;
 
 public class SimulationRunner {
 
+	/**
+	 * The number of experiments currently running in headless mode and sharing a thread budget (see
+	 * {@link GamaExecutorService#getHeadlessThreadShare()})
+	 */
+	static final AtomicInteger HEADLESS_RUNNERS = new AtomicInteger();
+
 	final SimulationPopulation population;
 	final Map<SimulationAgent, Callable<Boolean>> runnables;
 	static final Function<SimulationAgent, Boolean> STEP = each -> each.getScope().step(each).passed();
 	final int concurrency;
+	final boolean shared;
+	private boolean registered;
 
 	private int activeThreads;
 
@@ -36,15 +47,31 @@ public class SimulationRunner {
 		population = pop;
 		runnables = new LinkedHashMap<>();
 		final IExperimentPlan plan = population.getHost().getSpecies();
-		if (plan.isHeadless()) {
+		shared = plan.isHeadless() && GamaExecutorService.isHeadlessThreadBudgetShared();
+		if (plan.isHeadless() && !shared) {
+			// Unless the user asks them to share a thread budget, headless experiments use a concurrency of 1
 			concurrency = 1;
 		} else {
 			concurrency = GamaExecutorService.getParallelism(population.getHost().getScope(), plan.getConcurrency(),
 					Caller.SIMULATION);
 		}
+		if (shared) {
+			registered = true;
+			HEADLESS_RUNNERS.incrementAndGet();
+		}
 
 	}
 
+	/**
+	 * The maximum number of threads this runner can use to step its simulations. When they share a thread budget, the
+	 * experiments running in headless mode at the same time split it equally, so that the machine is neither
+	 * oversubscribed nor idle
+	 */
+	public int getMaxNumberOfThreads() {
+		if (!shared || concurrency == 0) { return concurrency; }
+		return Math.min(concurrency, GamaExecutorService.getHeadlessThreadShare());
+	}
+
 	public void remove(final SimulationAgent agent) {
 		runnables.remove(agent);
 	}
@@ -58,11 +85,42 @@ public class SimulationRunner {
 
 	public void step() {
 		try {
-			getExecutor().invokeAll(runnables.values());
+			final int threads = getMaxNumberOfThreads();
+			if (!shared || runnables.size() <= threads) {
+				getExecutor().invokeAll(runnables.values());
+			} else {
+				getExecutor().invokeAll(batches(threads));
+			}
 		} catch (final InterruptedException e) {}
 
 	}
 
+	/**
+	 * Groups the simulations in a number of tasks, each stepping its simulations one after the other, so that no more
+	 * than this number of threads is used by this runner
+	 */
+	private List<Callable<Boolean>> batches(final int number) {
+		final List<List<Callable<Boolean>>> groups = new ArrayList<>();
+		for (int i = 0; i < number; i++) {
+			groups.add(new ArrayList<>());
+		}
+		int i = 0;
+		for (final Callable<Boolean> c : runnables.values()) {
+			groups.get(i++ % number).add(c);
+		}
+		final List<Callable<Boolean>> result = new ArrayList<>();
+		for (final List<Callable<Boolean>> group : groups) {
+			result.add(() -> {
+				boolean passed = true;
+				for (final Callable<Boolean> c : group) {
+					passed &= c.call();
+				}
+				return passed;
+			});
+		}
+		return result;
+	}
+
 	private int computeNumberOfThreads() {
 		final ExecutorService executor = getExecutor();
 		if (executor instanceof ForkJoinPool) {
@@ -82,6 +140,10 @@ public class SimulationRunner {
 
 	public void dispose() {
 		runnables.clear();
+		if (registered) {
+			registered = false;
+			HEADLESS_RUNNERS.decrementAndGet();
+		}
 	}
 
 	public int getActiveThreads() {
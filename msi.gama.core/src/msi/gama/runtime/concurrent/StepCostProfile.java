@@ -0,0 +1,60 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.runtime.concurrent.StepCostProfile.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.runtime.concurrent;
+
+import java.util.Arrays;
+
+/**
+ * Online estimation of the time (in nanoseconds) taken by each agent of a population to step. Costs are kept by
+ * position in the scheduled array: as populations keep their order from one cycle to the next, a position is a good
+ * proxy for an agent, and the estimates realign by themselves after one cycle when agents are created or killed.
+ *
+ * Each position is only written by the task that steps the corresponding agent, so no synchronization is required
+ * while stepping. {@link #prepare(int)} must be called before forking the tasks.
+ */
+public class StepCostProfile {
+
+	/**
+	 * The weight given to the last measure in the exponential moving average of the costs
+	 */
+	static final double SMOOTHING = 0.3;
+
+	private double[] costs = new double[0];
+
+	/**
+	 * Makes sure the profile can hold the costs of size agents. New positions receive the mean of the known costs (or 0
+	 * if nothing is known yet, in which case the agents will not be split before their costs are measured)
+	 *
+	 * @param size
+	 *            the number of agents about to be stepped
+	 * @return the array of costs, which can be directly used to split the agents
+	 */
+	public double[] prepare(final int size) {
+		final int known = costs.length;
+		if (known != size) {
+			final double mean = known == 0 ? 0d : Arrays.stream(costs).average().orElse(0d);
+			costs = Arrays.copyOf(costs, size);
+			if (size > known) {
+				Arrays.fill(costs, known, size, mean);
+			}
+		}
+		return costs;
+	}
+
+	/**
+	 * Records the last cost measured for the agent at this position. The first measure is taken as is
+	 */
+	public void record(final int position, final long nanos) {
+		final double previous = costs[position];
+		costs[position] = previous == 0d ? nanos : previous * (1 - SMOOTHING) + nanos * SMOOTHING;
+	}
+
+}
@@ -74,6 +74,13 @@ public class GamaMapFactory {
 		return wrap(key, contents, isOrdered, Collections.synchronizedMap(target));
 	}
 
+	public static <K, V> IMap<K, V> unmodifiableMap(final IMap<K, V> target) {
+		final IType key = target.getGamlType().getKeyType();
+		final IType contents = target.getGamlType().getContentType();
+		final boolean isOrdered = target.isOrdered();
+		return wrap(key, contents, isOrdered, Collections.unmodifiableMap(target));
+	}
+
 	public static <K, V> IMap<K, V> concurrentMap() {
 		return wrap(Types.NO_TYPE, Types.NO_TYPE, false, new ConcurrentHashMap<>());
 	}
@@ -36,6 +36,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import com.vividsolutions.jts.geom.Envelope;
 
 import msi.gama.common.geometry.Envelope3D;
+import msi.gama.common.preferences.GamaPreferences;
 import msi.gama.metamodel.shape.GamaPoint;
 import msi.gama.metamodel.shape.GamaShape;
 import msi.gama.metamodel.shape.ILocation;
@@ -68,6 +69,11 @@ public class GamaGridFile extends GamaGisFile {
 	GamaGridReader reader;
 	GridCoverage2D coverage;
 	public int nbBands;
+	/**
+	 * The copy of the values of the file in the local cache, once opened (or written), and whether it cannot be used
+	 */
+	private GridTileCache tiles;
+	private boolean noTiles;
 
 	@Override
 	public IList<String> getAttributes(final IScope scope) {
@@ -76,40 +82,50 @@ public class GamaGridFile extends GamaGisFile {
 	}
 
 	private GamaGridReader createReader(final IScope scope, final boolean fillBuffer) {
-		if (reader == null) {
-			final File gridFile = getFile(scope);
-			gridFile.setReadable(true);
-			FileInputStream fis = null;
-			try {
-				fis = new FileInputStream(gridFile);
-			} catch (final FileNotFoundException e) {
-				// Should not happen;
-			}
-			try {
-				reader = new GamaGridReader(scope, fis, fillBuffer);
-			} catch (final GamaRuntimeException e) {
-				if (isTiff(scope)) {
-					final GamaRuntimeException ex = GamaRuntimeException.error(
-							"The format of " + getName(scope) + " is not correct. Error: " + e.getMessage(), scope);
-					ex.addContext("for file " + getPath(scope));
-					throw ex;
+		if (reader == null || fillBuffer && getBuffer() == null) {
+			reader = openReader(scope, fillBuffer, false);
+		}
+		return reader;
+	}
+
+	private GamaGridReader openReader(final IScope scope, final boolean fillBuffer, final boolean readValues) {
+		GamaGridReader result;
+		final File gridFile = getFile(scope);
+		gridFile.setReadable(true);
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(gridFile);
+		} catch (final FileNotFoundException e) {
+			// Should not happen;
+		}
+		try {
+			result = new GamaGridReader(scope, fis, fillBuffer, readValues);
+		} catch (final GamaRuntimeException e) {
+			if (isTiff(scope)) {
+				final GamaRuntimeException ex = GamaRuntimeException.error(
+						"The format of " + getName(scope) + " is not correct. Error: " + e.getMessage(), scope);
+				ex.addContext("for file " + getPath(scope));
+				throw ex;
 
-				}
-				// A problem appeared, likely related to the wrong format of the
-				// file (see Issue 412)
-				GAMA.reportError(scope,
-						GamaRuntimeException.warning(
-								"The format of " + getName(scope) + " is incorrect. Attempting to read it anyway.",
-								scope),
-						false);
-				
-				reader = fixFileHeader(scope,fillBuffer);
 			}
+			// A problem appeared, likely related to the wrong format of the
+			// file (see Issue 412)
+			GAMA.reportError(scope,
+					GamaRuntimeException.warning(
+							"The format of " + getName(scope) + " is incorrect. Attempting to read it anyway.",
+							scope),
+					false);
+			
+			result = fixFileHeader(scope, fillBuffer, readValues);
 		}
-		return reader;
+		return result;
 	}
 	
 	public GamaGridReader fixFileHeader(IScope scope,final boolean fillBuffer) {
+		return fixFileHeader(scope, fillBuffer, false);
+	}
+
+	private GamaGridReader fixFileHeader(final IScope scope, final boolean fillBuffer, final boolean readValues) {
 		final StringBuilder text = new StringBuilder();
 		final String NL = System.getProperty("line.separator");
 
@@ -140,7 +156,30 @@ public class GamaGridFile extends GamaGisFile {
 
 		text.append(NL);
 		// fis = new StringBufferInputStream(text.toString());
-		return new GamaGridReader(scope, new StringBufferInputStream(text.toString()), fillBuffer);
+		return new GamaGridReader(scope, new StringBufferInputStream(text.toString()), fillBuffer, readValues);
+	}
+
+	/**
+	 * The values of the cells of a grid file, read in primitive arrays (see {@link GamaGridFile#readValues(IScope)})
+	 */
+	public static class GridValues {
+
+		public final int numRows, numCols;
+		/**
+		 * The value of each cell, in the order of the geometries of the file
+		 */
+		public final double[] values;
+		/**
+		 * The values of the bands of the cells, band by band (i.e. bands[band][cell])
+		 */
+		public final double[][] bands;
+
+		GridValues(final int numRows, final int numCols, final double[] values, final double[][] bands) {
+			this.numRows = numRows;
+			this.numCols = numCols;
+			this.values = values;
+			this.bands = bands;
+		}
 	}
 
 	class GamaGridReader {
@@ -148,13 +187,25 @@ public class GamaGridFile extends GamaGisFile {
 		int numRows, numCols;
 		IShape geom;
 		Number noData = -9999;
+		GridValues values;
 
 		GamaGridReader(final IScope scope, final InputStream fis, final boolean fillBuffer)
 				throws GamaRuntimeException {
-			setBuffer(GamaListFactory.<IShape> create(Types.GEOMETRY));
+			this(scope, fis, fillBuffer, false);
+		}
+
+		/**
+		 * When readValues is true, the buffer of the file is left untouched and the values of the cells are read in
+		 * primitive arrays instead of being attached to their geometries
+		 */
+		GamaGridReader(final IScope scope, final InputStream fis, final boolean fillBuffer, final boolean readValues)
+				throws GamaRuntimeException {
+			if (fillBuffer) {
+				setBuffer(GamaListFactory.<IShape> create(Types.GEOMETRY));
+			}
 			AbstractGridCoverage2DReader store = null;
 			try {
-				if (fillBuffer) {
+				if (fillBuffer || readValues) {
 					scope.getGui().getStatus(scope).beginSubStatus("Reading file " + getName(scope));
 				}
 				// Necessary to compute it here, because it needs to be passed
@@ -194,7 +245,7 @@ public class GamaGridFile extends GamaGisFile {
 				shapes.add(new GamaPoint(originX, maxY));
 				shapes.add(shapes.get(0));
 				geom = GamaGeometryType.buildPolygon(shapes);
-				if (!fillBuffer) { return; }
+				if (!fillBuffer && !readValues) { return; }
 
 				final GamaPoint p = new GamaPoint(0, 0);
 				coverage = store.read(null);
@@ -211,6 +262,41 @@ public class GamaGridFile extends GamaGisFile {
 				final double maxYP = genv.getMaximum(1);
 				final double cmxP = cellWidthP / 2;
 				final double cmyP = cellHeightP / 2;
+				if (readValues) {
+					final int n = numRows * numCols;
+					final double[] cellValues = new double[n];
+					double[][] bandValues = new double[0][];
+					boolean valueIsFirstBand = true;
+					for (int i = 0; i < n; i++) {
+						if (i % numCols == 0) {
+							scope.getGui().getStatus(scope).setSubStatusCompletion(i / (double) n);
+						}
+						final int yy = i / numCols;
+						final int xx = i - yy * numCols;
+						final Object vals = coverage.evaluate(new DirectPosition2D(originXP + xx * cellWidthP + cmxP,
+								maxYP - (yy * cellHeightP + cmyP)));
+						final double[] vb = bandsOf(vals);
+						if (i == 0) {
+							nbBands = vb.length;
+							bandValues = new double[nbBands][n];
+							valueIsFirstBand = !(vals instanceof byte[] && nbBands == 3);
+						}
+						for (int b = 0; b < bandValues.length; b++) {
+							bandValues[b][i] = vb[b];
+						}
+						cellValues[i] = gridValueOf(vals);
+					}
+					values = new GridValues(numRows, numCols, cellValues, bandValues);
+					if (nbBands > 0 && GamaPreferences.External.LIB_GRID_CACHE.getValue()) {
+						try {
+							GridTileCache.write(getFile(scope), values, new double[] { genv.getMinimum(0),
+									genv.getMinimum(1), genv.getMaximum(0), genv.getMaximum(1) }, valueIsFirstBand);
+						} catch (final IOException e) {
+							noTiles = true;
+						}
+					}
+					return;
+				}
 
 				for (int i = 0, n = numRows * numCols; i < n; i++) {
 					scope.getGui().getStatus(scope).setSubStatusCompletion(i / (double) n);
@@ -328,7 +414,10 @@ public class GamaGridFile extends GamaGisFile {
 
 	@Override
 	public Envelope3D computeEnvelope(final IScope scope) {
-		fillBuffer(scope);
+		// Only the header of the file is necessary to compute its envelope
+		if (gis == null) {
+			createReader(scope, false);
+		}
 		return gis.getProjectedEnvelope();
 	}
 
@@ -353,6 +442,59 @@ public class GamaGridFile extends GamaGisFile {
 		return createReader(scope, true).numCols;
 	}
 
+	/**
+	 * Reads the values of the cells of the grid (the same as the "grid_value" and "bands" attributes of its geometries)
+	 * directly in primitive arrays, without building the geometries nor filling the buffer of the file. The arrays
+	 * returned are not kept by the file
+	 */
+	public GridValues readValues(final IScope scope) {
+		final GridTileCache cache = getTiles(scope, false);
+		if (cache != null) {
+			try {
+				final GridValues result = cache.readValues();
+				nbBands = cache.nbBands;
+				return result;
+			} catch (final IOException e) {
+				closeTiles();
+				noTiles = true;
+			}
+		}
+		final GamaGridReader r = openReader(scope, false, true);
+		if (reader == null) {
+			reader = r;
+		}
+		final GridValues result = r.values;
+		r.values = null;
+		return result;
+	}
+
+	/**
+	 * The copy of the values of the file in the local cache (see {@link GridTileCache}), written first if it does not
+	 * exist and create is true. Returns null if the cache is disabled in the preferences or cannot be used
+	 */
+	private synchronized GridTileCache getTiles(final IScope scope, final boolean create) {
+		if (tiles != null || noTiles || !GamaPreferences.External.LIB_GRID_CACHE.getValue()) { return tiles; }
+		tiles = GridTileCache.open(getFile(scope));
+		if (tiles == null && create) {
+			// The reader is kept (without its values), as valueOf() falls back on it if the cache cannot be written
+			final GamaGridReader r = openReader(scope, false, true);
+			r.values = null;
+			if (reader == null) {
+				reader = r;
+			}
+			tiles = GridTileCache.open(getFile(scope));
+			noTiles = tiles == null;
+		}
+		return tiles;
+	}
+
+	private synchronized void closeTiles() {
+		if (tiles != null) {
+			tiles.close();
+		}
+		tiles = null;
+	}
+
 	public boolean isTiff(final IScope scope) {
 		return getExtension(scope).equals("tif");
 	}
@@ -437,6 +579,8 @@ public class GamaGridFile extends GamaGisFile {
 	public void invalidateContents() {
 		super.invalidateContents();
 		reader = null;
+		closeTiles();
+		noTiles = false;
 		if (coverage != null) {
 			coverage.dispose(true);
 		}
@@ -447,8 +591,75 @@ public class GamaGridFile extends GamaGisFile {
 		return coverage;
 	}
 
+	/**
+	 * The values of the bands of a cell, as evaluated by the coverage
+	 */
+	static double[] bandsOf(final Object vals) {
+		if (vals instanceof double[]) { return ((double[]) vals).clone(); }
+		final double[] result;
+		if (vals instanceof int[]) {
+			final int[] vi = (int[]) vals;
+			result = new double[vi.length];
+			for (int i = 0; i < vi.length; i++) {
+				result[i] = vi[i];
+			}
+		} else if (vals instanceof long[]) {
+			final long[] vi = (long[]) vals;
+			result = new double[vi.length];
+			for (int i = 0; i < vi.length; i++) {
+				result[i] = (int) vi[i];
+			}
+		} else if (vals instanceof float[]) {
+			final float[] vi = (float[]) vals;
+			result = new double[vi.length];
+			for (int i = 0; i < vi.length; i++) {
+				result[i] = vi[i];
+			}
+		} else if (vals instanceof byte[]) {
+			final byte[] bv = (byte[]) vals;
+			result = new double[bv.length];
+			for (int i = 0; i < bv.length; i++) {
+				result[i] = bv[i];
+			}
+		} else {
+			result = new double[0];
+		}
+		return result;
+	}
+
+	/**
+	 * The "grid_value" of a cell, as evaluated by the coverage (0 if it has none)
+	 */
+	static double gridValueOf(final Object vals) {
+		if (vals instanceof double[]) { return ((double[]) vals)[0]; }
+		if (vals instanceof int[]) { return ((int[]) vals)[0]; }
+		if (vals instanceof long[]) { return ((long[]) vals)[0]; }
+		if (vals instanceof float[]) { return ((float[]) vals)[0]; }
+		if (vals instanceof byte[]) {
+			final byte[] bv = (byte[]) vals;
+			if (bv.length == 1) { return bv[0]; }
+			if (bv.length == 3) {
+				final int red = bv[0] < 0 ? 256 + bv[0] : bv[0];
+				final int green = bv[0] < 0 ? 256 + bv[1] : bv[1];
+				final int blue = bv[0] < 0 ? 256 + bv[2] : bv[2];
+				return (red + green + blue) / 3.0;
+			}
+		}
+		return 0d;
+	}
+
 	public Double valueOf(final IScope scope, final ILocation loc) {
-		if (getBuffer() == null) {
+		// The values are read from the local cache when possible, which avoids decoding the whole file
+		final GridTileCache cache = getTiles(scope, true);
+		if (cache != null) {
+			try {
+				return cache.valueOf(loc.getLocation().getX(), loc.getLocation().getY());
+			} catch (final IOException e) {
+				closeTiles();
+				noTiles = true;
+			}
+		}
+		if (getBuffer() == null && coverage == null) {
 			fillBuffer(scope);
 		}
 		Object vals = null;
@@ -0,0 +1,228 @@
+/*******************************************************************************************************
+ *
+ * msi.gama.util.file.GridTileCache.java, in plugin msi.gama.core, is part of the source code of the GAMA modeling and
+ * simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gama.util.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import msi.gama.common.util.FileUtils;
+import msi.gama.util.file.GamaGridFile.GridValues;
+
+/**
+ * A copy of the values of a grid file (.asc or .tif) in the local cache, written the first time the values are read
+ * and memory-mapped afterwards, so that the values can be read without decoding the file nor keeping them in the heap.
+ *
+ * The cells are stored by square tiles of TILE x TILE cells (the tiles on the borders being padded), each tile
+ * containing, one after the other, the grid value of its cells and the value of each of their bands, row by row. The
+ * tiles are only mapped when one of their cells is read. The header records the size and the date of the file, so
+ * that the copy is rewritten when the file changes.
+ */
+final class GridTileCache {
+
+	static final int TILE = 256;
+	private static final long MAGIC = 0x47414D4154494C45L; // GAMATILE
+	private static final int VERSION = 1;
+	private static final int HEADER = 128;
+
+	final int numRows, numCols, nbBands;
+	/**
+	 * The envelope of the file, in its own coordinates (the ones expected by valueOf())
+	 */
+	private final double minX, minY, maxX, maxY;
+	/**
+	 * Whether the value of a location is the one of the first band or the grid value of the cell (which, for images,
+	 * is the average of their 3 bands)
+	 */
+	private final boolean valueIsFirstBand;
+	private final int channels, tileColumns;
+	private final long tileBytes;
+	private final RandomAccessFile file;
+	private final DoubleBuffer[] tiles;
+
+	private GridTileCache(final RandomAccessFile file, final ByteBuffer header) {
+		this.file = file;
+		numRows = header.getInt();
+		numCols = header.getInt();
+		nbBands = header.getInt();
+		minX = header.getDouble();
+		minY = header.getDouble();
+		maxX = header.getDouble();
+		maxY = header.getDouble();
+		valueIsFirstBand = header.get() != 0;
+		channels = nbBands + 1;
+		tileColumns = (numCols + TILE - 1) / TILE;
+		tileBytes = (long) TILE * TILE * channels * Double.BYTES;
+		tiles = new DoubleBuffer[tileColumns * ((numRows + TILE - 1) / TILE)];
+	}
+
+	/**
+	 * The file in which the values of this grid file are cached
+	 */
+	static File cacheOf(final File source) {
+		final File folder = new File(FileUtils.CACHE, "grids");
+		return new File(folder,
+				source.getName() + "_" + Integer.toHexString(source.getAbsolutePath().hashCode()) + ".tiles");
+	}
+
+	/**
+	 * Opens the copy of the values of this grid file, or returns null if there is none, or if it is not up to date
+	 */
+	static GridTileCache open(final File source) {
+		final File cache = cacheOf(source);
+		if (!cache.exists()) { return null; }
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(cache, "r");
+			final ByteBuffer header = ByteBuffer.allocate(HEADER);
+			file.getChannel().read(header, 0);
+			header.flip();
+			if (header.remaining() < HEADER || header.getLong() != MAGIC || header.getInt() != VERSION
+					|| header.getLong() != source.length() || header.getLong() != source.lastModified()) {
+				file.close();
+				return null;
+			}
+			final GridTileCache result = new GridTileCache(file, header);
+			if (file.length() < HEADER + result.tiles.length * result.tileBytes) {
+				file.close();
+				return null;
+			}
+			return result;
+		} catch (final IOException e) {
+			if (file != null) {
+				try {
+					file.close();
+				} catch (final IOException e1) {}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the values of this grid file in its cache. The envelope is the one of the file in its own coordinates
+	 * (minX, minY, maxX, maxY). The values are first written in a temporary file, so that an incomplete copy can never
+	 * be opened
+	 */
+	static void write(final File source, final GridValues values, final double[] envelope,
+			final boolean valueIsFirstBand) throws IOException {
+		final File cache = cacheOf(source);
+		cache.getParentFile().mkdirs();
+		final File temp = File.createTempFile(cache.getName(), ".tmp", cache.getParentFile());
+		try (RandomAccessFile file = new RandomAccessFile(temp, "rw"); FileChannel channel = file.getChannel()) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER);
+			header.putLong(MAGIC).putInt(VERSION).putLong(source.length()).putLong(source.lastModified());
+			header.putInt(values.numRows).putInt(values.numCols).putInt(values.bands.length);
+			for (final double d : envelope) {
+				header.putDouble(d);
+			}
+			header.put((byte) (valueIsFirstBand ? 1 : 0));
+			header.position(HEADER);
+			header.flip();
+			channel.write(header, 0);
+			final int channels = values.bands.length + 1;
+			final ByteBuffer tile = ByteBuffer.allocate(TILE * TILE * channels * Double.BYTES);
+			final DoubleBuffer doubles = tile.asDoubleBuffer();
+			long position = HEADER;
+			for (int row = 0; row < values.numRows; row += TILE) {
+				for (int column = 0; column < values.numCols; column += TILE) {
+					doubles.clear();
+					for (int c = 0; c < channels; c++) {
+						final double[] from = c == 0 ? values.values : values.bands[c - 1];
+						for (int y = 0; y < TILE; y++) {
+							doubles.position((c * TILE + y) * TILE);
+							if (row + y < values.numRows) {
+								doubles.put(from, (row + y) * values.numCols + column,
+										Math.min(TILE, values.numCols - column));
+							}
+						}
+					}
+					tile.clear();
+					while (tile.hasRemaining()) {
+						position += channel.write(tile, position);
+					}
+				}
+			}
+		}
+		try {
+			Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * The tile containing this cell, mapped the first time it is asked for. Concurrent calls may map it twice, which
+	 * is harmless as the buffers are only read by absolute positions
+	 */
+	private DoubleBuffer tileOf(final int row, final int column) throws IOException {
+		final int index = row / TILE * tileColumns + column / TILE;
+		DoubleBuffer tile = tiles[index];
+		if (tile == null) {
+			tile = file.getChannel().map(MapMode.READ_ONLY, HEADER + index * tileBytes, tileBytes).asDoubleBuffer();
+			tiles[index] = tile;
+		}
+		return tile;
+	}
+
+	private double valueAt(final int row, final int column, final int channel) throws IOException {
+		return tileOf(row, column).get((channel * TILE + row % TILE) * TILE + column % TILE);
+	}
+
+	/**
+	 * The value of the cell containing this location (expressed in the coordinates of the file), or null if it is
+	 * outside of the file
+	 */
+	Double valueOf(final double x, final double y) throws IOException {
+		final int column = (int) Math.floor((x - minX) / ((maxX - minX) / numCols));
+		final int row = (int) Math.floor((maxY - y) / ((maxY - minY) / numRows));
+		if (column < 0 || column >= numCols || row < 0 || row >= numRows) { return null; }
+		return valueAt(row, column, valueIsFirstBand ? 1 : 0);
+	}
+
+	/**
+	 * Copies the values of all the cells in primitive arrays
+	 */
+	GridValues readValues() throws IOException {
+		final int n = numRows * numCols;
+		final double[] values = new double[n];
+		final double[][] bands = new double[nbBands][n];
+		for (int row = 0; row < numRows; row += TILE) {
+			for (int column = 0; column < numCols; column += TILE) {
+				final DoubleBuffer tile = tileOf(row, column).duplicate();
+				for (int c = 0; c < channels; c++) {
+					final double[] target = c == 0 ? values : bands[c - 1];
+					for (int y = 0; y < TILE && row + y < numRows; y++) {
+						tile.position((c * TILE + y) * TILE);
+						tile.get(target, (row + y) * numCols + column, Math.min(TILE, numCols - column));
+					}
+				}
+			}
+		}
+		return new GridValues(numRows, numCols, values, bands);
+	}
+
+	void close() {
+		try {
+			file.close();
+		} catch (final IOException e) {}
+	}
+
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************************************
+ *
+ * msi.gaml.descriptions.AttributeLayout.java, in plugin msi.gama.core, is part of the source code of the GAMA modeling
+ * and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gaml.descriptions;
+
+import static msi.gama.common.interfaces.IKeyword.FUNCTION;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The positions (slots) at which the agents of a species keep the values of their attributes, instead of a map
+ * indexed by the names of the attributes. Only the attributes whose values are stored in the agents have a slot: the
+ * ones computed by a getter (like 'location' or 'name') or by a function do not.
+ *
+ * The layout of a species always begins with the layout of its parent, so that a slot computed in the context of a
+ * species remains valid for the agents of its sub-species.
+ */
+public class AttributeLayout {
+
+	/**
+	 * The value of the slots that have not been set yet
+	 */
+	public static final Object UNSET = new Object();
+
+	private final String[] names;
+	private final Map<String, Integer> slots = new HashMap<>();
+
+	AttributeLayout(final AttributeLayout parent, final SpeciesDescription species) {
+		final List<String> list = new ArrayList<>();
+		if (parent != null) {
+			for (final String name : parent.names) {
+				slots.put(name, list.size());
+				list.add(name);
+			}
+		}
+		for (final String name : species.getAttributeNames()) {
+			if (slots.containsKey(name)) {
+				continue;
+			}
+			final VariableDescription var = species.getAttribute(name);
+			if (var != null && var.getGetter() == null && !var.hasFacet(FUNCTION)) {
+				slots.put(name, list.size());
+				list.add(name);
+			}
+		}
+		names = list.toArray(new String[list.size()]);
+	}
+
+	/**
+	 * Returns the slot of this attribute, or -1 if its value is not stored in a slot
+	 */
+	public int slotOf(final String name) {
+		final Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	public String nameOf(final int slot) {
+		return names[slot];
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Returns a new array of slots, none of them being set
+	 */
+	public Object[] newSlots() {
+		final Object[] slots = new Object[names.length];
+		Arrays.fill(slots, UNSET);
+		return slots;
+	}
+
+}
@@ -66,6 +66,11 @@ public class OperatorProto extends AbstractProto implements IVarDescriptionUser
 			"and", "at", "is", "group_by", "index_of", "last_index_of", "index_by", "count", "sort", "::", "as_map"));
 
 	public final boolean isVarOrField, canBeConst, iterator;
+	/**
+	 * Whether this operator returns the neighbors of an agent, and whether it can visit the neighbors returned by
+	 * such an operator without building their list (see Spatial.Queries.forEachNeighbor())
+	 */
+	public final boolean neighborsQuery, neighborsVisitor;
 	public final IValidator semanticValidator;
 	public final IType returnType;
 	public final GamaGetter helper;
@@ -120,6 +125,8 @@ public class OperatorProto extends AbstractProto implements IVarDescriptionUser
 			final int contentTypeContentTypeProvider, final int[] expectedContentType, final String plugin) {
 		super(name, method, plugin);
 		iterator = IExpressionCompiler.ITERATORS.contains(name);
+		neighborsQuery = IExpressionCompiler.NEIGHBORS_QUERIES.contains(name);
+		neighborsVisitor = IExpressionCompiler.NEIGHBORS_VISITORS.contains(name);
 
 		if (name.equals(IKeyword.AS)) {
 			AS = this;
@@ -0,0 +1,368 @@
+/*******************************************************************************************************
+ *
+ * msi.gaml.descriptions.SpeciesDependencyGraph.java, in plugin msi.gama.core, is part of the source code of the GAMA
+ * modeling and simulation platform (v. 1.8.1)
+ *
+ * (c) 2007-2020 UMI 209 UMMISCO IRD/SU & Partners
+ *
+ * Visit https://github.com/gama-platform/gama for license information and contacts.
+ *
+ ********************************************************************************************************/
+package msi.gaml.descriptions;
+
+import static msi.gama.common.interfaces.IKeyword.ADD;
+import static msi.gama.common.interfaces.IKeyword.ASK;
+import static msi.gama.common.interfaces.IKeyword.CAPTURE;
+import static msi.gama.common.interfaces.IKeyword.CREATE;
+import static msi.gama.common.interfaces.IKeyword.DO;
+import static msi.gama.common.interfaces.IKeyword.LOCATION;
+import static msi.gama.common.interfaces.IKeyword.MIGRATE;
+import static msi.gama.common.interfaces.IKeyword.MIRRORS;
+import static msi.gama.common.interfaces.IKeyword.NAME;
+import static msi.gama.common.interfaces.IKeyword.PUT;
+import static msi.gama.common.interfaces.IKeyword.RELEASE;
+import static msi.gama.common.interfaces.IKeyword.REMOVE;
+import static msi.gama.common.interfaces.IKeyword.SET;
+import static msi.gama.common.interfaces.IKeyword.SHAPE;
+import static msi.gama.common.interfaces.IKeyword.SPECIES;
+import static msi.gama.common.interfaces.IKeyword.TO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import msi.gama.common.interfaces.IKeyword;
+import msi.gama.util.Collector;
+import msi.gama.util.ICollector;
+import msi.gaml.expressions.AgentVariableExpression;
+import msi.gaml.expressions.GlobalVariableExpression;
+import msi.gaml.expressions.IExpression;
+import msi.gaml.expressions.IVarExpression;
+import msi.gaml.expressions.PrimitiveOperator;
+import msi.gaml.expressions.SelfExpression;
+import msi.gaml.types.IType;
+
+/**
+ * A conservative analysis of what the micro-species of a species read and write when their agents are stepped, used to
+ * determine which of them can be stepped concurrently (see the 'parallel_species' facet of species). Two species
+ * conflict if one of them writes an attribute the other reads or writes, changes a population (creation, death,
+ * movement) the other reads or changes, or does something the analysis cannot follow (asking other agents, capturing
+ * or releasing agents, mirroring a species or having micro-species).
+ *
+ * The analysis is made on the descriptions, once, when the model is compiled. At runtime, the populations are then
+ * stepped by levels (see {@link #levelsOf(String[])}): the species of one level do not conflict with each other and
+ * are stepped in parallel, and a species always comes after the species that precede it in the scheduling order and
+ * with which it conflicts.
+ */
+public class SpeciesDependencyGraph {
+
+	/**
+	 * What a species reads and writes when its agents are stepped. Attributes are represented as "species.attribute"
+	 */
+	static class Accesses {
+		final String species;
+		final Set<String> reads = new HashSet<>();
+		final Set<String> writes = new HashSet<>();
+		final Set<String> populationsRead = new HashSet<>();
+		final Set<String> populationsWritten = new HashSet<>();
+		boolean readsAllPopulations;
+		String untracked;
+
+		Accesses(final String species) {
+			this.species = species;
+		}
+
+		void untracked(final String reason) {
+			if (untracked == null) {
+				untracked = reason;
+			}
+		}
+
+		boolean reads(final String population) {
+			return readsAllPopulations || populationsRead.contains(population);
+		}
+	}
+
+	private final List<String> species = new ArrayList<>();
+	private final Map<String, Map<String, String>> conflicts = new HashMap<>();
+
+	public SpeciesDependencyGraph(final SpeciesDescription host) {
+		final ModelDescription model = host.getModelDescription();
+		final List<SpeciesDescription> micro = new ArrayList<>();
+		host.visitMicroSpecies(sd -> {
+			micro.add(sd);
+			species.add(sd.getName());
+			return true;
+		});
+		final List<SpeciesDescription> targets = new ArrayList<>(micro);
+		if (model != null) {
+			targets.add(model);
+		}
+		final List<Accesses> accesses = new ArrayList<>();
+		for (final SpeciesDescription sd : micro) {
+			accesses.add(analyze(sd, targets));
+		}
+		for (int i = 0; i < accesses.size(); i++) {
+			for (int j = i + 1; j < accesses.size(); j++) {
+				final Accesses a = accesses.get(i);
+				final Accesses b = accesses.get(j);
+				final String reason = conflict(a, b);
+				if (reason != null) {
+					conflicts.computeIfAbsent(a.species, k -> new HashMap<>()).put(b.species, reason);
+					conflicts.computeIfAbsent(b.species, k -> new HashMap<>()).put(a.species, reason);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns why the two species cannot be stepped concurrently, or null if they can. Species unknown to this graph
+	 * always conflict with the others
+	 */
+	public String getConflict(final String s1, final String s2) {
+		if (s1.equals(s2)) { return null; }
+		if (!species.contains(s1) || !species.contains(s2)) { return "one of them is not analyzed"; }
+		return conflicts.getOrDefault(s1, Collections.emptyMap()).get(s2);
+	}
+
+	/**
+	 * Computes the level at which each species can be stepped, in the order passed (which is the scheduling order).
+	 * The level of a species is one more than the highest level of the species that precede it and with which it
+	 * conflicts.
+	 */
+	public int[] levelsOf(final String[] names) {
+		final int[] levels = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			int level = 0;
+			for (int j = 0; j < i; j++) {
+				if (levels[j] >= level && getConflict(names[j], names[i]) != null) {
+					level = levels[j] + 1;
+				}
+			}
+			levels[i] = level;
+		}
+		return levels;
+	}
+
+	/**
+	 * A human-readable report of the pairs of species that have to be stepped one after the other
+	 */
+	public String getReport() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < species.size(); i++) {
+			for (int j = i + 1; j < species.size(); j++) {
+				final String reason = getConflict(species.get(i), species.get(j));
+				if (reason != null) {
+					sb.append(species.get(i)).append(" and ").append(species.get(j))
+							.append(" are stepped sequentially: ").append(reason).append(". ");
+				}
+			}
+		}
+		return sb.toString().trim();
+	}
+
+	private static String conflict(final Accesses a, final Accesses b) {
+		if (a.untracked != null) { return a.species + " " + a.untracked; }
+		if (b.untracked != null) { return b.species + " " + b.untracked; }
+		String reason = conflictingWrite(a, b);
+		if (reason != null) { return reason; }
+		reason = conflictingWrite(b, a);
+		if (reason != null) { return reason; }
+		reason = conflictingPopulation(a, b);
+		if (reason != null) { return reason; }
+		return conflictingPopulation(b, a);
+	}
+
+	private static String conflictingWrite(final Accesses writer, final Accesses other) {
+		for (final String attribute : writer.writes) {
+			if (other.writes.contains(attribute)) {
+				return "both write " + attribute;
+			} else if (other.reads.contains(attribute)) {
+				return writer.species + " writes " + attribute + ", which " + other.species + " reads";
+			}
+		}
+		return null;
+	}
+
+	private static String conflictingPopulation(final Accesses writer, final Accesses other) {
+		for (final String population : writer.populationsWritten) {
+			if (other.populationsWritten.contains(population)) {
+				return "both change the population of " + population;
+			} else if (other.reads(population)) {
+				return writer.species + " changes the population of " + population + ", which " + other.species
+						+ " reads";
+			}
+		}
+		return null;
+	}
+
+	private static Accesses analyze(final SpeciesDescription sd, final List<SpeciesDescription> targets) {
+		final Accesses result = new Accesses(sd.getName());
+		if (sd.hasFacet(MIRRORS)) {
+			result.untracked("mirrors another species");
+		}
+		if (sd.hasMicroSpecies()) {
+			result.untracked("has micro-species");
+		}
+		// Inherited attributes and behaviors are analyzed as well
+		for (SpeciesDescription current = sd; current != null && !current.isBuiltIn(); current =
+				current.getParent()) {
+			collectReads(current, targets, result);
+			final SpeciesDescription analyzed = current;
+			analyzed.visitOwnChildrenRecursively(desc -> {
+				collectWrites(sd, desc, result);
+				return true;
+			});
+			analyzed.visitFacets((name, exp) -> {
+				collectPopulationsRead(exp.getExpression(), result);
+				collectActionCalls(sd, exp.getExpression(), result);
+				return true;
+			});
+		}
+		return result;
+	}
+
+	private static void collectReads(final SpeciesDescription sd, final List<SpeciesDescription> targets,
+			final Accesses result) {
+		for (final SpeciesDescription target : targets) {
+			try (final ICollector<IVarDescriptionUser> alreadyProcessed = Collector.getSet();
+					final ICollector<VariableDescription> used = Collector.getSet()) {
+				sd.collectUsedVarsOf(target, alreadyProcessed, used);
+				for (final VariableDescription vd : used) {
+					if (vd != null) {
+						result.reads.add(target.getName() + "." + vd.getName());
+					}
+				}
+			}
+		}
+	}
+
+	private static void collectWrites(final SpeciesDescription sd, final IDescription desc, final Accesses result) {
+		desc.visitFacets((name, exp) -> {
+			collectPopulationsRead(exp.getExpression(), result);
+			collectActionCalls(sd, exp.getExpression(), result);
+			return true;
+		});
+		if (desc instanceof VariableDescription) {
+			// The attributes with an 'update' or a 'value' facet are written by the agents at each step
+			final VariableDescription var = (VariableDescription) desc;
+			if (var.isUpdatable()) {
+				collectWrite(sd.getName(), var.getName(), result);
+			}
+			return;
+		}
+		switch (desc.getKeyword()) {
+			case SET:
+				collectWrite(sd, desc.getFacetExpr(NAME), result);
+				break;
+			case ADD:
+			case REMOVE:
+			case PUT:
+				collectWrite(sd, desc.getFacetExpr(TO), result);
+				break;
+			case ASK:
+				result.untracked("asks other agents");
+				break;
+			case CAPTURE:
+			case RELEASE:
+			case MIGRATE:
+				result.untracked("changes the hierarchy of agents");
+				break;
+			case CREATE:
+				final IExpression created = desc.getFacetExpr(SPECIES);
+				final SpeciesDescription target = created == null ? null : created.getGamlType().getDenotedSpecies();
+				if (target == null) {
+					result.untracked("creates agents of an unknown species");
+				} else {
+					result.populationsWritten.add(target.getName());
+				}
+				break;
+			case DO:
+				// Primitives (like 'die' or the actions of skills) can change the agent and its place in the
+				// population
+				if (sd.getAction(desc.getLitteral(IKeyword.ACTION)) instanceof PrimitiveDescription) {
+					result.populationsWritten.add(sd.getName());
+				}
+				break;
+			default:
+		}
+	}
+
+	private static void collectWrite(final SpeciesDescription sd, final IExpression receiver, final Accesses result) {
+		if (!(receiver instanceof IVarExpression)) { return; }
+		final IVarExpression var = (IVarExpression) receiver;
+		final String owner;
+		if (var instanceof GlobalVariableExpression) {
+			owner = sd.getModelDescription().getName();
+		} else if (var instanceof AgentVariableExpression) {
+			owner = sd.getName();
+		} else if (var instanceof IVarExpression.Agent) {
+			final IExpression ownerExpr = var.getOwner();
+			if (ownerExpr instanceof SelfExpression) {
+				owner = sd.getName();
+			} else {
+				final SpeciesDescription ownerSpecies = ownerExpr.getGamlType().getSpecies();
+				if (ownerSpecies == null || ownerSpecies.isBuiltIn()) {
+					result.untracked("writes attributes of agents of unknown species");
+					return;
+				}
+				owner = ownerSpecies.getName();
+			}
+		} else {
+			// Temporary variables, each, etc.
+			return;
+		}
+		collectWrite(owner, var.getVar().getName(), result);
+	}
+
+	private static void collectWrite(final String owner, final String name, final Accesses result) {
+		result.writes.add(owner + "." + name);
+		if (LOCATION.equals(name) || SHAPE.equals(name)) {
+			result.populationsWritten.add(owner);
+		}
+	}
+
+	/**
+	 * Actions called in expressions: like the 'do' statement, a primitive can change the agent and its place in the
+	 * population, and an action called on another agent (like in 'other.action()') cannot be followed
+	 */
+	private static void collectActionCalls(final SpeciesDescription sd, final IExpression expression,
+			final Accesses result) {
+		if (expression == null) { return; }
+		expression.findAny(e -> {
+			if (e instanceof PrimitiveOperator) {
+				final PrimitiveOperator call = (PrimitiveOperator) e;
+				if (call.isCalledOnOtherAgent()) {
+					result.untracked("calls actions of other agents");
+				} else if (call.getAction() instanceof PrimitiveDescription) {
+					result.populationsWritten.add(sd.getName());
+				}
+			}
+			return false;
+		});
+	}
+
+	private static void collectPopulationsRead(final IExpression expression, final Accesses result) {
+		if (expression == null) { return; }
+		expression.findAny(e -> {
+			collectPopulationRead(e.getGamlType(), result);
+			collectPopulationRead(e.getGamlType().getContentType(), result);
+			return false;
+		});
+	}
+
+	private static void collectPopulationRead(final IType<?> type, final Accesses result) {
+		if (type == null || !type.isAgentType()) { return; }
+		final SpeciesDescription sd = type.getSpecies();
+		if (sd == null || sd.isBuiltIn()) {
+			result.readsAllPopulations = true;
+		} else {
+			result.populationsRead.add(sd.getName());
+		}
+	}
+
+}
@@ -63,6 +63,7 @@ public class SpeciesDescription extends TypeDescription {
 	protected Class javaBase;
 	protected boolean canUseMinimalAgents = true;
 	protected boolean controlFinalized;
+	private AttributeLayout attributeLayout;
 
 	public SpeciesDescription(final String keyword, final Class clazz, final SpeciesDescription macroDesc,
 			final SpeciesDescription parent, final Iterable<? extends IDescription> cp, final EObject source,
@@ -111,6 +112,7 @@ public class SpeciesDescription extends TypeDescription {
 			control = null;
 		}
 		microSpecies = null;
+		attributeLayout = null;
 
 	}
 
@@ -437,6 +439,19 @@ public class SpeciesDescription extends TypeDescription {
 		return (SpeciesDescription) super.getParent();
 	}
 
+	/**
+	 * Returns the slots in which the agents of this species store the values of their attributes. Computed once, when
+	 * the species is built
+	 */
+	public AttributeLayout getAttributeLayout() {
+		if (attributeLayout == null) {
+			final SpeciesDescription parent = getParent();
+			attributeLayout =
+					new AttributeLayout(parent == null || parent == this ? null : parent.getAttributeLayout(), this);
+		}
+		return attributeLayout;
+	}
+
 	@Override
 	public void inheritFromParent() {
 		final SpeciesDescription parent = getParent();
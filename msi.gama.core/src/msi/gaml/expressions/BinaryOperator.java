@@ -10,6 +10,8 @@
  ********************************************************************************************************/
 package msi.gaml.expressions;
 
+import java.util.function.Predicate;
+
 import msi.gama.common.interfaces.IKeyword;
 import msi.gama.common.preferences.GamaPreferences;
 import msi.gama.metamodel.agent.IAgent;
@@ -20,6 +22,8 @@ import msi.gaml.compilation.GamaGetter;
 import msi.gaml.descriptions.IDescription;
 import msi.gaml.descriptions.OperatorProto;
 import msi.gaml.operators.Cast;
+import msi.gaml.operators.Spatial;
+import msi.gaml.types.IType;
 
 /**
  * The Class BinaryOperator.
@@ -28,6 +32,10 @@ public class BinaryOperator extends AbstractNAryOperator {
 
 	public static IExpression create(final OperatorProto proto, final IDescription context,
 			final IExpression... child) {
+		if (proto.iterator && proto.neighborsVisitor
+				&& NeighborsIterator.accepts(proto.getName(), child[0], child[1])) {
+			return new NeighborsIterator(proto, context, child);
+		}
 		final BinaryOperator u = new BinaryOperator(proto, context, child);
 		if (u.isConst() && GamaPreferences.External.CONSTANT_OPTIMIZATION.getValue()) {
 			return GAML.getExpressionFactory().createConst(u.getConstValue(), u.getGamlType(), u.serialize(false));
@@ -147,4 +155,80 @@ public class BinaryOperator extends AbstractNAryOperator {
 		}
 	}
 
+	/**
+	 * The iterators (count, sum_of, one_matches, none_matches) applied to the neighbors of an agent (like in 'agents
+	 * at_distance d count (each.energy > 10)'): the neighbors are visited directly in the spatial index rather than
+	 * gathered in a list first (see Spatial.Queries.forEachNeighbor()), when the neighbors optimization preference is
+	 * on. The neighbors are not visited in a random order: float sums can differ in their last digits from the ones of
+	 * non-optimized runs.
+	 */
+	public static class NeighborsIterator extends BinaryOperator {
+
+		static boolean accepts(final String name, final IExpression neighbors, final IExpression filter) {
+			if (!Spatial.Queries.canVisit(neighbors)) { return false; }
+			if (!"sum_of".equals(name)) { return true; }
+			final int type = filter.getGamlType().id();
+			return type == IType.INT || type == IType.FLOAT;
+		}
+
+		public NeighborsIterator(final OperatorProto proto, final IDescription context, final IExpression... args) {
+			super(proto, context, args);
+		}
+
+		@Override
+		public Object _value(final IScope scope) throws GamaRuntimeException {
+			final IExpression filter = exprs[1];
+			final Object result;
+			switch (getName()) {
+				case "count": {
+					final int[] count = { 0 };
+					result = visit(scope, a -> {
+						if (Cast.asBool(scope, filter.value(scope))) {
+							count[0]++;
+						}
+						return true;
+					}) ? count[0] : null;
+					break;
+				}
+				case "sum_of":
+					if (filter.getGamlType().id() == IType.INT) {
+						final int[] sum = { 0 };
+						result = visit(scope, a -> {
+							sum[0] += Cast.asInt(scope, filter.value(scope));
+							return true;
+						}) ? sum[0] : null;
+					} else {
+						final double[] sum = { 0d };
+						result = visit(scope, a -> {
+							sum[0] += Cast.asFloat(scope, filter.value(scope));
+							return true;
+						}) ? sum[0] : null;
+					}
+					break;
+				default: {
+					// one_matches and none_matches stop at the first agent that verifies the filter
+					final boolean[] found = { false };
+					final boolean visited = visit(scope, a -> {
+						found[0] = Cast.asBool(scope, filter.value(scope));
+						return !found[0];
+					});
+					result = !visited ? null : getName().startsWith("one") ? found[0] : !found[0];
+				}
+			}
+			return result == null ? super._value(scope) : result;
+		}
+
+		private boolean visit(final IScope scope, final Predicate<IAgent> visitor) {
+			return Spatial.Queries.forEachNeighbor(scope, exprs[0], a -> {
+				scope.setEach(a);
+				return visitor.test(a);
+			});
+		}
+
+		@Override
+		public NeighborsIterator copy() {
+			return new NeighborsIterator(prototype, null, exprs);
+		}
+	}
+
 }
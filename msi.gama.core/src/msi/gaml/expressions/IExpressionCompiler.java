@@ -16,6 +16,8 @@ import java.util.Set;
 
 import org.eclipse.emf.ecore.EObject;
 
+import com.google.common.collect.ImmutableSet;
+
 import msi.gama.common.interfaces.IDisposable;
 import msi.gama.runtime.IExecutionContext;
 import msi.gama.util.GamaMapFactory;
@@ -37,6 +39,13 @@ public interface IExpressionCompiler<T> extends IDisposable {
 
 	IMap<String, IMap<Signature, OperatorProto>> OPERATORS = GamaMapFactory.createUnordered();
 	Set<String> ITERATORS = new HashSet<>();
+	/**
+	 * The operators returning the neighbors of an agent, and the ones that can visit these neighbors in the spatial
+	 * index rather than building their list (see OperatorProto.neighborsQuery and OperatorProto.neighborsVisitor)
+	 */
+	Set<String> NEIGHBORS_QUERIES = ImmutableSet.of("at_distance", "neighbors_at", "agents_at_distance");
+	Set<String> NEIGHBORS_VISITORS = ImmutableSet.of("count", "sum_of", "one_matches", "one_verifies", "none_matches",
+			"none_verifies", "one_of");
 
 	IExpression compile(final IExpressionDescription s, final IDescription parsingContext);
 
@@ -10,6 +10,8 @@
  ********************************************************************************************************/
 package msi.gaml.expressions;
 
+import java.util.function.Predicate;
+
 import msi.gama.metamodel.agent.IAgent;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
@@ -63,6 +65,30 @@ public class PrimitiveOperator implements IExpression, IOperator {
 		return action.getName();
 	}
 
+	public StatementDescription getAction() {
+		return action;
+	}
+
+	/**
+	 * Whether the action is called on another agent than the caller (like in 'other.action()')
+	 */
+	public boolean isCalledOnOtherAgent() {
+		return target != null && targetSpecies == null && !(target instanceof SelfExpression);
+	}
+
+	@Override
+	public boolean findAny(final Predicate<IExpression> predicate) {
+		if (predicate.test(this)) { return true; }
+		if (target != null && target.findAny(predicate)) { return true; }
+		if (parameters != null) {
+			return !parameters.forEachFacet((name, exp) -> {
+				final IExpression expression = exp.getExpression();
+				return expression == null || !expression.findAny(predicate);
+			});
+		}
+		return false;
+	}
+
 	@Override
 	public Object value(final IScope scope) throws GamaRuntimeException {
 		if (scope == null) { return null; }
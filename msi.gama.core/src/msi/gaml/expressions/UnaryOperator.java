@@ -22,8 +22,10 @@ import static msi.gama.precompiler.ITypeProvider.WRAPPED;
 import java.util.function.Predicate;
 
 import msi.gama.common.preferences.GamaPreferences;
+import msi.gama.metamodel.agent.IAgent;
 import msi.gama.runtime.IScope;
 import msi.gama.runtime.exceptions.GamaRuntimeException;
+import msi.gama.util.Collector;
 import msi.gama.util.ICollector;
 import msi.gaml.compilation.GAML;
 import msi.gaml.compilation.GamaGetter;
@@ -32,6 +34,7 @@ import msi.gaml.descriptions.IVarDescriptionUser;
 import msi.gaml.descriptions.OperatorProto;
 import msi.gaml.descriptions.SpeciesDescription;
 import msi.gaml.descriptions.VariableDescription;
+import msi.gaml.operators.Spatial;
 import msi.gaml.types.GamaType;
 import msi.gaml.types.IContainerType;
 import msi.gaml.types.IType;
@@ -47,6 +50,9 @@ public class UnaryOperator extends AbstractExpression implements IOperator {
 	final OperatorProto prototype;
 
 	public static IExpression create(final OperatorProto proto, final IDescription context, final IExpression child) {
+		if (proto.neighborsVisitor && Spatial.Queries.canVisit(child)) {
+			return new OneOfNeighbors(proto, context, child);
+		}
 		final UnaryOperator u = new UnaryOperator(proto, context, child);
 		if (u.isConst() && GamaPreferences.External.CONSTANT_OPTIMIZATION.getValue()) {
 			final IExpression e =
@@ -255,4 +261,32 @@ public class UnaryOperator extends AbstractExpression implements IOperator {
 		return child != null && child.findAny(predicate);
 	}
 
+	/**
+	 * 'one_of' applied to the neighbors of an agent (like in 'one_of(agents at_distance d)'): the neighbors are visited
+	 * once, directly in the spatial index (see Spatial.Queries.forEachNeighbor()), and gathered in a reused list in
+	 * which one of them is chosen. Visiting them twice could choose among neighbors that moved in the meantime. Only
+	 * used when the neighbors optimization preference is on: the neighbors are not shuffled like the ones returned by
+	 * the query, so the agent chosen differs from the one of a non-optimized run with the same seed
+	 */
+	public static class OneOfNeighbors extends UnaryOperator {
+
+		public OneOfNeighbors(final OperatorProto proto, final IDescription context, final IExpression... child) {
+			super(proto, context, child);
+		}
+
+		@Override
+		public Object _value(final IScope scope) throws GamaRuntimeException {
+			try (final Collector.AsList<IAgent> neighbors = Collector.getList()) {
+				if (!Spatial.Queries.forEachNeighbor(scope, child, neighbors::add)) { return super._value(scope); }
+				if (neighbors.size() == 0) { return null; }
+				return neighbors.items().get(scope.getRandom().between(0, neighbors.size() - 1));
+			}
+		}
+
+		@Override
+		public IOperator resolveAgainst(final IScope scope) {
+			return new OneOfNeighbors(prototype, null, child.resolveAgainst(scope));
+		}
+	}
+
 }
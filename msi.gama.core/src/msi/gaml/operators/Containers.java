@@ -36,6 +36,8 @@ import com.google.common.collect.Lists;
 import msi.gama.common.interfaces.IGamlIssue;
 import msi.gama.common.interfaces.IKeyword;
 import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.population.ColumnarStorage;
+import msi.gama.metamodel.population.IPopulation;
 import msi.gama.metamodel.population.IPopulationSet;
 import msi.gama.metamodel.population.MetaPopulation;
 import msi.gama.metamodel.shape.GamaPoint;
@@ -148,6 +150,53 @@ public class Containers {
 		return notNull(scope, c).stream(scope);
 	}
 
+	/**
+	 * Returns the population of this container (a population or a species) if it keeps the attributes of its agents in
+	 * columns (see the 'columnar' facet of species), null otherwise
+	 */
+	private static IPopulation<? extends IAgent> columnarPopulationOf(final IScope scope, final IContainer c) {
+		final IPopulation<? extends IAgent> pop = c instanceof IPopulation ? (IPopulation<? extends IAgent>) c
+				: c instanceof ISpecies ? ((ISpecies) c).getPopulation(scope) : null;
+		return pop == null || pop.getColumns() == null ? null : pop;
+	}
+
+	/**
+	 * Computes 'where' directly on the columns of a population when the filter is like 'each.attribute' (bool
+	 * attributes) or 'each.attribute op constant' (int and float attributes, op being a comparison). Returns null
+	 * otherwise
+	 */
+	private static IList whereInColumns(final IScope scope, final IContainer c, final IExpression filter) {
+		final IPopulation<? extends IAgent> pop = columnarPopulationOf(scope, c);
+		if (pop == null || !(filter instanceof BinaryOperator)) { return null; }
+		final ColumnarStorage columns = pop.getColumns();
+		final IList result = GamaListFactory.create(c.getGamlType().getContentType());
+		int slot = columns.columnReadBy(filter);
+		if (slot >= 0) {
+			if (columns.isNumeric(slot)) { return null; }
+			for (final IAgent agent : pop.iterable(scope)) {
+				if (columns.isTrue(slot, agent.getIndex())) {
+					result.add(agent);
+				}
+			}
+			return result;
+		}
+		final BinaryOperator op = (BinaryOperator) filter;
+		final int comparison = ColumnarStorage.comparisonOf(op.getName());
+		if (comparison < 0) { return null; }
+		slot = columns.columnReadBy(op.arg(0));
+		final IExpression operand = op.arg(1);
+		if (slot < 0 || !columns.isNumeric(slot) || !operand.isConst()) { return null; }
+		final Object value = operand.getConstValue();
+		if (!(value instanceof Number)) { return null; }
+		final double number = ((Number) value).doubleValue();
+		for (final IAgent agent : pop.iterable(scope)) {
+			if (columns.matches(slot, agent.getIndex(), number, comparison)) {
+				result.add(agent);
+			}
+		}
+		return result;
+	}
+
 	public static GamaListSupplier listOf(final IType t) {
 		return new GamaListSupplier(t);
 	}
@@ -1326,6 +1375,13 @@ public class Containers {
 			see = { "min_of", "max_of", "product_of", "mean_of" })
 	@test ("[1,2] sum_of (each * 100 ) = 300")
 	public static Object sum_of(final IScope scope, final IContainer container, final IExpression filter) {
+		final IPopulation<? extends IAgent> pop = columnarPopulationOf(scope, container);
+		if (pop != null) {
+			final int slot = pop.getColumns().columnReadBy(filter);
+			if (slot >= 0 && pop.getColumns().isNumeric(slot)) {
+				return pop.getColumns().sum(pop.iterable(scope), slot);
+			}
+		}
 		Stream s = stream(scope, container);
 		IType t;
 		if (filter != null) {
@@ -1424,6 +1480,16 @@ public class Containers {
 	@test ("[1,2] mean_of (each * 10 ) = 15")
 	@test ("[1,2] mean_of (each * 10 ) = 15")
 	public static Object mean_of(final IScope scope, final IContainer container, final IExpression filter) {
+		final IPopulation<? extends IAgent> pop = columnarPopulationOf(scope, container);
+		if (pop != null) {
+			final int slot = pop.getColumns().columnReadBy(filter);
+			if (slot >= 0 && pop.getColumns().isNumeric(slot)) {
+				final Iterable<? extends IAgent> agents = pop.iterable(scope);
+				final Object sum = pop.getColumns().sum(agents, slot);
+				final int size = Iterables.size(agents);
+				return ((Number) sum).doubleValue() / (size == 0 ? 1 : size);
+			}
+		}
 		return mean(scope, collect(scope, container, filter));
 	}
 
@@ -1622,6 +1688,8 @@ public class Containers {
 			see = { "first_with", "last_with" })
 	@test ("[1,2,3,4,5,6,7,8] where (each > 3) = [4, 5, 6, 7, 8] ")
 	public static IList where(final IScope scope, final IContainer c, final IExpression filter) {
+		final IList columnar = whereInColumns(scope, c, filter);
+		if (columnar != null) { return columnar; }
 		return (IList) stream(scope, c).filter(by(scope, filter)).toCollection(listLike(c));
 	}
 
@@ -1644,6 +1712,8 @@ public class Containers {
 	 * @return
 	 */
 	public static IList where(final IScope scope, final IList c, final IExpression filter) {
+		final IList columnar = whereInColumns(scope, c, filter);
+		if (columnar != null) { return columnar; }
 		return where(scope, c.iterable(scope), c.getGamlType().getContentType(), filter);
 	}
 
@@ -1677,6 +1747,8 @@ public class Containers {
 	 * @return
 	 */
 	public static IList where(final IScope scope, final ISpecies c, final IExpression filter) {
+		final IList columnar = whereInColumns(scope, c, filter);
+		if (columnar != null) { return columnar; }
 		return where(scope, c.iterable(scope), c.getGamlType().getContentType(), filter);
 	}
 
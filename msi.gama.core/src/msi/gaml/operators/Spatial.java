@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.geotools.geometry.jts.JTS;
@@ -72,6 +73,7 @@ import msi.gama.metamodel.shape.GamaShape;
 import msi.gama.metamodel.shape.ILocation;
 import msi.gama.metamodel.shape.IShape;
 import msi.gama.metamodel.topology.ITopology;
+import msi.gama.metamodel.topology.SpatialJoin;
 import msi.gama.metamodel.topology.filter.Different;
 import msi.gama.metamodel.topology.filter.IAgentFilter;
 import msi.gama.metamodel.topology.filter.In;
@@ -108,6 +110,7 @@ import msi.gama.util.path.IPath;
 import msi.gama.util.path.PathFactory;
 import msi.gaml.compilation.annotations.depends_on;
 import msi.gaml.expressions.IExpression;
+import msi.gaml.expressions.IOperator;
 import msi.gaml.statements.draw.FieldDrawingAttributes;
 import msi.gaml.types.GamaGeometryType;
 import msi.gaml.types.GamaType;
@@ -3168,7 +3171,7 @@ public abstract class Spatial {
 					if (!ls.isEmpty()) {
 						final ILocation pto = l.getPoints().firstValue(scope);
 						final ILocation ptd = l.getPoints().lastValue(scope);
-						final PreparedGeometry pg = PreparedGeometryFactory.prepare(gg.getInnerGeometry());
+						final PreparedGeometry pg = gg.getPreparedGeometry();
 						for (final IShape l2 : ls) {
 							if (pg.covers(l2.getInnerGeometry()) || pg.coveredBy(l2.getInnerGeometry())) {
 								continue;
@@ -3697,6 +3700,103 @@ public abstract class Spatial {
 			}
 		}
 
+		@operator (
+				value = "flow_field",
+				index_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 1,
+				content_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 1,
+				category = { IOperatorCategory.GRID, IOperatorCategory.PATH },
+				concept = { IConcept.GRID })
+		@doc (
+				value = "A map associating each of the cells of the first operand from which one of the targets (cells, or geometries designating the cells at their location) can be reached with the next cell to move to along the shortest path to the closest target (the targets being associated with themselves). The map is computed at once for all the cells, and is kept and returned again as long as the same cells and targets are passed, so that the agents going to the same targets can read their next cell in it instead of computing their own path. It cannot be modified ('copy' returns a modifiable map)",
+				masterDoc = true,
+				examples = { @example (
+						value = "flow_field(cell_grid where each.is_free, exit)",
+						equals = "A map associating each free cell with the next cell to move to to reach the closest exit",
+						isExecutable = false) },
+				see = { "distance_field", "path_between" })
+		@no_test // the result depends on the grid of the model
+		public static IMap<IAgent, IAgent> flow_field(final IScope scope, final IList<IAgent> cells,
+				final IContainer<?, IShape> targets) throws GamaRuntimeException {
+			if (cells == null || cells.isEmpty() || targets == null) {
+				return GamaMapFactory.create(Types.AGENT, Types.AGENT);
+			}
+			return _gridTopologyOf(scope, cells.get(0)).flowFieldTo(scope, targets, cells).getNextCells();
+		}
+
+		@operator (
+				value = "flow_field",
+				index_type = ITypeProvider.KEY_TYPE_AT_INDEX + 1,
+				content_type = ITypeProvider.KEY_TYPE_AT_INDEX + 1,
+				category = { IOperatorCategory.GRID, IOperatorCategory.PATH },
+				concept = { IConcept.GRID })
+		@doc (
+				value = "A map associating each of the cells of the first operand from which one of the targets (cells, or geometries designating the cells at their location) can be reached with the next cell to move to along the path of minimal cost to the closest target, the cost of entering a cell being its weight. The map is kept and returned again as long as the same cells, weights and targets are passed. It cannot be modified ('copy' returns a modifiable map)",
+				examples = { @example (
+						value = "flow_field(cell_grid as_map (each::each.is_obstacle ? 9999.0 : 1.0), exit)",
+						equals = "A map associating each cell with the next cell to move to to reach the closest exit with a minimal cost",
+						isExecutable = false) },
+				see = { "distance_field", "path_between" })
+		@no_test // the result depends on the grid of the model
+		public static IMap<IAgent, IAgent> flow_field(final IScope scope, final IMap<IAgent, Object> cells,
+				final IContainer<?, IShape> targets) throws GamaRuntimeException {
+			if (cells == null || cells.isEmpty() || targets == null) {
+				return GamaMapFactory.create(Types.AGENT, Types.AGENT);
+			}
+			return _gridTopologyOf(scope, cells.getKeys().get(0)).flowFieldTo(scope, targets, cells).getNextCells();
+		}
+
+		@operator (
+				value = "distance_field",
+				index_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 1,
+				content_type = IType.FLOAT,
+				category = { IOperatorCategory.GRID, IOperatorCategory.PATH },
+				concept = { IConcept.GRID })
+		@doc (
+				value = "A map associating each of the cells of the first operand from which one of the targets (cells, or geometries designating the cells at their location) can be reached with the length of the shortest path to the closest target. It is computed along with (and kept like) the flow field of these cells and targets. It cannot be modified ('copy' returns a modifiable map)",
+				masterDoc = true,
+				examples = { @example (
+						value = "distance_field(cell_grid where each.is_free, exit)",
+						equals = "A map associating each free cell with its distance to the closest exit",
+						isExecutable = false) },
+				see = { "flow_field", "path_between" })
+		@no_test // the result depends on the grid of the model
+		public static IMap<IAgent, Double> distance_field(final IScope scope, final IList<IAgent> cells,
+				final IContainer<?, IShape> targets) throws GamaRuntimeException {
+			if (cells == null || cells.isEmpty() || targets == null) {
+				return GamaMapFactory.create(Types.AGENT, Types.FLOAT);
+			}
+			return _gridTopologyOf(scope, cells.get(0)).flowFieldTo(scope, targets, cells).getDistances();
+		}
+
+		@operator (
+				value = "distance_field",
+				index_type = ITypeProvider.KEY_TYPE_AT_INDEX + 1,
+				content_type = IType.FLOAT,
+				category = { IOperatorCategory.GRID, IOperatorCategory.PATH },
+				concept = { IConcept.GRID })
+		@doc (
+				value = "A map associating each of the cells of the first operand from which one of the targets (cells, or geometries designating the cells at their location) can be reached with the minimal cost of a path to the closest target, the cost of entering a cell being its weight. It is computed along with (and kept like) the flow field of these cells, weights and targets. It cannot be modified ('copy' returns a modifiable map)",
+				examples = { @example (
+						value = "distance_field(cell_grid as_map (each::each.is_obstacle ? 9999.0 : 1.0), exit)",
+						equals = "A map associating each cell with the minimal cost of a path to the closest exit",
+						isExecutable = false) },
+				see = { "flow_field", "path_between" })
+		@no_test // the result depends on the grid of the model
+		public static IMap<IAgent, Double> distance_field(final IScope scope, final IMap<IAgent, Object> cells,
+				final IContainer<?, IShape> targets) throws GamaRuntimeException {
+			if (cells == null || cells.isEmpty() || targets == null) {
+				return GamaMapFactory.create(Types.AGENT, Types.FLOAT);
+			}
+			return _gridTopologyOf(scope, cells.getKeys().get(0)).flowFieldTo(scope, targets, cells).getDistances();
+		}
+
+		private static GridTopology _gridTopologyOf(final IScope scope, final IAgent cell) {
+			final ITopology topo = cell.getTopology();
+			if (topo instanceof GridTopology) { return (GridTopology) topo; }
+			throw GamaRuntimeException.error("Flow and distance fields can only be computed on the cells of a grid",
+					scope);
+		}
+
 		@operator (
 				value = "distance_to",
 				category = { IOperatorCategory.SPATIAL, IOperatorCategory.SP_RELATIONS },
@@ -4683,6 +4783,177 @@ public abstract class Spatial {
 			return _neighbors(scope, Different.with(), scope.getAgent(), distance);
 		}
 
+		@operator (
+				value = "spatial_join",
+				index_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 1,
+				content_type = IType.LIST,
+				content_type_content_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 2,
+				category = { IOperatorCategory.SPATIAL, IOperatorCategory.SP_QUERIES },
+				concept = { IConcept.GEOMETRY, IConcept.SPATIAL_COMPUTATION, IConcept.SPATIAL_RELATION,
+						IConcept.AGENT_LOCATION })
+		@doc (
+				value = "A map associating each agent or geometry of the first operand with the list of the agents or geometries of the second operand located at a distance <= the third operand from it (itself excepted). The lists contain the same elements as 'second_operand at_distance distance' computed by each element of the first operand, in the order of the second operand, but they are all computed in one pass (and in parallel for large operands).",
+				comment = "the distance is euclidean, except when the second operand contains agents and the topology of the caller agent is a torus, a grid or a graph: the elements of the first operand are then queried one by one in this topology.",
+				examples = { @example (
+						value = "spatial_join(building, road, 10.0)",
+						equals = "a map associating each building with the list of the roads located at a distance <= 10 from it",
+						isExecutable = false) },
+				see = { "nearest_join", "at_distance", "neighbors_at" })
+		@no_test // the results depend on the agents of the model
+		public static IMap<IShape, IList<IShape>> spatial_join(final IScope scope,
+				final IContainer<?, ? extends IShape> left, final IContainer<?, ? extends IShape> right,
+				final Double distance) {
+			final IType rightType = right == null ? Types.GEOMETRY : right.getGamlType().getContentType();
+			final IMap<IShape, IList<IShape>> result = GamaMapFactory.create(
+					left == null ? Types.GEOMETRY : left.getGamlType().getContentType(), Types.LIST.of(rightType));
+			if (left == null || right == null) { return result; }
+			final double d = distance == null ? 0d : distance;
+			final IShape[] sources = _shapesOf(scope, left);
+			if (_isJoinedInTopology(scope, rightType)) {
+				final IAgentFilter filter = In.list(scope, right);
+				for (final IShape source : sources) {
+					result.put(source, (IList) _neighbors(scope, filter, source, d));
+				}
+				return result;
+			}
+			final IShape[][] found = SpatialJoin.withinDistance(sources, _shapesOf(scope, right), d);
+			for (int i = 0; i < sources.length; i++) {
+				result.put(sources[i], GamaListFactory.wrap(rightType, found[i]));
+			}
+			return result;
+		}
+
+		@operator (
+				value = "nearest_join",
+				index_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 1,
+				content_type = ITypeProvider.CONTENT_TYPE_AT_INDEX + 2,
+				category = { IOperatorCategory.SPATIAL, IOperatorCategory.SP_QUERIES },
+				concept = { IConcept.GEOMETRY, IConcept.SPATIAL_COMPUTATION, IConcept.SPATIAL_RELATION,
+						IConcept.AGENT_LOCATION })
+		@doc (
+				value = "A map associating each agent or geometry of the first operand with the agent or geometry of the second operand that is the closest to it (itself excepted), or nil if there is none. The result is the same as computing 'second_operand closest_to each' for each element of the first operand, except that the ties are broken by the order of the second operand, but it is computed in one pass (and in parallel for large operands).",
+				comment = "the distance is euclidean, except when the second operand contains agents and the topology of the caller agent is a torus, a grid or a graph: the elements of the first operand are then queried one by one in this topology.",
+				examples = { @example (
+						value = "nearest_join(people, cell)",
+						equals = "a map associating each people agent with the cell the closest to it",
+						isExecutable = false) },
+				see = { "spatial_join", "closest_to", "agent_closest_to" })
+		@no_test // the results depend on the agents of the model
+		public static IMap<IShape, IShape> nearest_join(final IScope scope, final IContainer<?, ? extends IShape> left,
+				final IContainer<?, ? extends IShape> right) {
+			final IType rightType = right == null ? Types.GEOMETRY : right.getGamlType().getContentType();
+			final IMap<IShape, IShape> result = GamaMapFactory
+					.create(left == null ? Types.GEOMETRY : left.getGamlType().getContentType(), rightType);
+			if (left == null || right == null) { return result; }
+			final IShape[] sources = _shapesOf(scope, left);
+			if (_isJoinedInTopology(scope, rightType)) {
+				final IAgentFilter filter = In.list(scope, right);
+				for (final IShape source : sources) {
+					result.put(source, _closest(scope, filter, source));
+				}
+				return result;
+			}
+			final IShape[] found = SpatialJoin.nearest(sources, _shapesOf(scope, right));
+			for (int i = 0; i < sources.length; i++) {
+				result.put(sources[i], found[i]);
+			}
+			return result;
+		}
+
+		/**
+		 * Whether the joins with the agents of this type have to be computed by querying the topology of the caller
+		 * agent once for each element of the first operand, its distances not being euclidean
+		 */
+		private static boolean _isJoinedInTopology(final IScope scope, final IType rightType) {
+			final ITopology topology = scope.getTopology();
+			return rightType.isAgentType() && topology != null && (!topology.isContinuous() || topology.isTorus());
+		}
+
+		private static IShape[] _shapesOf(final IScope scope, final IContainer<?, ? extends IShape> list) {
+			final List<IShape> shapes = new ArrayList<>();
+			for (final Object o : list.iterable(scope)) {
+				if (o instanceof IShape && !(o instanceof IAgent && ((IAgent) o).dead())) {
+					shapes.add((IShape) o);
+				}
+			}
+			return shapes.toArray(new IShape[shapes.size()]);
+		}
+
+		/**
+		 * Whether the agents returned by this expression can be visited with {@link #forEachNeighbor} rather than
+		 * collected in a list, i.e. whether it is like 'agents at_distance d', 'a neighbors_at d' or
+		 * 'agents_at_distance(d)'
+		 */
+		public static boolean canVisit(final IExpression query) {
+			if (!(query instanceof IOperator)) { return false; }
+			final IOperator op = (IOperator) query;
+			if (!op.getPrototype().neighborsQuery) { return false; }
+			switch (op.getName()) {
+				case "at_distance":
+					return op.arg(1) != null && op.arg(0).getGamlType().getContentType().isAgentType();
+				case "neighbors_at":
+					return op.arg(1) != null;
+				case "agents_at_distance":
+					return op.arg(1) == null;
+				default:
+					return false;
+			}
+		}
+
+		/**
+		 * Visits the agents that the query (see {@link #canVisit(IExpression)}) would return, in no particular order and
+		 * without building their list, until the visitor returns false. Returns false, before evaluating anything, if
+		 * the query has to be evaluated instead: when the neighbors optimization preference is off, or when the
+		 * topology is not a continuous, non-torus one (the other topologies return their neighbors shuffled, which the
+		 * visit would not reproduce)
+		 */
+		public static boolean forEachNeighbor(final IScope scope, final IExpression query,
+				final Predicate<IAgent> visitor) {
+			if (!GamaPreferences.External.NEIGHBORS_OPTIMIZATION.getValue()) { return false; }
+			final ITopology topology = scope.getTopology();
+			if (topology == null || !topology.isContinuous() || topology.isTorus()) { return false; }
+			final IOperator op = (IOperator) query;
+			final IAgentFilter filter;
+			final Object source;
+			final Object distance;
+			switch (op.getName()) {
+				case "at_distance":
+					final IContainer<?, ? extends IShape> list = (IContainer) op.arg(0).value(scope);
+					distance = op.arg(1).value(scope);
+					if (list == null) { return true; }
+					source = scope.getAgent();
+					if (GamaPreferences.External.AT_DISTANCE_OPTIMIZATION.getValue() && ((IAgent) source).isPoint()
+							&& (double) list.length(scope)
+									/ (double) scope.getSimulation().getMembersSize(scope) < 0.1) {
+						// Same brute force as Queries.at_distance() for short lists
+						final IAgent ag = (IAgent) source;
+						final double d = Cast.asFloat(scope, distance);
+						for (final IShape sp : list.iterable(scope)) {
+							if (sp != ag && ag.euclidianDistanceTo(sp) <= d && !visitor.test((IAgent) sp)) {
+								break;
+							}
+						}
+						return true;
+					}
+					filter = In.list(scope, list);
+					break;
+				case "neighbors_at":
+					source = op.arg(0).value(scope);
+					distance = op.arg(1).value(scope);
+					filter = source instanceof IAgent ? In.list(scope, ((IAgent) source).getPopulation())
+							: Different.with();
+					break;
+				default:
+					distance = op.arg(0).value(scope);
+					filter = Different.with();
+					source = scope.getAgent();
+			}
+			if (filter == null || source == null) { return true; }
+			topology.forEachNeighborOf(scope, Cast.asGeometry(scope, source, false), Cast.asFloat(scope, distance),
+					filter, visitor);
+			return true;
+		}
+
 		// Support methods used by the different queries
 
 		private static IList<IAgent> _gather(final IScope scope, final IAgentFilter filter, final Object source,
@@ -34,12 +34,14 @@ import msi.gaml.compilation.AbstractGamlAdditions;
 import msi.gaml.compilation.IDescriptionValidator;
 import msi.gaml.compilation.annotations.validator;
 import msi.gaml.descriptions.IDescription;
+import msi.gaml.descriptions.SpeciesDependencyGraph;
 import msi.gaml.descriptions.SpeciesDescription;
 import msi.gaml.descriptions.VariableDescription;
 import msi.gaml.expressions.IExpression;
 import msi.gaml.species.GamlSpecies.SpeciesValidator;
 import msi.gaml.types.IContainerType;
 import msi.gaml.types.IType;
+import msi.gaml.types.Types;
 import one.util.streamex.StreamEx;
 
 /**
@@ -57,9 +59,34 @@ import one.util.streamex.StreamEx;
 @facets (
 		value = { @facet (
 				name = IKeyword.PARALLEL,
-				type = { IType.BOOL, IType.INT },
+				type = { IType.BOOL, IType.INT, IType.STRING },
 				optional = true,
-				doc = @doc ("(experimental) setting this facet to 'true' will allow this species to use concurrency when scheduling its agents; setting it to an integer will set the threshold under which they will be run sequentially (the default is initially 20, but can be fixed in the preferences). This facet has a default set in the preferences (Under Performances > Concurrency)")),
+				doc = @doc ("(experimental) setting this facet to 'true' will allow this species to use concurrency when scheduling its agents; setting it to an integer will set the threshold under which they will be run sequentially (the default is initially 20, but can be fixed in the preferences); setting it to \"adaptive\" will measure the time taken by each agent to step and split them in tasks of roughly equal durations (useful when agents have very heterogeneous costs). This facet has a default set in the preferences (Under Performances > Concurrency)")),
+				@facet (
+						name = IKeyword.PARALLEL_SPECIES,
+						type = IType.BOOL,
+						optional = true,
+						doc = @doc ("(experimental) setting this facet to 'true' will allow the micro-species of this species (for instance, the species of the model when set on 'global') to be stepped concurrently when they do not read or write the same attributes or populations. The analysis is conservative: species that ask other agents, capture or release agents, mirror other species or have micro-species are always stepped sequentially. The reasons why each pair of species cannot be stepped concurrently are reported when the model is compiled. The species stepped concurrently draw their random numbers from their own streams, seeded from the seed of the simulation, the cycle and their rank: the results are therefore the same for the same seed, but differ from the ones obtained when the species are stepped sequentially")),
+				@facet (
+						name = IKeyword.SYNCHRONOUS,
+						type = IType.BOOL,
+						optional = true,
+						doc = @doc ("(experimental) setting this facet to 'true' will make the agents of this species update their attributes synchronously: the values assigned during a step are only committed once all the agents have been stepped, so that every agent reads the values of the previous step. The changes made by the actions of skills (like the moves of the 'moving' skill) are buffered as well. When several agents assign the same attribute of an agent, the value assigned by the agent with the highest index is kept (the values assigned in an 'ask' being attributed to the agent that asks), and each agent draws its random numbers from its own stream, seeded from the seed of the simulation and its index. The results are therefore the same, for the same seed, whether the species is stepped in parallel or not, as long as the agents do not modify containers in place (with 'add', 'remove' or 'put', which are not buffered) nor draw random numbers in 'ask ... parallel: true' statements")),
+				@facet (
+						name = IKeyword.COLUMNAR,
+						type = IType.BOOL,
+						optional = true,
+						doc = @doc ("(experimental) setting this facet to 'true' will make the population of this species keep the int, float and bool attributes of its agents in arrays (one per attribute) rather than in the agents themselves. This reduces the memory used by large populations and allows 'sum_of', 'mean_of' and 'where' to directly read these arrays when their argument is written like 'each.attribute' (or 'each.attribute > value' for 'where')")),
+				@facet (
+						name = IKeyword.DEFERRED_INDEXING,
+						type = IType.BOOL,
+						optional = true,
+						doc = @doc ("(experimental) setting this facet to 'true' will make the moves of the agents of this species be recorded rather than immediately applied to the spatial index. They are applied all at once, just before the next spatial query on this species (or on all the agents). The queries return the same results, but the species whose agents move a lot (or several times in a step) and are seldom queried spend much less time updating the index")),
+				@facet (
+						name = IKeyword.SPATIAL_INDEX,
+						type = { IType.STRING, IType.FLOAT },
+						optional = true,
+						doc = @doc ("(experimental) the spatial index used to answer the spatial queries (neighbors, closest agents, etc.) on the agents of this species. The default, \"quadtree\", shares the index of the model. Setting it to \"hash\" will give this species its own index, made of a uniform grid of cells (100 along the largest side of the environment), which is faster to update and to query for large populations of small agents that move often, including when they are moved in parallel. Setting it to a float will do the same, with cells of this size. The species using the moving3D skill get such an index by default, with cells also divided along z, so that, when the agents and the ones querying them are points, the agents above or below are not considered (the distances to the other geometries being computed in 2D). Setting it to \"static\" will give this species its own R-tree, packed at once from all its agents, which is faster to query for populations of polygons or lines that are created once (for instance from a shapefile) and never move nor die: it is built again each time the population is modified. Grids and graphs ignore this facet")),
 				@facet (
 						name = IKeyword.WIDTH,
 						type = IType.INT,
@@ -118,6 +145,14 @@ import one.util.streamex.StreamEx;
 						optional = true,
 						doc = { @doc (
 								value = "(grid only),(\"A*\" by default). Allows to specify the algorithm for the shortest path computation (\"BF\", \"Dijkstra\", \"A*\" or \"JPS*\"") }),
+				@facet (
+						name = "lazy",
+						type = IType.BOOL,
+						optional = true,
+						doc = { @doc (
+								value = "(grid only),(false by default). Allows to build the cells of the grid, and their agents, only when they are accessed (asked for by an operator, a path search or a neighborhood, listed or inspected). The values of the grid read from a file are kept in arrays until then, and only the agents built so far are scheduled. The path searches, the iterations over the cells and the lists of the agents (like 'list(grid)' or the displays of the agents) still build all the cells. As the initializers of the cells are only evaluated when they are first accessed, the random values they draw depend on the order of these accesses, which is not reproducible when the model runs in parallel. Hexagonal grids, grids built from several files and grids whose environment is not a rectangle are never lazy",
+								see = { "use_neighbors_cache", "use_individual_shapes" },
+								comment = "This facet allows to use very large grids (e.g. rasters of several millions of cells) of which only a few cells are actually used. As the neighbors cache holds an array for each cell, it is turned off by default in lazy grids") }),
 				@facet (
 						name = "use_neighbors_cache",
 						type = IType.BOOL,
@@ -314,6 +349,13 @@ public class GamlSpecies extends AbstractSpecies {
 				}
 			}
 
+			final IExpression parallel = desc.getFacetExpr(PARALLEL);
+			if (parallel != null && parallel.getGamlType() == Types.STRING && parallel.isConst()
+					&& !ADAPTIVE.equals(parallel.getConstValue())) {
+				sd.error("The only string accepted by 'parallel' is \"" + ADAPTIVE + "\"", IGamlIssue.WRONG_VALUE,
+						PARALLEL);
+			}
+
 			// If torus is declared on a species other than "global", emit a
 			// warning
 			final IExpression torus = desc.getFacetExpr(TORUS);
@@ -323,6 +365,45 @@ public class GamlSpecies extends AbstractSpecies {
 							IGamlIssue.WRONG_CONTEXT, TORUS);
 				}
 			}
+			final IExpression parallelSpecies = desc.getFacetExpr(PARALLEL_SPECIES);
+			if (parallelSpecies != null && !parallelSpecies.isConst()) {
+				sd.warning("'parallel_species' must be a constant to be taken into account", IGamlIssue.WRONG_VALUE,
+						PARALLEL_SPECIES);
+			} else if (parallelSpecies != null && Boolean.TRUE.equals(parallelSpecies.getConstValue())) {
+				final String report = new SpeciesDependencyGraph(sd).getReport();
+				desc.info(report.isEmpty() ? "All the micro-species of " + desc.getName() + " can be stepped concurrently"
+						: report, IGamlIssue.GENERAL, PARALLEL_SPECIES);
+			}
+
+			final IExpression synchronous = desc.getFacetExpr(SYNCHRONOUS);
+			if (synchronous != null && !synchronous.isConst()) {
+				sd.warning("'synchronous' must be a constant to be taken into account", IGamlIssue.WRONG_VALUE,
+						SYNCHRONOUS);
+			}
+			final IExpression columnar = desc.getFacetExpr(COLUMNAR);
+			if (columnar != null && !columnar.isConst()) {
+				sd.warning("'columnar' must be a constant to be taken into account", IGamlIssue.WRONG_VALUE, COLUMNAR);
+			}
+			final IExpression deferred = desc.getFacetExpr(DEFERRED_INDEXING);
+			if (deferred != null && !deferred.isConst()) {
+				sd.warning("'deferred_indexing' must be a constant to be taken into account", IGamlIssue.WRONG_VALUE,
+						DEFERRED_INDEXING);
+			}
+			final IExpression spatialIndex = desc.getFacetExpr(SPATIAL_INDEX);
+			if (spatialIndex != null) {
+				if (!spatialIndex.isConst()) {
+					sd.warning("'spatial_index' must be a constant to be taken into account", IGamlIssue.WRONG_VALUE,
+							SPATIAL_INDEX);
+				} else if (spatialIndex.getGamlType().id() == IType.STRING) {
+					final Object kind = spatialIndex.getConstValue();
+					if (!"quadtree".equals(kind) && !"hash".equals(kind) && !"static".equals(kind)) {
+						sd.warning(
+								"'spatial_index' must be either \"quadtree\", \"hash\", \"static\" or the size of the cells",
+								IGamlIssue.WRONG_VALUE, SPATIAL_INDEX);
+					}
+				}
+			}
+
 			final String name = desc.getName();
 			if (AbstractGamlAdditions.isUnaryOperator(name)) {
 				desc.error("The name '" + name + "' cannot be used for naming this " + desc.getKeyword()
@@ -336,10 +417,31 @@ public class GamlSpecies extends AbstractSpecies {
 	private final IExpression concurrency;
 	private final IExpression schedule;
 	private final IExpression frequency;
+	private final SpeciesDependencyGraph microSpeciesDependencies;
+	private final boolean synchronous;
+	private final boolean columnar;
+	private final double spatialHashCellSize;
+	private final boolean staticSpatialIndex;
+	private final boolean deferredIndexing;
 
 	public GamlSpecies(final IDescription desc) {
 		super(desc);
 		concurrency = this.getFacet(IKeyword.PARALLEL);
+		final IExpression parallelSpecies = this.getFacet(IKeyword.PARALLEL_SPECIES);
+		microSpeciesDependencies = parallelSpecies != null && parallelSpecies.isConst()
+				&& Boolean.TRUE.equals(parallelSpecies.getConstValue())
+						? new SpeciesDependencyGraph((SpeciesDescription) desc) : null;
+		final IExpression sync = this.getFacet(IKeyword.SYNCHRONOUS);
+		synchronous = sync != null && sync.isConst() && Boolean.TRUE.equals(sync.getConstValue());
+		final IExpression col = this.getFacet(IKeyword.COLUMNAR);
+		columnar = col != null && col.isConst() && Boolean.TRUE.equals(col.getConstValue());
+		final IExpression index = this.getFacet(IKeyword.SPATIAL_INDEX);
+		final Object kind = index != null && index.isConst() ? index.getConstValue() : null;
+		spatialHashCellSize = kind instanceof Number ? Math.max(0d, ((Number) kind).doubleValue())
+				: "hash".equals(kind) ? 0d : -1d;
+		staticSpatialIndex = "static".equals(kind);
+		final IExpression deferred = this.getFacet(IKeyword.DEFERRED_INDEXING);
+		deferredIndexing = deferred != null && deferred.isConst() && Boolean.TRUE.equals(deferred.getConstValue());
 		if (isMirror() && !hasFacet(IKeyword.SCHEDULES)) {
 			// See Issue #2731 -- mirror species have a default scheduling rule
 			schedule = scope -> {
@@ -382,6 +484,36 @@ public class GamlSpecies extends AbstractSpecies {
 		return concurrency;
 	}
 
+	@Override
+	public SpeciesDependencyGraph getMicroSpeciesDependencies() {
+		return microSpeciesDependencies;
+	}
+
+	@Override
+	public boolean isSynchronous() {
+		return synchronous;
+	}
+
+	@Override
+	public boolean isColumnar() {
+		return columnar;
+	}
+
+	@Override
+	public double getSpatialHashCellSize() {
+		return spatialHashCellSize;
+	}
+
+	@Override
+	public boolean hasStaticSpatialIndex() {
+		return staticSpatialIndex;
+	}
+
+	@Override
+	public boolean hasDeferredIndexing() {
+		return deferredIndexing;
+	}
+
 	/**
 	 * Method getSpecies()
 	 *
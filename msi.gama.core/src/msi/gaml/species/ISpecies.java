@@ -28,6 +28,7 @@ import msi.gama.util.IAddressableContainer;
 import msi.gama.util.IList;
 import msi.gaml.architecture.IArchitecture;
 import msi.gaml.compilation.ISymbol;
+import msi.gaml.descriptions.SpeciesDependencyGraph;
 import msi.gaml.descriptions.SpeciesDescription;
 import msi.gaml.expressions.IExpression;
 import msi.gaml.operators.Containers;
@@ -101,6 +102,54 @@ public interface ISpecies
 
 	IExpression getConcurrency();
 
+	/**
+	 * Returns the analysis of the micro-species of this species used to step some of them concurrently, or null if the
+	 * micro-populations are to be stepped one after the other (see the 'parallel_species' facet)
+	 */
+	default SpeciesDependencyGraph getMicroSpeciesDependencies() {
+		return null;
+	}
+
+	/**
+	 * Whether the writes to the attributes of the agents of this species are committed at the end of each step rather
+	 * than immediately (see the 'synchronous' facet)
+	 */
+	default boolean isSynchronous() {
+		return false;
+	}
+
+	/**
+	 * Whether the population of this species keeps the int, float and bool attributes of its agents in arrays (see the
+	 * 'columnar' facet)
+	 */
+	default boolean isColumnar() {
+		return false;
+	}
+
+	/**
+	 * The size of the cells of the spatial hash indexing the agents of this species (0 if the default size is used),
+	 * or -1 if they are indexed by the quadtree of the model (see the 'spatial_index' facet)
+	 */
+	default double getSpatialHashCellSize() {
+		return -1d;
+	}
+
+	/**
+	 * Whether the agents of this species are indexed by a packed R-tree of their own, built again each time the
+	 * population is modified (see the 'spatial_index' facet)
+	 */
+	default boolean hasStaticSpatialIndex() {
+		return false;
+	}
+
+	/**
+	 * Whether the moves of the agents of this species are applied to the spatial index just before the next query on
+	 * the species rather than immediately (see the 'deferred_indexing' facet)
+	 */
+	default boolean hasDeferredIndexing() {
+		return false;
+	}
+
 	boolean extendsSpecies(final ISpecies s);
 
 	boolean isGrid();
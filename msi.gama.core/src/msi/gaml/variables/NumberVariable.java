@@ -165,6 +165,11 @@ public class NumberVariable extends Variable {
 		return result;
 	}
 
+	@Override
+	public boolean isSetDirectly() {
+		return super.isSetDirectly() && min == null && max == null;
+	}
+
 	protected Integer checkMinMax(final IAgent agent, final IScope scope, final Integer f) throws GamaRuntimeException {
 		if (min != null) {
 			final Integer m =
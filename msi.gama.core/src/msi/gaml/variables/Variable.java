@@ -19,6 +19,7 @@ import msi.gama.common.interfaces.IGamlIssue;
 import msi.gama.common.interfaces.IKeyword;
 import msi.gama.common.interfaces.ISkill;
 import msi.gama.metamodel.agent.IAgent;
+import msi.gama.metamodel.population.SynchronousUpdateBuffer;
 import msi.gama.precompiler.GamlAnnotations.doc;
 import msi.gama.precompiler.GamlAnnotations.facet;
 import msi.gama.precompiler.GamlAnnotations.facets;
@@ -36,10 +37,13 @@ import msi.gaml.compilation.IGamaHelper;
 import msi.gaml.compilation.ISymbol;
 import msi.gaml.compilation.Symbol;
 import msi.gaml.compilation.annotations.validator;
+import msi.gaml.descriptions.AttributeLayout;
 import msi.gaml.descriptions.ConstantExpressionDescription;
 import msi.gaml.descriptions.IDescription;
 import msi.gaml.descriptions.IExpressionDescription;
+import msi.gaml.descriptions.SpeciesDescription;
 import msi.gaml.descriptions.VariableDescription;
+import msi.gaml.expressions.ConstantExpression;
 import msi.gaml.expressions.IExpression;
 import msi.gaml.expressions.ListExpression;
 import msi.gaml.expressions.TimeUnitConstantExpression;
@@ -358,6 +362,11 @@ public class Variable extends Symbol implements IVariable {
 	protected final IExpression updateExpression, amongExpression, functionExpression, onChangeExpression;
 	protected IType type;
 	protected final boolean isNotModifiable;
+	/**
+	 * The slot in which the agents store the value of this variable (see {@link AttributeLayout}), or -1 if it is not
+	 * stored in a slot
+	 */
+	protected final int slot;
 	// protected boolean isSpeciesConst;
 	public IGamaHelper getter, initer, setter;
 	private IExecutable on_changer;
@@ -378,6 +387,8 @@ public class Variable extends Symbol implements IVariable {
 		onChangeExpression = getFacet(IKeyword.ON_CHANGE);
 		isNotModifiable = desc.isNotModifiable();
 		type = desc.getGamlType();
+		final SpeciesDescription species = desc.getSpeciesContext();
+		slot = species == null ? -1 : species.getAttributeLayout().slotOf(getName());
 		// computeSpeciesConst();
 	}
 
@@ -459,6 +470,9 @@ public class Variable extends Symbol implements IVariable {
 			scope.setCurrentSymbol(this);
 			if (v != null) {
 				_setVal(a, scope, v);
+			} else if (initExpression instanceof ConstantExpression && initExpression.isConst()) {
+				// Constants do not depend on the agent: no need to push it to evaluate them
+				_setVal(a, scope, initExpression.getConstValue());
 			} else if (initExpression != null) {
 				_setVal(a, scope, scope.evaluate(initExpression, a).getValue());
 			} else if (initer != null) {
@@ -504,6 +518,8 @@ public class Variable extends Symbol implements IVariable {
 	@Override
 	public final void setVal(final IScope scope, final IAgent agent, final Object v) throws GamaRuntimeException {
 		if (isNotModifiable) { return; }
+		final SynchronousUpdateBuffer buffer = scope.getUpdateBuffer();
+		if (buffer != null && buffer.defer(agent, this, v, scope.getSteppedAgent())) { return; }
 		final Object oldValue = onChangeExpression == null ? null : value(scope, agent);
 		_setVal(agent, scope, v);
 		if (onChangeExpression != null && !Objects.equal(oldValue, v)) {
@@ -520,6 +536,8 @@ public class Variable extends Symbol implements IVariable {
 		val = checkAmong(agent, scope, val);
 		if (setter != null) {
 			setter.run(scope, agent, sSkill == null ? agent : sSkill, val);
+		} else if (slot >= 0) {
+			agent.setSlot(slot, name, val);
 		} else {
 			agent.setAttribute(name, val);
 		}
@@ -528,6 +546,21 @@ public class Variable extends Symbol implements IVariable {
 		// }
 	}
 
+	/**
+	 * Whether the values of this variable can be written directly in the agents by {@link #setValDirectly}: they are
+	 * kept in a slot, and no setter nor 'among' or 'on_change' facet has to be honoured when they change
+	 */
+	public boolean isSetDirectly() {
+		return !isNotModifiable && setter == null && slot >= 0 && amongExpression == null && onChangeExpression == null;
+	}
+
+	/**
+	 * Writes a value, already of the type of this variable, in the slot of the agent (see {@link #isSetDirectly()})
+	 */
+	public void setValDirectly(final IAgent agent, final Object v) {
+		agent.setSlot(slot, name, v);
+	}
+
 	protected Object checkAmong(final IAgent agent, final IScope scope, final Object val) throws GamaRuntimeException {
 		if (amongExpression == null) { return val; }
 		final List among = Cast.asList(scope, scope.evaluate(amongExpression, agent).getValue());
@@ -548,6 +581,7 @@ public class Variable extends Symbol implements IVariable {
 		// if (isSpeciesConst) { return speciesWideValue; }
 		if (getter != null) { return getter.run(scope, agent, gSkill == null ? agent : gSkill); }
 		if (functionExpression != null) { return scope.evaluate(functionExpression, agent).getValue(); }
+		if (slot >= 0 && !isNotModifiable) { return agent.getSlot(slot, name); }
 		if (!agent.hasAttribute(name)) {
 			// Var not yet initialized. May happen when asking for its value while initializing an editor
 			// See Issue #2781
@@ -58,6 +58,7 @@ public class Application implements IApplication {
 	final public static String GAMA_VERSION = "-version";
 	final public static String TUNNELING_PARAMETER = "-p";
 	final public static String THREAD_PARAMETER = "-hpc";
+	final public static String SHARED_THREADS_PARAMETER = "-parallel";
 	final public static String SOCKET_PARAMETER = "-socket";
 	final public static String VERBOSE_PARAMETER = "-v";
 	final public static String HELP_PARAMETER = "-help";
@@ -84,6 +85,7 @@ public class Application implements IApplication {
 				+ "\n      -c        					-- start the console to write xml parameter file"
 				+ "\n      -v 							-- verbose mode"
 				+ "\n      -hpc [core] 					-- set the number of core available for experimentation"
+				+ "\n      -parallel 					-- let the experiments share these cores to run their simulations and agents in parallel"
 				+ "\n      -socket [socketPort] 		-- start socket pipeline to interact with another framework"
 				+ "\n" + "\n      -p        					-- start pipeline to interact with another framework"
 				+ "\n"
@@ -127,6 +129,7 @@ public class Application implements IApplication {
 			mustContainOutFile = false;
 		}
 		if (args.contains(THREAD_PARAMETER)) { size = size - 2; }
+		if (args.contains(SHARED_THREADS_PARAMETER)) { size = size - 1; }
 		if (args.contains(VERBOSE_PARAMETER)) { size = size - 1; }
 		if (mustContainInFile && mustContainOutFile && size < 2) {
 			showError(HeadLessErrors.INPUT_NOT_DEFINED, null);
@@ -301,7 +304,7 @@ public class Application implements IApplication {
 		} else {
 			numberOfThread = SimulationRuntime.UNDEFINED_QUEUE_SIZE;
 		}
-		processorQueue = new LocalSimulationRuntime(this.numberOfThread);
+		processorQueue = new LocalSimulationRuntime(this.numberOfThread, args.contains(SHARED_THREADS_PARAMETER));
 
 		Reader in = null;
 		if (this.verbose && !this.tunnelingMode) { DEBUG.ON(); }
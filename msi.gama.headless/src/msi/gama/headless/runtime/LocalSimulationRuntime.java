@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import msi.gama.headless.job.ExperimentJob;
+import msi.gama.runtime.concurrent.GamaExecutorService;
 import ummisco.gama.dev.utils.DEBUG;
 
 public class LocalSimulationRuntime /* extends Observable */ implements SimulationRuntime {
@@ -29,12 +30,24 @@ public class LocalSimulationRuntime /* extends Observable */ implements Simulati
 	}
 
 	public LocalSimulationRuntime(final int numberOfCoresAsked) {
+		this(numberOfCoresAsked, false);
+	}
+
+	/**
+	 * @param sharedThreads
+	 *            whether the experiments started by this runtime also share the allocated cores to step their
+	 *            simulations and agents in parallel (otherwise each of them steps its simulations one at a time)
+	 */
+	public LocalSimulationRuntime(final int numberOfCoresAsked, final boolean sharedThreads) {
 		simulations = new HashMap<>();
 		queue = new ArrayList<>();
 		started = new ArrayList<>();
 		// loadedModels = new HashMap<>();
 		// availableLoadedModels = new HashMap<>();
 		this.allocatedProcessor = getAvailableCores(numberOfCoresAsked);
+		if (sharedThreads) {
+			GamaExecutorService.setHeadlessThreadBudget(allocatedProcessor);
+		}
 	}
 
 	private static int getAvailableCores(final int asked) {
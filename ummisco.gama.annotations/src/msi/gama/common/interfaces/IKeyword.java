@@ -23,6 +23,7 @@ public interface IKeyword {
 	String _DOT = ".";
 	String ABORT = "abort";
 	String ACTION = "action";
+	String ADAPTIVE = "adaptive";
 	String ADD = "add";
 	String AGENT = "agent";
 	String AGENTS = "agents";
@@ -86,6 +87,7 @@ public interface IKeyword {
 	String COLOR_BLUE = "blue";
 	String COLOR_GREEN = "green";
 	String COLOR_RED = "red";
+	String COLUMNAR = "columnar";
 	String COMMA = ",";
 	String CONDITION = "condition";
 	String CONST = "const";
@@ -102,6 +104,7 @@ public interface IKeyword {
 	String DATA = "data";
 	String DECAY = "decay";
 	String DEFAULT = "default";
+	String DEFERRED_INDEXING = "deferred_indexing";
 	// public static final String DEFAULT_EXP = "default";
 	// public static final String DEM = "dem";
 	// public static final String DEPENDS_ON = "depends_on";
@@ -320,6 +323,7 @@ public interface IKeyword {
 									// // "presentation" //
 									// "
 	String PARALLEL = "parallel";
+	String PARALLEL_SPECIES = "parallel_species";
 	String PERSPECTIVE = "perspective";
 	String PIE = "pie";
 	String PITCH = "pitch";
@@ -383,6 +387,7 @@ public interface IKeyword {
 	String SKILL = "skill";
 	String SKILLS = "skills";
 	String SOURCE = "source";
+	String SPATIAL_INDEX = "spatial_index";
 	String SPECIES = "species";
 	String SPECULAR = "specular";
 	String SPEED = "speed";
@@ -399,6 +404,7 @@ public interface IKeyword {
 	String STRATEGY = "scheduling_strategy";
 	String STYLE = "style";
 	String SWITCH = "switch";
+	String SYNCHRONOUS = "synchronous";
 	String SYNTHETIC = "__synthetic__";
 	String TABU = "tabu";
 	String TARGET = "target";